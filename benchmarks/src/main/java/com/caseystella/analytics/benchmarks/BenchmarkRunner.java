@@ -0,0 +1,23 @@
+package com.caseystella.analytics.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with the GC profiler always attached, so every suite reports its allocation rate
+ * (gc.alloc.rate.norm is bytes allocated per operation) next to its throughput.  Takes the usual JMH
+ * command line, e.g. java -jar benchmarks/target/benchmarks.jar Distribution -p size=1000
+ */
+public class BenchmarkRunner {
+    public static void main(String... argv) throws Exception {
+        CommandLineOptions cmdOptions = new CommandLineOptions(argv);
+        ChainedOptionsBuilder options = new OptionsBuilder().parent(cmdOptions);
+        if(cmdOptions.getIncludes().isEmpty()) {
+            options = options.include(BenchmarkRunner.class.getPackage().getName() + ".*");
+        }
+        new Runner(options.addProfiler(GCProfiler.class).build()).run();
+    }
+}
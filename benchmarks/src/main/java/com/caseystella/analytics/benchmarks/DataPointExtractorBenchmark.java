@@ -0,0 +1,61 @@
+package com.caseystella.analytics.benchmarks;
+
+import com.caseystella.analytics.DataPoint;
+import com.caseystella.analytics.extractor.DataPointExtractor;
+import com.caseystella.analytics.extractor.DataPointExtractorConfig;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Extraction of data points from a CSV record, which is done for every message read off of kafka.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Thread)
+public class DataPointExtractorBenchmark {
+    private static final String CONFIG = "{ \"keyConverter\" : \"NOOP\""
+                                       + ", \"valueConverter\" : \"%s\""
+                                       + ", \"valueConverterConfig\" : { \"columnMap\" : { \"sensor1_ts\" : 0"
+                                       + "                                               , \"sensor1_value\" : 1"
+                                       + "                                               , \"sensor2_ts\" : 4"
+                                       + "                                               , \"sensor2_value\" : 5"
+                                       + "                                               , \"plant_id\" : 7"
+                                       + "                                               }"
+                                       + "                              }"
+                                       + ", \"measurements\" : [ { \"source\" : \"sensor_1\""
+                                       + "                     , \"timestampField\" : \"sensor1_ts\""
+                                       + "                     , \"measurementField\" : \"sensor1_value\""
+                                       + "                     , \"metadataFields\" : [ \"plant_id\" ]"
+                                       + "                     }"
+                                       + "                     , { \"source\" : \"sensor_2\""
+                                       + "                     , \"timestampField\" : \"sensor2_ts\""
+                                       + "                     , \"measurementField\" : \"sensor2_value\""
+                                       + "                     , \"metadataFields\" : [ \"plant_id\" ]"
+                                       + "                     }"
+                                       + "                     ]"
+                                       + "}";
+    private static final byte[] KEY = new byte[0];
+
+    @Param({"CSVConverter", "ByteCSVConverter"})
+    public String converter;
+
+    private DataPointExtractor extractor;
+    private byte[] value;
+
+    @Setup
+    public void setup() throws IOException {
+        extractor = new DataPointExtractor().withConfig(DataPointExtractorConfig.load(String.format(CONFIG, converter)));
+        value = "1456790400000,100.5,foo,bar,1456790400000,7.25,grok,plant_1,baz".getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public Iterable<DataPoint> extract() {
+        return extractor.extract(KEY, value, true);
+    }
+}
@@ -0,0 +1,88 @@
+package com.caseystella.analytics.benchmarks;
+
+import com.caseystella.analytics.DataPoint;
+import com.caseystella.analytics.distribution.Distribution;
+import com.caseystella.analytics.distribution.GlobalStatistics;
+import com.caseystella.analytics.distribution.ValueRange;
+import com.caseystella.analytics.distribution.scaling.ScalingFunctions;
+import com.caseystella.analytics.distribution.sketch.QuantileSketchFactory;
+import com.caseystella.analytics.distribution.sketch.QuantileSketches;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Adding to, merging and querying distributions of a given size.  Merging the chunks of a window is what
+ * happens on every rotation, and the percentile queries happen on every point analyzed.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Thread)
+public class DistributionBenchmark {
+    private static final int NUM_CHUNKS = 10;
+
+    @Param({"100", "1000", "10000"})
+    public int size;
+
+    @Param({"QTREE", "TDIGEST"})
+    public String sketch;
+
+    private DataPoint[] points;
+    private Distribution distribution;
+    private List<Distribution> chunks;
+    private GlobalStatistics stats;
+    private QuantileSketchFactory factory;
+    private int i;
+
+    @Setup
+    public void setup() {
+        Random r = new Random(0);
+        stats = new GlobalStatistics();
+        factory = QuantileSketches.valueOf(sketch).newFactory(new HashMap<String, Object>());
+        points = new DataPoint[size];
+        for(int j = 0;j < size;++j) {
+            points[j] = new DataPoint(j, r.nextGaussian()*10 + 100, null, "benchmark");
+        }
+        distribution = fill(0, size);
+        chunks = new ArrayList<>();
+        int chunkSize = Math.max(1, size/NUM_CHUNKS);
+        for(int j = 0;j + chunkSize <= size;j += chunkSize) {
+            chunks.add(fill(j, j + chunkSize));
+        }
+    }
+
+    private Distribution fill(int begin, int end) {
+        Distribution ret = new Distribution(points[begin], ScalingFunctions.NONE, stats, factory.create());
+        for(int j = begin + 1;j < end;++j) {
+            ret.addDataPoint(points[j], ScalingFunctions.NONE);
+        }
+        return ret;
+    }
+
+    /**
+     * Builds a distribution of size points from scratch, so throughput is in distributions per second.
+     */
+    @Benchmark
+    public Distribution addDataPoint() {
+        return fill(0, size);
+    }
+
+    @Benchmark
+    public Distribution merge() {
+        return Distribution.merge(chunks);
+    }
+
+    @Benchmark
+    public ValueRange getPercentile() {
+        //walk the percentiles so that the answer is not the same on every call
+        double percentile = ((i++ % 99) + 1)/100.0;
+        return distribution.getPercentileRange(percentile);
+    }
+}
@@ -0,0 +1,47 @@
+package com.caseystella.analytics.benchmarks;
+
+import com.caseystella.analytics.distribution.sampling.ExponentiallyBiasedAChao;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Insertion into the biased reservoir which backs the sample handed to the batch outlier algorithms.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Thread)
+public class ExponentiallyBiasedAChaoBenchmark {
+    private static final int NUM_VALUES = 1 << 16;
+
+    @Param({"100", "1000"})
+    public int capacity;
+
+    private ExponentiallyBiasedAChao<Double> reservoir;
+    private Double[] values;
+    private int i;
+
+    @Setup
+    public void setup() {
+        Random r = new Random(0);
+        reservoir = new ExponentiallyBiasedAChao<>(capacity, 0.01, new Random(0));
+        values = new Double[NUM_VALUES];
+        for(int j = 0;j < NUM_VALUES;++j) {
+            values[j] = r.nextGaussian();
+        }
+    }
+
+    @Benchmark
+    public ExponentiallyBiasedAChao<Double> insert() {
+        int j = i++ & (NUM_VALUES - 1);
+        reservoir.insert(values[j]);
+        if(j % 100 == 0) {
+            reservoir.advancePeriod();
+        }
+        return reservoir;
+    }
+}
@@ -0,0 +1,46 @@
+package com.caseystella.analytics.benchmarks;
+
+import com.caseystella.analytics.DataPoint;
+import com.caseystella.analytics.outlier.batch.rpca.RPCAOutlierAlgorithm;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scoring a prospective outlier against a sample of the given size, which is the cost of confirming
+ * each outlier the sketchy algorithm flags.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Thread)
+public class RPCAOutlierAlgorithmBenchmark {
+    @Param({"50", "200", "1000"})
+    public int sampleSize;
+
+    private RPCAOutlierAlgorithm rpca;
+    private List<DataPoint> sample;
+    private DataPoint value;
+
+    @Setup
+    public void setup() {
+        Random r = new Random(0);
+        rpca = new RPCAOutlierAlgorithm();
+        sample = new ArrayList<>(sampleSize);
+        for(int j = 0;j < sampleSize;++j) {
+            sample.add(new DataPoint(j, r.nextGaussian()*10 + 100, new HashMap<String, String>(), "benchmark"));
+        }
+        value = new DataPoint(sampleSize, 200, new HashMap<String, String>(), "benchmark");
+    }
+
+    @Benchmark
+    public double outlierScore() {
+        return rpca.outlierScore(sample, value);
+    }
+}
@@ -0,0 +1,72 @@
+package com.caseystella.analytics.benchmarks;
+
+import com.caseystella.analytics.DataPoint;
+import com.caseystella.analytics.outlier.Outlier;
+import com.caseystella.analytics.outlier.streaming.OutlierConfig;
+import com.caseystella.analytics.outlier.streaming.mad.SketchyMovingMAD;
+import com.caseystella.analytics.util.JSONUtil;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SketchyMovingMAD.analyze over a stream spread across a number of keys, which is the per tuple cost of
+ * the outlier bolt.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Thread)
+public class SketchyMovingMADBenchmark {
+    private static final int NUM_POINTS = 1 << 16;
+
+    @Param({"1", "100"})
+    public int numKeys;
+
+    @Param({"QTREE", "TDIGEST"})
+    public String sketch;
+
+    private SketchyMovingMAD mad;
+    private DataPoint[] points;
+    private String[] keys;
+    private int i;
+
+    @Setup
+    public void setup() throws IOException {
+        String config = "{ \"sketch\" : \"" + sketch + "\""
+                      + ", \"rotationPolicy\" : { \"type\" : \"BY_AMOUNT\", \"amount\" : 100, \"unit\" : \"POINTS\" }"
+                      + ", \"chunkingPolicy\" : { \"type\" : \"BY_AMOUNT\", \"amount\" : 10, \"unit\" : \"POINTS\" }"
+                      + ", \"globalStatistics\" : { \"min\" : -10000 }"
+                      + ", \"sketchyOutlierAlgorithm\" : \"SKETCHY_MOVING_MAD\""
+                      + ", \"config\" : { \"minAmountToPredict\" : 100"
+                      + "             , \"zscoreCutoffs\" : { \"NORMAL\" : 3.5, \"MODERATE_OUTLIER\" : 5 }"
+                      + "             }"
+                      + "}";
+        OutlierConfig outlierConfig = JSONUtil.INSTANCE.load(config, OutlierConfig.class);
+        mad = ((SketchyMovingMAD) outlierConfig.getSketchyOutlierAlgorithm()).withConfig(outlierConfig);
+        Random r = new Random(0);
+        keys = new String[numKeys];
+        for(int k = 0;k < numKeys;++k) {
+            keys[k] = "key_" + k;
+        }
+        points = new DataPoint[NUM_POINTS];
+        for(int j = 0;j < NUM_POINTS;++j) {
+            double value = r.nextGaussian()*10 + 100;
+            if(j % 997 == 0) {
+                value += 1000;
+            }
+            points[j] = new DataPoint(j, value, new HashMap<String, String>(), keys[j % numKeys]);
+        }
+    }
+
+    @Benchmark
+    public Outlier analyze() {
+        int j = i++ & (NUM_POINTS - 1);
+        return mad.analyze(keys[j % numKeys], points[j]);
+    }
+}
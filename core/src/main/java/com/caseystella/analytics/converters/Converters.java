@@ -1,5 +1,6 @@
 package com.caseystella.analytics.converters;
 
+import com.caseystella.analytics.converters.csv.ByteCSVConverter;
 import com.caseystella.analytics.converters.csv.CSVConverter;
 import com.caseystella.analytics.converters.primitive.DateConverter;
 import com.caseystella.analytics.converters.primitive.PrimitiveConverter;
@@ -11,6 +12,7 @@ public class Converters {
 
     private static Map<String, Class<? extends MappingConverter>> _mappingConverters = new HashMap<String, Class<? extends MappingConverter>>() {{
         put(CSVConverter.class.getSimpleName(), CSVConverter.class);
+        put(ByteCSVConverter.class.getSimpleName(), ByteCSVConverter.class);
         put(DateConverter.class.getSimpleName(), DateConverter.DateMappingConverter.class);
         put(PrimitiveConverter.class.getSimpleName(), PrimitiveConverter.PrimitiveMappingConverter.class);
         put(NOOP.class.getSimpleName(), NOOP.class);
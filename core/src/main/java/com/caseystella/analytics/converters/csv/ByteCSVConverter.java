@@ -0,0 +1,232 @@
+package com.caseystella.analytics.converters.csv;
+
+import com.caseystella.analytics.converters.MappingConverter;
+import com.caseystella.analytics.converters.primitive.PrimitiveConverter;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A CSV converter which works on the bytes of the line directly.  It scans the line once, only materializing the
+ * columns in the columnMap, and parses the columns given a DOUBLE or LONG type in columnTypes straight to numbers
+ * rather than by way of a String (a column which does not parse is left as a String).  Fields may be quoted, with
+ * a doubled quote standing for a quote, but unlike the CSVConverter, backslash escapes are not understood.  A
+ * line without all of the mapped columns is treated as malformed.  The delimiter must be an ASCII character.
+ */
+public class ByteCSVConverter implements MappingConverter {
+    static final long serialVersionUID = 1L;
+    public static final String COLUMN_TYPES_CONF = "columnTypes";
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final byte QUOTE = '"';
+    private static final double[] POWERS_OF_TEN = new double[23];
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for(int i = 1;i < POWERS_OF_TEN.length;++i) {
+            POWERS_OF_TEN[i] = 10*POWERS_OF_TEN[i - 1];
+        }
+    }
+
+    private transient boolean initialized = false;
+    private transient byte delimiter;
+    //the mapped columns, ordered by their index
+    private transient int[] indices;
+    private transient String[] names;
+    private transient PrimitiveConverter.Type[] types;
+
+    private void initialize(Map<String, Object> config) {
+        delimiter = (byte)(config.containsKey(CSVConverter.DELIMITER_CONF)?config.get(CSVConverter.DELIMITER_CONF).toString().charAt(0):',');
+        Map<String, Object> columnMap = (Map<String, Object>) config.get(CSVConverter.COLUMN_MAP_CONF);
+        Map<String, Object> columnTypes = (Map<String, Object>) config.get(COLUMN_TYPES_CONF);
+        List<Map.Entry<String, Object>> columns = new ArrayList<>(columnMap.entrySet());
+        Collections.sort(columns, new Comparator<Map.Entry<String, Object>>() {
+            @Override
+            public int compare(Map.Entry<String, Object> o1, Map.Entry<String, Object> o2) {
+                return Integer.compare(((Number)o1.getValue()).intValue(), ((Number)o2.getValue()).intValue());
+            }
+        });
+        indices = new int[columns.size()];
+        names = new String[columns.size()];
+        types = new PrimitiveConverter.Type[columns.size()];
+        for(int i = 0;i < columns.size();++i) {
+            names[i] = columns.get(i).getKey();
+            indices[i] = ((Number)columns.get(i).getValue()).intValue();
+            Object type = columnTypes == null?null:columnTypes.get(names[i]);
+            types[i] = type == null?PrimitiveConverter.Type.STRING:PrimitiveConverter.Type.valueOf(type.toString());
+        }
+        initialized = true;
+    }
+
+    @Override
+    public Map<String, Object> convert(byte[] in, Map<String, Object> config) {
+        if(!initialized) {
+            initialize(config);
+        }
+        int pos = 0;
+        while(pos < in.length && Character.isWhitespace(in[pos])) {
+            pos++;
+        }
+        if(pos < in.length && in[pos] == '#') {
+            return null;
+        }
+        Map<String, Object> ret = new HashMap<>();
+        int column = 0;
+        int next = 0;
+        pos = 0;
+        while(next < indices.length && pos <= in.length) {
+            int start = pos;
+            int end;
+            boolean quoted = pos < in.length && in[pos] == QUOTE;
+            boolean escaped = false;
+            if(quoted) {
+                start = ++pos;
+                while(true) {
+                    if(pos >= in.length) {
+                        //unterminated quote
+                        return null;
+                    }
+                    if(in[pos] == QUOTE) {
+                        if(pos + 1 < in.length && in[pos + 1] == QUOTE) {
+                            escaped = true;
+                            pos += 2;
+                            continue;
+                        }
+                        break;
+                    }
+                    pos++;
+                }
+                end = pos++;
+                while(pos < in.length && in[pos] != delimiter) {
+                    pos++;
+                }
+            }
+            else {
+                while(pos < in.length && in[pos] != delimiter) {
+                    pos++;
+                }
+                end = pos;
+            }
+            for(;next < indices.length && indices[next] == column;++next) {
+                ret.put(names[next], escaped?unescape(in, start, end):toObject(in, start, end, types[next]));
+            }
+            column++;
+            pos++;
+        }
+        if(next < indices.length) {
+            return null;
+        }
+        return ret;
+    }
+
+    private static String unescape(byte[] in, int start, int end) {
+        return new String(in, start, end - start, UTF_8).replace("\"\"", "\"");
+    }
+
+    private static Object toObject(byte[] in, int start, int end, PrimitiveConverter.Type type) {
+        try {
+            if (type == PrimitiveConverter.Type.DOUBLE) {
+                return parseDouble(in, start, end);
+            } else if (type == PrimitiveConverter.Type.LONG) {
+                return parseLong(in, start, end);
+            }
+        }
+        catch(NumberFormatException nfe) {
+            //leave it for the measurement or timestamp converter to complain about
+        }
+        return new String(in, start, end - start, UTF_8);
+    }
+
+    static long parseLong(byte[] in, int start, int end) {
+        int pos = start;
+        boolean negative = false;
+        if(pos < end && (in[pos] == '-' || in[pos] == '+')) {
+            negative = in[pos] == '-';
+            pos++;
+        }
+        if(pos == end) {
+            throw new NumberFormatException();
+        }
+        long ret = 0;
+        for(;pos < end;++pos) {
+            int digit = in[pos] - '0';
+            if(digit < 0 || digit > 9) {
+                throw new NumberFormatException();
+            }
+            //accumulate negatively, so that Long.MIN_VALUE fits
+            if(ret < (Long.MIN_VALUE + digit)/10) {
+                throw new NumberFormatException();
+            }
+            ret = 10*ret - digit;
+        }
+        if(!negative) {
+            if(ret == Long.MIN_VALUE) {
+                throw new NumberFormatException();
+            }
+            return -ret;
+        }
+        return ret;
+    }
+
+    /**
+     * Parse a decimal number.  When it has at most 15 significant digits and a small enough exponent, the mantissa
+     * and the power of ten are exact doubles and a single multiplication or division rounds correctly; anything
+     * else is handed to Double.parseDouble.
+     */
+    static double parseDouble(byte[] in, int start, int end) {
+        int pos = start;
+        boolean negative = false;
+        if(pos < end && (in[pos] == '-' || in[pos] == '+')) {
+            negative = in[pos] == '-';
+            pos++;
+        }
+        long mantissa = 0;
+        int significantDigits = 0;
+        int numDigits = 0;
+        int exponent = 0;
+        boolean fast = true;
+        for(;pos < end && in[pos] >= '0' && in[pos] <= '9';++pos,++numDigits) {
+            mantissa = 10*mantissa + (in[pos] - '0');
+            if(mantissa > 0 && ++significantDigits > 15) {
+                fast = false;
+                break;
+            }
+        }
+        if(fast && pos < end && in[pos] == '.') {
+            for(++pos;pos < end && in[pos] >= '0' && in[pos] <= '9';++pos,++numDigits) {
+                mantissa = 10*mantissa + (in[pos] - '0');
+                exponent--;
+                if(mantissa > 0 && ++significantDigits > 15) {
+                    fast = false;
+                    break;
+                }
+            }
+        }
+        if(fast && numDigits > 0 && pos < end && (in[pos] == 'e' || in[pos] == 'E')) {
+            pos++;
+            boolean negativeExponent = false;
+            if(pos < end && (in[pos] == '-' || in[pos] == '+')) {
+                negativeExponent = in[pos] == '-';
+                pos++;
+            }
+            int exp = 0;
+            int expStart = pos;
+            for(;pos < end && in[pos] >= '0' && in[pos] <= '9' && exp < 1000;++pos) {
+                exp = 10*exp + (in[pos] - '0');
+            }
+            if(pos == expStart) {
+                fast = false;
+            }
+            exponent += negativeExponent?-exp:exp;
+        }
+        if(fast && numDigits > 0 && pos == end && exponent >= -22 && exponent <= 22) {
+            double ret = exponent >= 0?mantissa*POWERS_OF_TEN[exponent]:mantissa/POWERS_OF_TEN[-exponent];
+            return negative?-ret:ret;
+        }
+        return Double.parseDouble(new String(in, start, end - start, UTF_8));
+    }
+}
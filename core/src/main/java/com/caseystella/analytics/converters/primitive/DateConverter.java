@@ -5,7 +5,6 @@ import com.caseystella.analytics.converters.MappingConverter;
 import com.caseystella.analytics.converters.TimestampConverter;
 
 import java.text.ParseException;
-import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
@@ -23,12 +22,9 @@ public class DateConverter {
             }
             else if(in instanceof String)
             {
-                String format = (String) config.get(FORMAT_CONF);
-                SimpleDateFormat sdf = new SimpleDateFormat(format);
                 String s = in.toString();
                 try {
-                    Date d = sdf.parse(s);
-                    return d.getTime();
+                    return DateParser.get((String) config.get(FORMAT_CONF)).parse(s);
                 } catch (ParseException e) {
                     throw new RuntimeException("Malformed Date: " + s);
                 }
@@ -42,16 +38,14 @@ public class DateConverter {
     public static class DateMappingConverter implements MappingConverter{
         @Override
         public Map<String, Object> convert(byte[] in, Map<String, Object> config) {
-            String format = (String) config.get(FORMAT_CONF);
-            SimpleDateFormat sdf = new SimpleDateFormat(format);
             String s = (String) PrimitiveConverter.Type.STRING.apply(in);
             Map<String, Object> ret = new HashMap<>();
             try {
-                Date d = sdf.parse(s);
+                long ts = DateParser.get((String) config.get(FORMAT_CONF)).parse(s);
                 if (config.containsKey(TO_TS_CONF)) {
-                    ret.put((String) config.get(NAME_CONF), d.getTime());
+                    ret.put((String) config.get(NAME_CONF), ts);
                 } else {
-                    ret.put((String) config.get(NAME_CONF), d);
+                    ret.put((String) config.get(NAME_CONF), new Date(ts));
                 }
             } catch (ParseException e) {
                 throw new RuntimeException("Malformed Date: " + s);
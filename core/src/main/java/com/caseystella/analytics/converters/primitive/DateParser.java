@@ -0,0 +1,202 @@
+package com.caseystella.analytics.converters.primitive;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Parses dates in a format, compiled once and shared between threads.  SimpleDateFormat is not thread-safe, so
+ * each thread gets its own.  Formats made up of only fixed width numeric fields (yyyy, MM, dd, HH, mm, ss and SSS)
+ * and literals, e.g. yyyy-MM-dd'T'HH:mm:ss.SSS, are parsed by reading the digits straight out of the string and
+ * setting them on a calendar, which gives the same result as SimpleDateFormat without interpreting the pattern for
+ * every value; a value which does not fit the layout exactly falls back to SimpleDateFormat.  The formats
+ * epoch_seconds and epoch_millis parse numeric timestamps.  As with SimpleDateFormat, dates are in the default
+ * time zone as of when the parser was created.
+ */
+public class DateParser {
+    public static final String EPOCH_SECONDS = "epoch_seconds";
+    public static final String EPOCH_MILLIS = "epoch_millis";
+    private static final ConcurrentMap<String, DateParser> parsers = new ConcurrentHashMap<>();
+
+    private static class Field {
+        int offset;
+        int width;
+        int calendarField;
+        //literal characters are fields with no calendar field
+        char literal;
+
+        Field(int offset, int width, int calendarField, char literal) {
+            this.offset = offset;
+            this.width = width;
+            this.calendarField = calendarField;
+            this.literal = literal;
+        }
+    }
+
+    private final String format;
+    private final Field[] layout;
+    private final int width;
+    private final ThreadLocal<SimpleDateFormat> dateFormat;
+    private final ThreadLocal<Calendar> calendar;
+
+    public static DateParser get(String format) {
+        DateParser ret = parsers.get(format);
+        if(ret == null) {
+            DateParser parser = new DateParser(format);
+            ret = parsers.putIfAbsent(format, parser);
+            if(ret == null) {
+                ret = parser;
+            }
+        }
+        return ret;
+    }
+
+    DateParser(final String format) {
+        this.format = format;
+        boolean isEpoch = EPOCH_SECONDS.equals(format) || EPOCH_MILLIS.equals(format);
+        if(!isEpoch) {
+            //fail on a bad format up front rather than on the first value
+            new SimpleDateFormat(format);
+        }
+        dateFormat = new ThreadLocal<SimpleDateFormat>() {
+            @Override
+            protected SimpleDateFormat initialValue() {
+                return new SimpleDateFormat(format);
+            }
+        };
+        calendar = new ThreadLocal<Calendar>() {
+            @Override
+            protected Calendar initialValue() {
+                //the same kind of calendar in the same time zone as the date format uses
+                return (Calendar) dateFormat.get().getCalendar().clone();
+            }
+        };
+        layout = isEpoch?null:compile(format);
+        int w = 0;
+        if(layout != null) {
+            for(Field f : layout) {
+                w += f.width;
+            }
+        }
+        width = w;
+    }
+
+    /**
+     * The fixed width layout of a format, or null if it has anything else in it.
+     */
+    private static Field[] compile(String format) {
+        List<Field> ret = new ArrayList<>();
+        int offset = 0;
+        for(int i = 0;i < format.length();) {
+            char c = format.charAt(i);
+            if(c == '\'') {
+                int close = format.indexOf('\'', i + 1);
+                if(close <= i + 1) {
+                    return null;
+                }
+                for(int j = i + 1;j < close;++j) {
+                    ret.add(new Field(offset++, 1, -1, format.charAt(j)));
+                }
+                i = close + 1;
+            }
+            else if(Character.isLetter(c)) {
+                int end = i;
+                while(end < format.length() && format.charAt(end) == c) {
+                    end++;
+                }
+                int count = end - i;
+                int calendarField;
+                int expectedCount;
+                switch(c) {
+                    case 'y':
+                        calendarField = Calendar.YEAR;
+                        expectedCount = 4;
+                        break;
+                    case 'M':
+                        calendarField = Calendar.MONTH;
+                        expectedCount = 2;
+                        break;
+                    case 'd':
+                        calendarField = Calendar.DAY_OF_MONTH;
+                        expectedCount = 2;
+                        break;
+                    case 'H':
+                        calendarField = Calendar.HOUR_OF_DAY;
+                        expectedCount = 2;
+                        break;
+                    case 'm':
+                        calendarField = Calendar.MINUTE;
+                        expectedCount = 2;
+                        break;
+                    case 's':
+                        calendarField = Calendar.SECOND;
+                        expectedCount = 2;
+                        break;
+                    case 'S':
+                        calendarField = Calendar.MILLISECOND;
+                        expectedCount = 3;
+                        break;
+                    default:
+                        return null;
+                }
+                if(count != expectedCount) {
+                    return null;
+                }
+                ret.add(new Field(offset, count, calendarField, (char)0));
+                offset += count;
+                i = end;
+            }
+            else {
+                ret.add(new Field(offset++, 1, -1, c));
+                i++;
+            }
+        }
+        return ret.toArray(new Field[ret.size()]);
+    }
+
+    public String getFormat() {
+        return format;
+    }
+
+    public long parse(String s) throws ParseException {
+        if(EPOCH_SECONDS.equals(format) || EPOCH_MILLIS.equals(format)) {
+            try {
+                long ts = Long.parseLong(s.trim());
+                return EPOCH_SECONDS.equals(format)?ts*1000:ts;
+            }
+            catch(NumberFormatException nfe) {
+                throw new ParseException("Unparseable epoch timestamp: \"" + s + "\"", 0);
+            }
+        }
+        if(layout != null && s.length() == width) {
+            Calendar cal = calendar.get();
+            cal.clear();
+            boolean matches = true;
+            for(int i = 0;i < layout.length && matches;++i) {
+                Field f = layout[i];
+                if(f.calendarField < 0) {
+                    matches = s.charAt(f.offset) == f.literal;
+                    continue;
+                }
+                int value = 0;
+                for(int j = f.offset;j < f.offset + f.width;++j) {
+                    int digit = s.charAt(j) - '0';
+                    if(digit < 0 || digit > 9) {
+                        matches = false;
+                        break;
+                    }
+                    value = 10*value + digit;
+                }
+                cal.set(f.calendarField, f.calendarField == Calendar.MONTH?value - 1:value);
+            }
+            if(matches) {
+                return cal.getTimeInMillis();
+            }
+        }
+        return dateFormat.get().parse(s).getTime();
+    }
+}
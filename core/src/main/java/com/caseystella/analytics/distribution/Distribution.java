@@ -5,13 +5,19 @@ import com.caseystella.analytics.distribution.config.RotationConfig;
 import com.caseystella.analytics.distribution.config.Type;
 import com.caseystella.analytics.distribution.sampling.ExponentiallyBiasedAChao;
 import com.caseystella.analytics.distribution.scaling.ScalingFunction;
+import com.caseystella.analytics.distribution.sketch.QTreeSketch;
+import com.caseystella.analytics.distribution.sketch.QuantileSketch;
+import com.caseystella.analytics.distribution.sketch.QuantileSketchFactory;
+import com.caseystella.analytics.distribution.sketch.QuantileSketches;
 import com.google.common.base.Function;
-import com.google.common.collect.ImmutableList;
-import com.google.common.collect.Iterables;
-import com.twitter.algebird.QTree;
 import org.apache.commons.math3.stat.descriptive.DescriptiveStatistics;
-import scala.Tuple2;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Random;
@@ -19,13 +25,29 @@ import java.util.Random;
 public class Distribution implements Measurable {
 
 
+    /**
+     * The chunks other than the one being filled form a sliding window, which is aggregated with two stacks.
+     * The oldest chunks sit on the front stack, each entry aggregating its chunk with every newer chunk beneath
+     * it, and the chunks sealed since the front was last filled are folded into a single back aggregate.  Expiring
+     * the oldest chunk pops the front and the front is only refilled from the chunks once it runs dry, so a
+     * rotation costs a constant number of merges (amortized) however many chunks the window spans.
+     */
     public static class Context {
         private Distribution currentDistribution;
         private Distribution previousDistribution;
         private LinkedList<Distribution> chunks = new LinkedList<>();
+        private ArrayDeque<Distribution> front = new ArrayDeque<>();
+        private Distribution back;
+        private final Window window = new Window();
         private ExponentiallyBiasedAChao<Double> reservoir;
+        private QuantileSketchFactory sketchFactory;
 
         public Context(int reservoirSize, double decayRate) {
+            this(reservoirSize, decayRate, new QTreeSketch.Factory(0));
+        }
+
+        public Context(int reservoirSize, double decayRate, QuantileSketchFactory sketchFactory) {
+            this.sketchFactory = sketchFactory;
             if(reservoirSize > 0) {
                 reservoir = new ExponentiallyBiasedAChao<>(reservoirSize, decayRate, new Random(0));
             }
@@ -57,7 +79,7 @@ public class Distribution implements Measurable {
                                 )
         {
             if(currentDistribution == null) {
-                currentDistribution = new Distribution(dp, scalingFunction, stats);
+                currentDistribution = new Distribution(dp, scalingFunction, stats, sketchFactory.create());
             }
             else {
                 currentDistribution.addDataPoint(dp, scalingFunction);
@@ -65,7 +87,7 @@ public class Distribution implements Measurable {
             //do I need to create a new chunk?
             boolean needNewChunk = chunks.size() == 0 || outOfPolicy(getCurrentChunk(), chunkingPolicy);
             if(needNewChunk) {
-                addChunk(new Distribution(dp, scalingFunction, stats));
+                addChunk(new Distribution(dp, scalingFunction, stats, sketchFactory.create()));
             }
             else {
                 getCurrentChunk().addDataPoint(dp, scalingFunction);
@@ -73,58 +95,195 @@ public class Distribution implements Measurable {
             if(needNewChunk) {
                 //do I need to rotate now?
                 boolean needsRotation = outOfPolicy(currentDistribution, rotationPolicy)
-                                    && outOfPolicy(sketch(Iterables.limit(chunks, chunks.size() - 1)), rotationPolicy);
+                                    && outOfPolicy(window.update(), rotationPolicy);
                 if(needsRotation) {
                     rotate();
                 }
             }
         }
 
+        /**
+         * Write the context in a compact binary form.  The global statistics and sketch factory are configuration,
+         * so they are supplied again when reading.
+         */
+        public void write(DataOutput out) throws IOException {
+            writeNullable(currentDistribution, out);
+            writeNullable(previousDistribution, out);
+            out.writeInt(chunks.size());
+            for(Distribution chunk : chunks) {
+                chunk.write(out);
+            }
+            //the window aggregates depend on the order they were merged in, so keep them rather than rebuild them
+            out.writeInt(front.size());
+            for(Distribution aggregate : front) {
+                aggregate.write(out);
+            }
+            writeNullable(back, out);
+            out.writeBoolean(reservoir != null);
+            if(reservoir != null) {
+                out.writeInt(reservoir.getCapacity());
+                out.writeDouble(reservoir.getBias());
+                out.writeDouble(reservoir.getRunningCount());
+                List<Double> sample = reservoir.getReservoir();
+                out.writeInt(sample.size());
+                for(Double d : sample) {
+                    out.writeDouble(d);
+                }
+            }
+        }
+
+        public static Context read(DataInput in, GlobalStatistics stats, QuantileSketchFactory sketchFactory) throws IOException {
+            Context ret = new Context(0, 0, sketchFactory);
+            ret.currentDistribution = readNullable(in, stats);
+            ret.previousDistribution = readNullable(in, stats);
+            int numChunks = in.readInt();
+            for(int i = 0;i < numChunks;++i) {
+                ret.chunks.add(Distribution.read(in, stats));
+            }
+            int frontSize = in.readInt();
+            for(int i = 0;i < frontSize;++i) {
+                ret.front.addLast(Distribution.read(in, stats));
+            }
+            ret.back = readNullable(in, stats);
+            if(in.readBoolean()) {
+                int capacity = in.readInt();
+                double bias = in.readDouble();
+                double runningCount = in.readDouble();
+                int size = in.readInt();
+                List<Double> sample = new ArrayList<>(size);
+                for(int i = 0;i < size;++i) {
+                    sample.add(in.readDouble());
+                }
+                ret.reservoir = new ExponentiallyBiasedAChao<>(capacity, bias, new Random(0));
+                ret.reservoir.restore(sample, runningCount);
+            }
+            return ret;
+        }
+
+        private static void writeNullable(Distribution d, DataOutput out) throws IOException {
+            out.writeBoolean(d != null);
+            if(d != null) {
+                d.write(out);
+            }
+        }
+
+        private static Distribution readNullable(DataInput in, GlobalStatistics stats) throws IOException {
+            return in.readBoolean()?Distribution.read(in, stats):null;
+        }
+
         protected void addChunk(Distribution d) {
+            if(!chunks.isEmpty()) {
+                //the chunk being filled is sealed, so it joins the window
+                Distribution sealed = chunks.getFirst();
+                if(back == null) {
+                    back = new Distribution(sealed);
+                }
+                else {
+                    back.absorb(sealed);
+                }
+            }
             chunks.addFirst(d);
         }
 
         protected void rotate() {
-            chunks.removeLast();
+            if(chunks.size() > 1) {
+                if (front.isEmpty()) {
+                    refillFront();
+                }
+                front.pop();
+                chunks.removeLast();
+            }
             previousDistribution = currentDistribution;
-            currentDistribution = Distribution.merge(chunks);
+            currentDistribution = new Distribution(getCurrentChunk());
+            if(back != null) {
+                currentDistribution.absorb(back);
+            }
+            if(!front.isEmpty()) {
+                currentDistribution.absorb(front.peek());
+            }
             if(reservoir != null) {
                 reservoir.advancePeriod();
             }
         }
 
+        /**
+         * Move every sealed chunk onto the front stack, newest first so that the oldest ends up on top.
+         * Sealed chunks are never modified, so the newest can stand in for its own aggregate.
+         */
+        private void refillFront() {
+            front.clear();
+            back = null;
+            Distribution aggregate = null;
+            Iterator<Distribution> it = chunks.iterator();
+            if(it.hasNext()) {
+                //skip the chunk being filled
+                it.next();
+            }
+            while(it.hasNext()) {
+                Distribution chunk = it.next();
+                if(aggregate == null) {
+                    aggregate = chunk;
+                }
+                else {
+                    aggregate = new Distribution(aggregate);
+                    aggregate.absorb(chunk);
+                }
+                front.push(aggregate);
+            }
+        }
+
         private Distribution getCurrentChunk() {
             return chunks.getFirst();
         }
 
-        private Measurable sketch(Iterable<Distribution> chunks) {
-            long begin = Long.MAX_VALUE;
-            long end = -1;
-            long amount = 0;
-            for(Distribution d : chunks) {
-                begin = Math.min(begin, d.getBegin());
-                end = Math.max(end, d.getEnd());
-                amount += d.getAmount();
-            }
-            final long measurableBegin = begin;
-            final long measurableEnd= end;
-            final long measurableAmount = amount;
-            return new Measurable() {
-                @Override
-                public long getAmount() {
-                    return measurableAmount;
+        /**
+         * The extent of every chunk but the oldest, which is what would remain after a rotation.  It is read
+         * off of the front entry beneath the oldest, the back aggregate and the chunk being filled.
+         */
+        private class Window implements Measurable {
+            private long begin;
+            private long end;
+            private long amount;
+
+            Window update() {
+                begin = Long.MAX_VALUE;
+                end = -1;
+                amount = 0;
+                if(chunks.size() > 1) {
+                    if(front.isEmpty()) {
+                        refillFront();
+                    }
+                    Iterator<Distribution> it = front.iterator();
+                    it.next();
+                    include(it.hasNext()?it.next():null);
+                    include(back);
+                    include(getCurrentChunk());
                 }
+                return this;
+            }
 
-                @Override
-                public Long getBegin() {
-                    return measurableBegin;
+            private void include(Distribution d) {
+                if(d != null) {
+                    begin = Math.min(begin, d.getBegin());
+                    end = Math.max(end, d.getEnd());
+                    amount += d.getAmount();
                 }
+            }
 
-                @Override
-                public Long getEnd() {
-                    return measurableEnd;
-                }
-            };
+            @Override
+            public long getAmount() {
+                return amount;
+            }
+
+            @Override
+            public Long getBegin() {
+                return begin;
+            }
+
+            @Override
+            public Long getEnd() {
+                return end;
+            }
         }
 
         private boolean outOfPolicy(Measurable dist, RotationConfig policy) {
@@ -145,7 +304,7 @@ public class Distribution implements Measurable {
 
 
     }
-    QTree<Object> distribution;
+    QuantileSketch sketch;
     long begin = 0L;
     long end = 0L;
     long amount = 0L;
@@ -153,10 +312,10 @@ public class Distribution implements Measurable {
     GlobalStatistics globalStatistics;
 
     public Distribution(Distribution dist) {
-        this(dist.distribution, dist.getBegin(), dist.getEnd(), dist.getAmount(), dist.getSum(), dist.getGlobalStatistics());
+        this(dist.sketch.copy(), dist.getBegin(), dist.getEnd(), dist.getAmount(), dist.getSum(), dist.getGlobalStatistics());
     }
-    public Distribution(QTree<Object> distribution, long begin, long end, long amount, double sum, GlobalStatistics stats) {
-        this.distribution = distribution;
+    public Distribution(QuantileSketch sketch, long begin, long end, long amount, double sum, GlobalStatistics stats) {
+        this.sketch = sketch;
         this.begin = begin;
         this.end = end;
         this.amount = amount;
@@ -165,12 +324,17 @@ public class Distribution implements Measurable {
 
     }
     public Distribution(DataPoint dp, ScalingFunction scalingFunction, GlobalStatistics stats) {
+        this(dp, scalingFunction, stats, new QTreeSketch());
+    }
+
+    public Distribution(DataPoint dp, ScalingFunction scalingFunction, GlobalStatistics stats, QuantileSketch sketch) {
         this.begin = dp.getTimestamp();
         this.end = dp.getTimestamp();
         this.globalStatistics = stats;
         this.amount = 1L;
         this.sum = dp.getValue();
-        this.distribution = DistributionUtils.createTree(ImmutableList.of(scalingFunction.scale(dp.getValue(), globalStatistics)));
+        this.sketch = sketch;
+        this.sketch.add(scalingFunction.scale(dp.getValue(), globalStatistics));
     }
 
     public double getSum() {
@@ -180,13 +344,17 @@ public class Distribution implements Measurable {
     public GlobalStatistics getGlobalStatistics() {
         return globalStatistics;
     }
+
+    public QuantileSketch getSketch() {
+        return sketch;
+    }
+
     public void addDataPoint(DataPoint dp, ScalingFunction scalingFunction ) {
         this.end = Math.max(end, dp.getTimestamp());
         this.begin = Math.min(begin, dp.getTimestamp());
         this.sum += dp.getValue();
         this.amount++;
-
-        this.distribution = DistributionUtils.merge(this.distribution, DistributionUtils.createTree(ImmutableList.of(scalingFunction.scale(dp.getValue(), globalStatistics))));
+        this.sketch.add(scalingFunction.scale(dp.getValue(), globalStatistics));
     }
 
     @Override
@@ -204,6 +372,22 @@ public class Distribution implements Measurable {
         return amount;
     }
 
+    public void write(DataOutput out) throws IOException {
+        out.writeLong(begin);
+        out.writeLong(end);
+        out.writeLong(amount);
+        out.writeDouble(sum);
+        QuantileSketches.write(sketch, out);
+    }
+
+    public static Distribution read(DataInput in, GlobalStatistics stats) throws IOException {
+        long begin = in.readLong();
+        long end = in.readLong();
+        long amount = in.readLong();
+        double sum = in.readDouble();
+        return new Distribution(QuantileSketches.read(in), begin, end, amount, sum, stats);
+    }
+
     public static double getMadScore(Iterable<Double> vals, Double val) {
         DescriptiveStatistics stats = new DescriptiveStatistics();
         DescriptiveStatistics medianStats = new DescriptiveStatistics();
@@ -232,26 +416,27 @@ public class Distribution implements Measurable {
     }
 
     public static Distribution merge(Iterable<Distribution> distributions) {
-        QTree<Object> distribution = null;
-        long begin = Long.MAX_VALUE;
-        long end = -1l;
-        long amount = 0l;
-        double sum = 0;
-        GlobalStatistics globalStats = null;
+        Distribution ret = null;
         for(Distribution d : distributions) {
-            if(distribution == null) {
-                distribution = d.distribution;
-                globalStats = d.getGlobalStatistics();
+            if(ret == null) {
+                ret = new Distribution(d);
             }
             else {
-                distribution = DistributionUtils.merge(distribution, d.distribution);
+                ret.absorb(d);
             }
-            begin = Math.min(begin, d.begin);
-            end = Math.max(end, d.end);
-            sum += d.sum;
-            amount += d.amount;
         }
-        return new Distribution(distribution, begin, end, amount, sum, globalStats);
+        return ret;
+    }
+
+    /**
+     * Merge another distribution into this one.
+     */
+    private void absorb(Distribution d) {
+        sketch.merge(d.sketch);
+        begin = Math.min(begin, d.begin);
+        end = Math.max(end, d.end);
+        sum += d.sum;
+        amount += d.amount;
     }
 
     public double getMean() {
@@ -259,18 +444,7 @@ public class Distribution implements Measurable {
     }
 
     public ValueRange getPercentileRange(double percentile) {
-        Tuple2<Object, Object> bounds = distribution.quantileBounds(percentile);
-        if(Math.abs(percentile - 0.0) < 1e-6) {
-            double min = ((Number)bounds._1()).doubleValue();
-            return new ValueRange(min, min);
-        }
-        if(Math.abs(percentile - 1.0) < 1e-6) {
-            double max = ((Number)bounds._2()).doubleValue();
-            return new ValueRange(max, max);
-        }
-        double l = ((Number)bounds._1()).doubleValue();
-        double r = ((Number)bounds._2()).doubleValue();
-        return new ValueRange(l, r);
+        return sketch.getPercentileRange(percentile);
     }
 
     public double getPercentileRange(double percentile, Function<Range<Double>, Double> approximator) {
@@ -28,6 +28,23 @@ class AChao<T> {
         return reservoir;
     }
 
+    public int getCapacity() {
+        return reservoirCapacity;
+    }
+
+    public double getRunningCount() {
+        return runningCount;
+    }
+
+    /**
+     * Replace the sample and the running count, e.g. when restoring a checkpoint.
+     */
+    public void restore(Collection<T> sample, double runningCount) {
+        reservoir.clear();
+        reservoir.addAll(sample);
+        this.runningCount = runningCount;
+    }
+
     public void insert(T ele, double weight) {
         runningCount += weight;
 
@@ -22,6 +22,10 @@ public class ExponentiallyBiasedAChao<T> extends AChao<T> {
         this.bias = bias;
     }
 
+    public double getBias() {
+        return bias;
+    }
+
     public void advancePeriod() {
         advancePeriod(1);
     }
@@ -0,0 +1,151 @@
+package com.caseystella.analytics.distribution.sketch;
+
+import com.caseystella.analytics.distribution.DistributionUtils;
+import com.caseystella.analytics.distribution.ValueRange;
+import com.google.common.collect.ImmutableList;
+import com.twitter.algebird.QTree;
+import scala.Tuple2;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * A quantile sketch backed by algebird's QTree.  Values may be buffered and folded into the tree
+ * in one bulk insert when the buffer fills or the tree is read.
+ */
+public class QTreeSketch implements QuantileSketch {
+    public static final String INSERTION_BUFFER_SIZE = "insertionBufferSize";
+    public static final int DEFAULT_INSERTION_BUFFER_SIZE = 64;
+    /**
+     * The initial capacity of the insertion buffer, which grows up to the configured buffer size so that
+     * small chunks do not pay for the full buffer.
+     */
+    private static final int INITIAL_BUFFER_CAPACITY = 8;
+
+    public static class Factory implements QuantileSketchFactory {
+        private int insertionBufferSize;
+        public Factory(int insertionBufferSize) {
+            this.insertionBufferSize = insertionBufferSize;
+        }
+
+        @Override
+        public QuantileSketch create() {
+            return new QTreeSketch(insertionBufferSize);
+        }
+    }
+
+    private QTree<Object> tree;
+    /**
+     * Scaled values which have not been folded into the tree yet.  With a buffer size of 1 or less,
+     * every value is merged into the tree as it arrives.
+     */
+    private int insertionBufferSize;
+    private double[] insertionBuffer;
+    private int numBuffered;
+
+    public QTreeSketch() {
+        this(0);
+    }
+
+    public QTreeSketch(int insertionBufferSize) {
+        this.insertionBufferSize = insertionBufferSize;
+    }
+
+    public QTreeSketch(QTree<Object> tree, int insertionBufferSize) {
+        this.tree = tree;
+        this.insertionBufferSize = insertionBufferSize;
+    }
+
+    @Override
+    public void add(double value) {
+        if(insertionBufferSize > 1) {
+            insert(value);
+        }
+        else if(tree == null) {
+            tree = DistributionUtils.createTree(ImmutableList.of(value));
+        }
+        else {
+            tree = DistributionUtils.merge(tree, DistributionUtils.createTree(ImmutableList.of(value)));
+        }
+    }
+
+    private void insert(double value) {
+        if(insertionBuffer == null) {
+            insertionBuffer = new double[Math.min(INITIAL_BUFFER_CAPACITY, insertionBufferSize)];
+        }
+        else if(numBuffered == insertionBuffer.length) {
+            insertionBuffer = Arrays.copyOf(insertionBuffer, Math.min(2*insertionBuffer.length, insertionBufferSize));
+        }
+        insertionBuffer[numBuffered++] = value;
+        if(numBuffered == insertionBufferSize) {
+            flush();
+        }
+    }
+
+    /**
+     * Fold any buffered values into the tree in a single bulk merge.
+     */
+    public void flush() {
+        if(numBuffered > 0) {
+            tree = DistributionUtils.bulkInsert(tree, insertionBuffer, numBuffered);
+            numBuffered = 0;
+        }
+    }
+
+    public QTree<Object> getTree() {
+        flush();
+        return tree;
+    }
+
+    @Override
+    public void merge(QuantileSketch other) {
+        if(!(other instanceof QTreeSketch)) {
+            throw new IllegalArgumentException("Unable to merge a " + other.getClass().getName() + " into a QTree sketch.");
+        }
+        QTree<Object> otherTree = ((QTreeSketch)other).getTree();
+        if(otherTree == null) {
+            return;
+        }
+        QTree<Object> thisTree = getTree();
+        tree = thisTree == null?otherTree:DistributionUtils.merge(thisTree, otherTree);
+    }
+
+    @Override
+    public QuantileSketch copy() {
+        return new QTreeSketch(getTree(), insertionBufferSize);
+    }
+
+    @Override
+    public ValueRange getPercentileRange(double percentile) {
+        Tuple2<Object, Object> bounds = getTree().quantileBounds(percentile);
+        if(Math.abs(percentile - 0.0) < 1e-6) {
+            double min = ((Number)bounds._1()).doubleValue();
+            return new ValueRange(min, min);
+        }
+        if(Math.abs(percentile - 1.0) < 1e-6) {
+            double max = ((Number)bounds._2()).doubleValue();
+            return new ValueRange(max, max);
+        }
+        double l = ((Number)bounds._1()).doubleValue();
+        double r = ((Number)bounds._2()).doubleValue();
+        return new ValueRange(l, r);
+    }
+
+    @Override
+    public void write(DataOutput out) throws IOException {
+        QTree<Object> t = getTree();
+        out.writeInt(insertionBufferSize);
+        out.writeBoolean(t != null);
+        if(t != null) {
+            DistributionUtils.writeTree(t, out);
+        }
+    }
+
+    public static QTreeSketch read(DataInput in) throws IOException {
+        int insertionBufferSize = in.readInt();
+        QTree<Object> tree = in.readBoolean()?DistributionUtils.readTree(in):null;
+        return new QTreeSketch(tree, insertionBufferSize);
+    }
+}
@@ -0,0 +1,27 @@
+package com.caseystella.analytics.distribution.sketch;
+
+import com.caseystella.analytics.distribution.ValueRange;
+
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * A mergeable summary of a stream of values which can answer approximate quantile queries.
+ */
+public interface QuantileSketch {
+    void add(double value);
+
+    /**
+     * Merge another sketch of the same kind into this one.
+     */
+    void merge(QuantileSketch other);
+
+    QuantileSketch copy();
+
+    ValueRange getPercentileRange(double percentile);
+
+    /**
+     * Write the sketch in a compact binary form which can be read back by QuantileSketches.read.
+     */
+    void write(DataOutput out) throws IOException;
+}
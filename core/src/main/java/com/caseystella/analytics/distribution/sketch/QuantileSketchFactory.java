@@ -0,0 +1,5 @@
+package com.caseystella.analytics.distribution.sketch;
+
+public interface QuantileSketchFactory {
+    QuantileSketch create();
+}
@@ -0,0 +1,77 @@
+package com.caseystella.analytics.distribution.sketch;
+
+import com.caseystella.analytics.util.ConfigUtil;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Map;
+
+public enum QuantileSketches {
+    QTREE {
+        @Override
+        public QuantileSketchFactory newFactory(Map<String, Object> config) {
+            int insertionBufferSize = QTreeSketch.DEFAULT_INSERTION_BUFFER_SIZE;
+            if(config != null && config.containsKey(QTreeSketch.INSERTION_BUFFER_SIZE)) {
+                Object o = config.get(QTreeSketch.INSERTION_BUFFER_SIZE);
+                insertionBufferSize = ConfigUtil.INSTANCE.coerceInteger(QTreeSketch.INSERTION_BUFFER_SIZE, o);
+            }
+            return new QTreeSketch.Factory(insertionBufferSize);
+        }
+
+        @Override
+        protected QuantileSketch readSketch(DataInput in) throws IOException {
+            return QTreeSketch.read(in);
+        }
+    }
+    ,TDIGEST {
+        @Override
+        public QuantileSketchFactory newFactory(Map<String, Object> config) {
+            double compression = TDigestSketch.DEFAULT_COMPRESSION;
+            if(config != null && config.containsKey(TDigestSketch.COMPRESSION)) {
+                Object o = config.get(TDigestSketch.COMPRESSION);
+                compression = ConfigUtil.INSTANCE.coerceDouble(TDigestSketch.COMPRESSION, o);
+            }
+            return new TDigestSketch.Factory(compression);
+        }
+
+        @Override
+        protected QuantileSketch readSketch(DataInput in) throws IOException {
+            return TDigestSketch.read(in);
+        }
+    }
+    ;
+
+    /**
+     * Create a factory for this kind of sketch, configured from the outlier algorithm's config map.
+     */
+    public abstract QuantileSketchFactory newFactory(Map<String, Object> config);
+
+    protected abstract QuantileSketch readSketch(DataInput in) throws IOException;
+
+    /**
+     * Write a sketch preceded by its kind, so that it can be read back with read.
+     */
+    public static void write(QuantileSketch sketch, DataOutput out) throws IOException {
+        QuantileSketches type;
+        if(sketch instanceof QTreeSketch) {
+            type = QTREE;
+        }
+        else if(sketch instanceof TDigestSketch) {
+            type = TDIGEST;
+        }
+        else {
+            throw new IllegalArgumentException("Unable to serialize sketch of type " + sketch.getClass().getName());
+        }
+        out.writeByte(type.ordinal());
+        sketch.write(out);
+    }
+
+    public static QuantileSketch read(DataInput in) throws IOException {
+        int ordinal = in.readByte();
+        if(ordinal < 0 || ordinal >= values().length) {
+            throw new IOException("Unknown sketch type " + ordinal);
+        }
+        return values()[ordinal].readSketch(in);
+    }
+}
@@ -0,0 +1,324 @@
+package com.caseystella.analytics.distribution.sketch;
+
+import com.caseystella.analytics.distribution.ValueRange;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * A merging t-digest (Dunning and Ertl) held entirely in primitive arrays.  Incoming values are buffered
+ * and, when the buffer fills or the digest is merged, sorted and swept together with the existing centroids,
+ * merging neighbours while the arcsine scale function allows it.  This keeps the number of centroids
+ * bounded by roughly the compression regardless of how many values have been seen, with the most
+ * resolution in the tails.
+ */
+public class TDigestSketch implements QuantileSketch {
+    public static final String COMPRESSION = "compression";
+    public static final double DEFAULT_COMPRESSION = 100;
+    private static final int INITIAL_CAPACITY = 8;
+
+    public static class Factory implements QuantileSketchFactory {
+        private double compression;
+        public Factory(double compression) {
+            this.compression = compression;
+        }
+
+        @Override
+        public QuantileSketch create() {
+            return new TDigestSketch(compression);
+        }
+    }
+
+    /**
+     * Scratch space for the merge sweep, shared by the sketches used on a thread so that each sketch
+     * only holds its own centroids.
+     */
+    private static final ThreadLocal<double[][]> SCRATCH = new ThreadLocal<double[][]>() {
+        @Override
+        protected double[][] initialValue() {
+            return new double[][] { new double[0], new double[0] };
+        }
+    };
+
+    private double compression;
+    private int bufferSize;
+    private double[] means;
+    private double[] weights;
+    private int numCentroids;
+    private double totalWeight;
+    private double[] buffer;
+    private int numBuffered;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+
+    public TDigestSketch() {
+        this(DEFAULT_COMPRESSION);
+    }
+
+    public TDigestSketch(double compression) {
+        if(compression < 1) {
+            throw new IllegalArgumentException("The compression of a t-digest must be at least 1, but was " + compression);
+        }
+        this.compression = compression;
+        this.bufferSize = (int)Math.ceil(compression);
+        this.means = new double[0];
+        this.weights = new double[0];
+    }
+
+    private TDigestSketch(TDigestSketch sketch) {
+        this.compression = sketch.compression;
+        this.bufferSize = sketch.bufferSize;
+        this.means = Arrays.copyOf(sketch.means, sketch.numCentroids);
+        this.weights = Arrays.copyOf(sketch.weights, sketch.numCentroids);
+        this.numCentroids = sketch.numCentroids;
+        this.totalWeight = sketch.totalWeight;
+        if(sketch.buffer != null) {
+            this.buffer = Arrays.copyOf(sketch.buffer, Math.max(sketch.numBuffered, 1));
+            this.numBuffered = sketch.numBuffered;
+        }
+        this.min = sketch.min;
+        this.max = sketch.max;
+    }
+
+    public double getCompression() {
+        return compression;
+    }
+
+    public int getNumCentroids() {
+        compress();
+        return numCentroids;
+    }
+
+    public long getCount() {
+        return (long)totalWeight + numBuffered;
+    }
+
+    @Override
+    public void add(double value) {
+        if(buffer == null) {
+            buffer = new double[Math.min(INITIAL_CAPACITY, bufferSize)];
+        }
+        else if(numBuffered == buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.min(2*buffer.length, bufferSize));
+        }
+        buffer[numBuffered++] = value;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+        if(numBuffered == bufferSize) {
+            compress();
+        }
+    }
+
+    /**
+     * Sweep the buffered values into the centroids.
+     */
+    public void compress() {
+        if(numBuffered > 0) {
+            Arrays.sort(buffer, 0, numBuffered);
+            int n = numBuffered;
+            numBuffered = 0;
+            mergeSorted(buffer, null, n, n);
+        }
+    }
+
+    @Override
+    public void merge(QuantileSketch other) {
+        if(!(other instanceof TDigestSketch)) {
+            throw new IllegalArgumentException("Unable to merge a " + other.getClass().getName() + " into a t-digest sketch.");
+        }
+        TDigestSketch digest = (TDigestSketch) other;
+        digest.compress();
+        compress();
+        if(digest.numCentroids > 0) {
+            min = Math.min(min, digest.min);
+            max = Math.max(max, digest.max);
+            mergeSorted(digest.means, digest.weights, digest.numCentroids, digest.totalWeight);
+        }
+    }
+
+    /**
+     * Merge a sorted run of centroids (unit weight if weights are null) with our own centroids,
+     * combining neighbours while the combined centroid stays within one unit of the scale function.
+     */
+    private void mergeSorted(double[] otherMeans, double[] otherWeights, int numOther, double otherWeight) {
+        double total = totalWeight + otherWeight;
+        double[][] scratch = SCRATCH.get();
+        int capacity = numCentroids + numOther;
+        if(scratch[0].length < capacity) {
+            scratch[0] = new double[capacity];
+            scratch[1] = new double[capacity];
+        }
+        double[] outMeans = scratch[0];
+        double[] outWeights = scratch[1];
+        int n = 0;
+        int i = 0;
+        int j = 0;
+        double weightSoFar = 0;
+        double limit = total*inverseScale(scale(0) + 1);
+        double currentMean = 0;
+        double currentWeight = 0;
+        while(i < numCentroids || j < numOther) {
+            double m;
+            double w;
+            if(j >= numOther || (i < numCentroids && means[i] <= otherMeans[j])) {
+                m = means[i];
+                w = weights[i];
+                i++;
+            }
+            else {
+                m = otherMeans[j];
+                w = otherWeights == null?1:otherWeights[j];
+                j++;
+            }
+            if(currentWeight == 0) {
+                currentMean = m;
+                currentWeight = w;
+            }
+            else if(weightSoFar + currentWeight + w <= limit) {
+                currentWeight += w;
+                currentMean += (m - currentMean)*w/currentWeight;
+            }
+            else {
+                outMeans[n] = currentMean;
+                outWeights[n] = currentWeight;
+                n++;
+                weightSoFar += currentWeight;
+                limit = total*inverseScale(scale(weightSoFar/total) + 1);
+                currentMean = m;
+                currentWeight = w;
+            }
+        }
+        if(currentWeight > 0) {
+            outMeans[n] = currentMean;
+            outWeights[n] = currentWeight;
+            n++;
+        }
+        if(means.length < n) {
+            int newCapacity = Math.max(n, 2*means.length);
+            means = new double[newCapacity];
+            weights = new double[newCapacity];
+        }
+        System.arraycopy(outMeans, 0, means, 0, n);
+        System.arraycopy(outWeights, 0, weights, 0, n);
+        numCentroids = n;
+        totalWeight = total;
+    }
+
+    private double scale(double q) {
+        return compression*Math.asin(2*q - 1)/(2*Math.PI);
+    }
+
+    private double inverseScale(double k) {
+        if(k >= compression/4) {
+            return 1;
+        }
+        return (Math.sin(2*Math.PI*k/compression) + 1)/2;
+    }
+
+    @Override
+    public void write(DataOutput out) throws IOException {
+        out.writeDouble(compression);
+        out.writeDouble(min);
+        out.writeDouble(max);
+        out.writeDouble(totalWeight);
+        out.writeInt(numCentroids);
+        for(int i = 0;i < numCentroids;++i) {
+            out.writeDouble(means[i]);
+            out.writeDouble(weights[i]);
+        }
+        out.writeInt(numBuffered);
+        for(int i = 0;i < numBuffered;++i) {
+            out.writeDouble(buffer[i]);
+        }
+    }
+
+    public static TDigestSketch read(DataInput in) throws IOException {
+        TDigestSketch ret = new TDigestSketch(in.readDouble());
+        ret.min = in.readDouble();
+        ret.max = in.readDouble();
+        ret.totalWeight = in.readDouble();
+        ret.numCentroids = in.readInt();
+        ret.means = new double[ret.numCentroids];
+        ret.weights = new double[ret.numCentroids];
+        for(int i = 0;i < ret.numCentroids;++i) {
+            ret.means[i] = in.readDouble();
+            ret.weights[i] = in.readDouble();
+        }
+        int numBuffered = in.readInt();
+        if(numBuffered > ret.bufferSize) {
+            throw new IOException("Unable to read a t-digest with " + numBuffered + " buffered values, more than its buffer holds.");
+        }
+        if(numBuffered > 0) {
+            ret.buffer = new double[numBuffered];
+            for(int i = 0;i < numBuffered;++i) {
+                ret.buffer[i] = in.readDouble();
+            }
+            ret.numBuffered = numBuffered;
+        }
+        return ret;
+    }
+
+    @Override
+    public QuantileSketch copy() {
+        return new TDigestSketch(this);
+    }
+
+    /**
+     * Reads do not compress the digest; buffered values are treated as unit weight centroids, so that
+     * querying after every point does not force a merge sweep on every point.
+     */
+    @Override
+    public ValueRange getPercentileRange(double percentile) {
+        if(numCentroids + numBuffered == 0) {
+            throw new IllegalStateException("Unable to compute a percentile of an empty sketch.");
+        }
+        if(percentile < 1e-6) {
+            return new ValueRange(min, min);
+        }
+        if(percentile > 1 - 1e-6) {
+            return new ValueRange(max, max);
+        }
+        if(numBuffered > 0) {
+            Arrays.sort(buffer, 0, numBuffered);
+        }
+        double value = quantile(percentile*(totalWeight + numBuffered));
+        return new ValueRange(value, value);
+    }
+
+    /**
+     * Interpolate between the centers of the centroids surrounding the index, using the min and max
+     * for the half centroids at either end.
+     */
+    private double quantile(double index) {
+        int i = 0;
+        int j = 0;
+        double previousMean = min;
+        double previousHalf = 0;
+        double cumulative = 0;
+        while(i < numCentroids || j < numBuffered) {
+            double mean;
+            double half;
+            if(j >= numBuffered || (i < numCentroids && means[i] <= buffer[j])) {
+                mean = means[i];
+                half = weights[i]/2;
+                i++;
+            }
+            else {
+                mean = buffer[j];
+                half = 0.5;
+                j++;
+            }
+            double delta = previousHalf + half;
+            if(cumulative + delta > index) {
+                return previousMean + (mean - previousMean)*(index - cumulative)/delta;
+            }
+            cumulative += delta;
+            previousMean = mean;
+            previousHalf = half;
+        }
+        double fraction = Math.min(1, (index - cumulative)/previousHalf);
+        return previousMean + (max - previousMean)*fraction;
+    }
+}
@@ -0,0 +1,169 @@
+package com.caseystella.analytics.extractor;
+
+import com.caseystella.analytics.DataPoint;
+import com.google.common.collect.AbstractIterator;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Streams back the data points written by a DataPointWriter, a block at a time.  Each point gets its own copy of
+ * its metadata, since the outlier algorithms add to it.
+ */
+public class DataPointReader extends AbstractIterator<DataPoint> implements Closeable {
+    private DataInputStream in;
+    private List<DataPoint> tagSets = new ArrayList<>();
+    private long[] timestamps = new long[DataPointWriter.BLOCK_SIZE];
+    private double[] values = new double[DataPointWriter.BLOCK_SIZE];
+    private int[] tags = new int[DataPointWriter.BLOCK_SIZE];
+    private int size = 0;
+    private int pos = 0;
+    private long lastTimestamp = 0;
+    private byte[] block = new byte[0];
+
+    public DataPointReader(InputStream in) throws IOException {
+        this.in = new DataInputStream(new BufferedInputStream(in));
+        int magic = this.in.readInt();
+        if(magic != DataPointWriter.MAGIC) {
+            throw new IOException("Not a data point file, its magic number is " + Integer.toHexString(magic));
+        }
+        int version = this.in.readInt();
+        if(version != DataPointWriter.VERSION) {
+            throw new IOException("Unable to read version " + version + " of the data point format.");
+        }
+    }
+
+    public DataPointReader(File f) throws IOException {
+        this(new FileInputStream(f));
+    }
+
+    /**
+     * Whether the file was written by a DataPointWriter rather than being text to extract.
+     */
+    public static boolean isDataPointFile(File f) throws IOException {
+        DataInputStream in = new DataInputStream(new FileInputStream(f));
+        try {
+            return in.readInt() == DataPointWriter.MAGIC;
+        }
+        catch(EOFException e) {
+            return false;
+        }
+        finally {
+            in.close();
+        }
+    }
+
+    /**
+     * The points in a file, read as they are iterated over.  The file is closed once they have all been read.
+     */
+    public static Iterable<DataPoint> read(final File f) {
+        return new Iterable<DataPoint>() {
+            @Override
+            public Iterator<DataPoint> iterator() {
+                try {
+                    return new DataPointReader(f);
+                } catch (IOException e) {
+                    throw new RuntimeException("Unable to read " + f + ": " + e.getMessage(), e);
+                }
+            }
+        };
+    }
+
+    @Override
+    protected DataPoint computeNext() {
+        if(pos == size) {
+            try {
+                if(!readBlock()) {
+                    close();
+                    return endOfData();
+                }
+            } catch (IOException e) {
+                throw new RuntimeException("Unable to read data points: " + e.getMessage(), e);
+            }
+        }
+        DataPoint tagSet = tagSets.get(tags[pos]);
+        Map<String, String> metadata = tagSet.getMetadata() == null?null:new HashMap<>(tagSet.getMetadata());
+        DataPoint ret = new DataPoint(timestamps[pos], values[pos], metadata, tagSet.getSource());
+        pos++;
+        return ret;
+    }
+
+    private boolean readBlock() throws IOException {
+        size = in.readInt();
+        pos = 0;
+        if(size == 0) {
+            return false;
+        }
+        int numNewTags = in.readInt();
+        for(int i = 0;i < numNewTags;++i) {
+            String source = readString();
+            int numMetadata = in.readInt();
+            Map<String, String> metadata = null;
+            if(numMetadata >= 0) {
+                metadata = new HashMap<>();
+                for (int j = 0; j < numMetadata; ++j) {
+                    String key = readString();
+                    metadata.put(key, readString());
+                }
+            }
+            tagSets.add(new DataPoint(0, 0, metadata, source));
+        }
+        int length = in.readInt();
+        if(block.length < length) {
+            block = new byte[length];
+        }
+        in.readFully(block, 0, length);
+        ByteBuffer buffer = ByteBuffer.wrap(block, 0, length);
+        for(int i = 0;i < size;++i) {
+            long zigzag = readVarLong(buffer);
+            lastTimestamp += (zigzag >>> 1) ^ -(zigzag & 1);
+            timestamps[i] = lastTimestamp;
+        }
+        for(int i = 0;i < size;++i) {
+            values[i] = buffer.getDouble();
+        }
+        for(int i = 0;i < size;++i) {
+            tags[i] = (int)readVarLong(buffer);
+        }
+        return true;
+    }
+
+    private String readString() throws IOException {
+        if(!in.readBoolean()) {
+            return null;
+        }
+        long length = 0;
+        for(int shift = 0;;shift += 7) {
+            byte b = in.readByte();
+            length |= (long)(b & 0x7F) << shift;
+            if(b >= 0) {
+                break;
+            }
+        }
+        byte[] bytes = new byte[(int)length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static long readVarLong(ByteBuffer buffer) {
+        long ret = 0;
+        for(int shift = 0;;shift += 7) {
+            byte b = buffer.get();
+            ret |= (long)(b & 0x7F) << shift;
+            if(b >= 0) {
+                return ret;
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
@@ -0,0 +1,136 @@
+package com.caseystella.analytics.extractor;
+
+import com.caseystella.analytics.DataPoint;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Writes already extracted data points out in a compact binary format, so that replaying them skips parsing
+ * the text and the timestamps again.  The points are written in the order they are given in blocks of
+ * BLOCK_SIZE points.  A block is
+ * <ul>
+ *     <li>the number of points in it (0 marks the end of the file)</li>
+ *     <li>the sources and metadata first seen in this block, which are numbered in the order they are seen.  The
+ *     strings are UTF-8, prefixed by their length as a varint.</li>
+ *     <li>the length of the rest of the block</li>
+ *     <li>the timestamps, zig-zag delta encoded as varints, which is compact as long as they are mostly sorted</li>
+ *     <li>the values as doubles</li>
+ *     <li>the number of the source and metadata of each point as varints</li>
+ * </ul>
+ */
+public class DataPointWriter implements Closeable {
+    public static final int MAGIC = 0x44505453;
+    public static final int VERSION = 2;
+    public static final int BLOCK_SIZE = 4096;
+
+    private DataOutputStream out;
+    private Map<List<Object>, Integer> tagIds = new HashMap<>();
+    private List<DataPoint> newTags = new ArrayList<>();
+    private long[] timestamps = new long[BLOCK_SIZE];
+    private double[] values = new double[BLOCK_SIZE];
+    private int[] tags = new int[BLOCK_SIZE];
+    private int size = 0;
+    private long lastTimestamp = 0;
+    private ByteArrayOutputStream block = new ByteArrayOutputStream();
+
+    public DataPointWriter(OutputStream out) throws IOException {
+        this.out = new DataOutputStream(new BufferedOutputStream(out));
+        try {
+            this.out.writeInt(MAGIC);
+            this.out.writeInt(VERSION);
+        }
+        catch(IOException e) {
+            out.close();
+            throw e;
+        }
+    }
+
+    public DataPointWriter(File f) throws IOException {
+        this(new FileOutputStream(f));
+    }
+
+    public void write(DataPoint dp) throws IOException {
+        List<Object> tagSet = Arrays.<Object>asList(dp.getSource(), dp.getMetadata());
+        Integer id = tagIds.get(tagSet);
+        if(id == null) {
+            id = tagIds.size();
+            Map<String, String> metadata = dp.getMetadata() == null?null:new HashMap<>(dp.getMetadata());
+            tagIds.put(Arrays.<Object>asList(dp.getSource(), metadata), id);
+            newTags.add(new DataPoint(0, 0, metadata, dp.getSource()));
+        }
+        timestamps[size] = dp.getTimestamp();
+        values[size] = dp.getValue();
+        tags[size] = id;
+        if(++size == BLOCK_SIZE) {
+            writeBlock();
+        }
+    }
+
+    private void writeBlock() throws IOException {
+        if(size == 0) {
+            return;
+        }
+        out.writeInt(size);
+        out.writeInt(newTags.size());
+        for(DataPoint tagSet : newTags) {
+            writeString(tagSet.getSource());
+            Map<String, String> metadata = tagSet.getMetadata();
+            out.writeInt(metadata == null?-1:metadata.size());
+            if(metadata != null) {
+                for (Map.Entry<String, String> kv : metadata.entrySet()) {
+                    writeString(kv.getKey());
+                    writeString(kv.getValue());
+                }
+            }
+        }
+        newTags.clear();
+        block.reset();
+        for(int i = 0;i < size;++i) {
+            long delta = timestamps[i] - lastTimestamp;
+            writeVarLong(block, (delta << 1) ^ (delta >> 63));
+            lastTimestamp = timestamps[i];
+        }
+        for(int i = 0;i < size;++i) {
+            long bits = Double.doubleToRawLongBits(values[i]);
+            for(int shift = 56;shift >= 0;shift -= 8) {
+                block.write((int)(bits >>> shift));
+            }
+        }
+        for(int i = 0;i < size;++i) {
+            writeVarLong(block, tags[i]);
+        }
+        out.writeInt(block.size());
+        block.writeTo(out);
+        size = 0;
+    }
+
+    private void writeString(String s) throws IOException {
+        out.writeBoolean(s != null);
+        if(s != null) {
+            //not writeUTF, which is limited to 64KB
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            writeVarLong(out, bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    private static void writeVarLong(OutputStream out, long v) throws IOException {
+        while((v & ~0x7FL) != 0) {
+            out.write((int)((v & 0x7F) | 0x80));
+            v >>>= 7;
+        }
+        out.write((int)v);
+    }
+
+    /**
+     * Write out the last block and the end of the file.
+     */
+    @Override
+    public void close() throws IOException {
+        writeBlock();
+        out.writeInt(0);
+        out.close();
+    }
+}
@@ -0,0 +1,203 @@
+package com.caseystella.analytics.extractor;
+
+import com.caseystella.analytics.DataPoint;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A DataPointExtractorConfig compiled for extraction.  The fields each measurement reads are resolved once up
+ * front, fields are read out of the converted key and value rather than a union of the two, and metadata values
+ * are sanitized in a single pass against a table of replacements, reusing a builder per thread.
+ */
+public class ExtractionPlan {
+    private static final String[] REPLACEMENTS = new String[128];
+    static {
+        REPLACEMENTS[' '] = "_";
+        REPLACEMENTS['&'] = "and";
+        REPLACEMENTS['/'] = "_";
+        for(char c : ",()[]{}?'\"".toCharArray()) {
+            REPLACEMENTS[c] = "";
+        }
+    }
+
+    private static final ThreadLocal<StringBuilder> BUILDER = new ThreadLocal<StringBuilder>() {
+        @Override
+        protected StringBuilder initialValue() {
+            return new StringBuilder();
+        }
+    };
+
+    private static class CompiledMeasurement {
+        DataPointExtractorConfig.Measurement measurement;
+        String source;
+        String[] sourceFields;
+        String timestampField;
+        String measurementField;
+        //null if every other field is metadata
+        String[] metadataFields;
+
+        CompiledMeasurement(DataPointExtractorConfig.Measurement measurement) {
+            this.measurement = measurement;
+            source = measurement.getSource();
+            if(source == null && measurement.getSourceFields() != null) {
+                sourceFields = measurement.getSourceFields().toArray(new String[0]);
+            }
+            timestampField = measurement.getTimestampField();
+            measurementField = measurement.getMeasurementField();
+            if(measurement.getMetadataFields() != null && measurement.getMetadataFields().size() > 0) {
+                metadataFields = measurement.getMetadataFields().toArray(new String[0]);
+            }
+        }
+    }
+
+    private final CompiledMeasurement[] measurements;
+
+    public ExtractionPlan(DataPointExtractorConfig config) {
+        List<DataPointExtractorConfig.Measurement> configured = config.getMeasurements();
+        measurements = new CompiledMeasurement[configured == null?0:configured.size()];
+        for(int i = 0;i < measurements.length;++i) {
+            measurements[i] = new CompiledMeasurement(configured.get(i));
+        }
+    }
+
+    /**
+     * Replace or drop the characters which cannot appear in a tag value.  Values which need nothing done are
+     * returned as is.
+     */
+    public static String sanitize(String in) {
+        int n = in.length();
+        int i = 0;
+        for(;i < n;++i) {
+            char c = in.charAt(i);
+            if(c < REPLACEMENTS.length && REPLACEMENTS[c] != null) {
+                break;
+            }
+        }
+        if(i == n) {
+            return in;
+        }
+        StringBuilder sb = BUILDER.get();
+        sb.setLength(0);
+        sb.append(in, 0, i);
+        for(;i < n;++i) {
+            char c = in.charAt(i);
+            if(c < REPLACEMENTS.length && REPLACEMENTS[c] != null) {
+                sb.append(REPLACEMENTS[c]);
+            }
+            else {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * The value of a field, with the value taking precedence over the key as it would in their union.
+     */
+    private static Object get(Map<String, Object> keyMap, Map<String, Object> valueMap, String field) {
+        if(valueMap != null) {
+            Object ret = valueMap.get(field);
+            if(ret != null || valueMap.containsKey(field)) {
+                return ret;
+            }
+        }
+        return keyMap == null?null:keyMap.get(field);
+    }
+
+    private static Map<String, Object> union(Map<String, Object> keyMap, Map<String, Object> valueMap) {
+        Map<String, Object> ret = new HashMap<>();
+        if(keyMap != null) {
+            ret.putAll(keyMap);
+        }
+        if(valueMap != null) {
+            ret.putAll(valueMap);
+        }
+        return ret;
+    }
+
+    private static Object getRequired(Map<String, Object> keyMap, Map<String, Object> valueMap, String field) {
+        Object ret = get(keyMap, valueMap, field);
+        if(ret == null) {
+            throw new RuntimeException("Unable to find " + field + " in " + union(keyMap, valueMap));
+        }
+        return ret;
+    }
+
+    private static void putMetadata(Map<String, String> metadata, String field, Object value) {
+        String sanitized = sanitize(value.toString());
+        if(sanitized.length() > 0) {
+            metadata.put(field, sanitized);
+        }
+    }
+
+    public List<DataPoint> extract(Map<String, Object> keyMap, Map<String, Object> valueMap, boolean failOnMalformed) {
+        if((keyMap == null || keyMap.isEmpty()) && (valueMap == null || valueMap.isEmpty())) {
+            return new ArrayList<>();
+        }
+        List<DataPoint> ret = new ArrayList<>(measurements.length);
+        for(CompiledMeasurement measurement : measurements) {
+            try {
+                DataPoint dp = new DataPoint();
+                if (measurement.source != null) {
+                    dp.setSource(measurement.source);
+                } else {
+                    StringBuilder sb = BUILDER.get();
+                    sb.setLength(0);
+                    for (int i = 0;i < measurement.sourceFields.length;++i) {
+                        if(i > 0) {
+                            sb.append('.');
+                        }
+                        sb.append(getRequired(keyMap, valueMap, measurement.sourceFields[i]).toString());
+                    }
+                    dp.setSource(sb.toString());
+                }
+                Object tsObj = getRequired(keyMap, valueMap, measurement.timestampField);
+                dp.setTimestamp(measurement.measurement.getTimestampConverter().convert(tsObj, measurement.measurement.getTimestampConverterConfig()));
+
+                Object measurementObj = getRequired(keyMap, valueMap, measurement.measurementField);
+                dp.setValue(measurement.measurement.getMeasurementConverter().convert(measurementObj, measurement.measurement.getMeasurementConverterConfig()));
+
+                Map<String, String> metadata = new HashMap<>();
+                if (measurement.metadataFields != null) {
+                    for (String field : measurement.metadataFields) {
+                        Object o = get(keyMap, valueMap, field);
+                        if(o == null) {
+                            throw new RuntimeException("Unable to find " + field + " in " + union(keyMap, valueMap));
+                        }
+                        putMetadata(metadata, field, o);
+                    }
+                } else {
+                    if(keyMap != null) {
+                        for (Map.Entry<String, Object> kv : keyMap.entrySet()) {
+                            if(valueMap == null || !valueMap.containsKey(kv.getKey())) {
+                                putOtherField(metadata, measurement, kv);
+                            }
+                        }
+                    }
+                    if(valueMap != null) {
+                        for (Map.Entry<String, Object> kv : valueMap.entrySet()) {
+                            putOtherField(metadata, measurement, kv);
+                        }
+                    }
+                }
+                dp.setMetadata(metadata);
+                ret.add(dp);
+            }
+            catch(RuntimeException re) {
+                if(failOnMalformed) {
+                    throw re;
+                }
+            }
+        }
+        return ret;
+    }
+
+    private static void putOtherField(Map<String, String> metadata, CompiledMeasurement measurement, Map.Entry<String, Object> kv) {
+        if (!kv.getKey().equals(measurement.measurementField) && !kv.getKey().equals(measurement.timestampField)) {
+            putMetadata(metadata, kv.getKey(), kv.getValue());
+        }
+    }
+}
@@ -2,9 +2,7 @@ package com.caseystella.analytics.outlier;
 
 import com.caseystella.analytics.DataPoint;
 import com.caseystella.analytics.distribution.TimeRange;
-import com.google.common.base.Joiner;
 
-import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -50,17 +48,17 @@ public class Outlier {
     }
 
     public static String groupingKey(String source, Map<String, String> metadata, List<String> groupingKeys) {
-        List<String> keyParts = new ArrayList<>();
-        keyParts.add(source);
-        if(groupingKeys != null) {
-            for (String gk : groupingKeys) {
-                String k = metadata.get(gk);
-                if (k != null) {
-                    keyParts.add(k);
-                }
+        if(groupingKeys == null || groupingKeys.isEmpty()) {
+            return String.valueOf(source);
+        }
+        StringBuilder key = new StringBuilder(source == null?"null":source);
+        for (int i = 0;i < groupingKeys.size();++i) {
+            String k = metadata.get(groupingKeys.get(i));
+            if (k != null) {
+                key.append('_').append(k);
             }
         }
-        return Joiner.on('_').join(keyParts);
+        return key.toString();
     }
 
     public List<DataPoint> getSample() {
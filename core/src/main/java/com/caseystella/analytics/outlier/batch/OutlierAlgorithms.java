@@ -1,10 +1,12 @@
 package com.caseystella.analytics.outlier.batch;
 
+import com.caseystella.analytics.outlier.batch.rpca.IncrementalRPCAOutlierAlgorithm;
 import com.caseystella.analytics.outlier.batch.rpca.RPCA;
 import com.caseystella.analytics.outlier.batch.rpca.RPCAOutlierAlgorithm;
 
 public enum OutlierAlgorithms {
-    RAD(RPCAOutlierAlgorithm.class);
+    RAD(RPCAOutlierAlgorithm.class)
+    ,INCREMENTAL_RAD(IncrementalRPCAOutlierAlgorithm.class);
 
     Class<? extends OutlierAlgorithm> clazz;
     OutlierAlgorithms(Class<? extends OutlierAlgorithm> clazz) {
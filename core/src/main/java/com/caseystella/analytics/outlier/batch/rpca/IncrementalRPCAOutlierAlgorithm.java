@@ -0,0 +1,176 @@
+package com.caseystella.analytics.outlier.batch.rpca;
+
+import com.caseystella.analytics.DataPoint;
+import com.caseystella.analytics.outlier.Outlier;
+import com.caseystella.analytics.outlier.OutlierMetadataConstants;
+import com.caseystella.analytics.outlier.Severity;
+import com.caseystella.analytics.outlier.batch.OutlierAlgorithm;
+import com.caseystella.analytics.outlier.streaming.OutlierConfig;
+import com.caseystella.analytics.util.ConfigUtil;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * RPCA scoring like the RPCAOutlierAlgorithm, but keeping a SlidingRPCA per grouping key so that each score warm
+ * starts from the key's last solution rather than decomposing its window from nothing.
+ * <ul>
+ *     <li>As a batch algorithm confirming prospective outliers, the window is the sample handed over along with
+ *     the point.  The sample is a reservoir, so only the values which were replaced since the key's last
+ *     confirmation are new to the window.</li>
+ *     <li>As a streaming algorithm, every point slides into a window of its key's last rpca.window points and is
+ *     scored against it, which is affordable for keys with a low rate of points.</li>
+ * </ul>
+ * The same config as the RPCAOutlierAlgorithm applies, along with the window size, the most keys to keep windows
+ * for (the least recently used are dropped) and how many new values there are between redoing the stationarity
+ * test (see SlidingRPCA, defaulting to the window size).  Like the other algorithms, it is not thread-safe.
+ * <p>
+ * The windows belong to the instance, so every point of a key has to go through the same instance for its
+ * warm starts to follow on from each other.  A key split across instances would warm start each from a stale
+ * solution, and each instance would keep its own copy of up to rpca.max_keys windows.  The BatchConfirmer routes
+ * each key to a single worker, and the ConfirmationBolt is grouped by key, for this reason.
+ */
+public class IncrementalRPCAOutlierAlgorithm implements OutlierAlgorithm
+                                                      , com.caseystella.analytics.outlier.streaming.OutlierAlgorithm
+{
+    public static final String WINDOW_CONF = "rpca.window";
+    public static final String MAX_KEYS_CONF = "rpca.max_keys";
+    public static final String TEST_INTERVAL_CONF = "rpca.adf_interval";
+    public static final int DEFAULT_WINDOW = 100;
+    public static final int DEFAULT_MAX_KEYS = 10000;
+
+    private double lpenalty = RPCAOutlierAlgorithm.LPENALTY_DEFAULT;
+    private Double spenalty = null;
+    private boolean isForceDiff = false;
+    private int minRecords = 0;
+    private double threshold = RPCAOutlierAlgorithm.EPSILON;
+    private int window = DEFAULT_WINDOW;
+    private int maxKeys = DEFAULT_MAX_KEYS;
+    private Integer testInterval = null;
+    private List<String> groupingKeys;
+    private transient Map<String, SlidingRPCA> windows;
+
+    private Map<String, SlidingRPCA> getWindows() {
+        if(windows == null) {
+            windows = new LinkedHashMap<String, SlidingRPCA>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, SlidingRPCA> eldest) {
+                    return size() > maxKeys;
+                }
+            };
+        }
+        return windows;
+    }
+
+    private SlidingRPCA newWindow(int size) {
+        return new SlidingRPCA(size, testInterval == null?size:testInterval);
+    }
+
+    private double score(SlidingRPCA window, DataPoint dp) {
+        //like the RPCAOutlierAlgorithm, only the context counts towards the minimum number of records
+        int numNonZero = window.getNumNonZero() - (dp.getValue() > RPCAOutlierAlgorithm.EPSILON?1:0);
+        if(numNonZero > minRecords) {
+            return window.score(lpenalty, spenalty, isForceDiff);
+        }
+        return Double.NaN;
+    }
+
+    private static void setScore(DataPoint dp, double score) {
+        if(dp.getMetadata() == null) {
+            dp.setMetadata(new HashMap<String, String>());
+        }
+        dp.getMetadata().put(OutlierMetadataConstants.REAL_OUTLIER_SCORE.toString(), Math.abs(score) + "");
+    }
+
+    @Override
+    public Outlier analyze(Outlier outlierCandidate, List<DataPoint> context, DataPoint dp) {
+        String key = Outlier.groupingKey(dp, groupingKeys);
+        int size = context.size() + 1;
+        SlidingRPCA window = getWindows().get(key);
+        if(window == null || window.capacity() != size) {
+            window = newWindow(size);
+            for(DataPoint c : context) {
+                window.add(c.getValue());
+            }
+            window.add(dp.getValue());
+            getWindows().put(key, window);
+        }
+        else {
+            int i = 0;
+            for(DataPoint c : context) {
+                window.set(i++, c.getValue());
+            }
+            window.set(i, dp.getValue());
+        }
+        double score = score(window, dp);
+        Severity severity = Severity.NOT_ENOUGH_DATA;
+        if(!Double.isNaN(score)) {
+            severity = Math.abs(score) > threshold?Severity.SEVERE_OUTLIER:Severity.NORMAL;
+        }
+        outlierCandidate.setSeverity(severity);
+        if(severity == Severity.SEVERE_OUTLIER) {
+            setScore(dp, score);
+        }
+        return outlierCandidate;
+    }
+
+    @Override
+    public Outlier analyze(DataPoint dp) {
+        return analyze(Outlier.groupingKey(dp, groupingKeys), dp);
+    }
+
+    @Override
+    public Outlier analyze(String groupingKey, DataPoint dp) {
+        SlidingRPCA window = getWindows().get(groupingKey);
+        if(window == null) {
+            window = newWindow(this.window);
+            getWindows().put(groupingKey, window);
+        }
+        window.add(dp.getValue());
+        Double score = null;
+        Severity severity = Severity.NOT_ENOUGH_DATA;
+        if(window.size() == window.capacity()) {
+            double s = score(window, dp);
+            if(!Double.isNaN(s)) {
+                score = Math.abs(s);
+                severity = score > threshold?Severity.SEVERE_OUTLIER:Severity.NORMAL;
+                if(severity == Severity.SEVERE_OUTLIER) {
+                    setScore(dp, s);
+                }
+            }
+        }
+        return new Outlier(dp, severity, null, score, window.size());
+    }
+
+    @Override
+    public void configure(OutlierConfig config) {
+        Map<String, Object> conf = config.getConfig();
+        groupingKeys = config.getGroupingKeys();
+        if(conf.get(RPCAOutlierAlgorithm.THRESHOLD_CONF) != null) {
+            threshold = ConfigUtil.INSTANCE.coerceDouble(RPCAOutlierAlgorithm.THRESHOLD_CONF, conf.get(RPCAOutlierAlgorithm.THRESHOLD_CONF));
+        }
+        if(conf.get(RPCAOutlierAlgorithm.LPENALTY_CONFIG) != null) {
+            lpenalty = ConfigUtil.INSTANCE.coerceDouble(RPCAOutlierAlgorithm.LPENALTY_CONFIG, conf.get(RPCAOutlierAlgorithm.LPENALTY_CONFIG));
+        }
+        if(conf.get(RPCAOutlierAlgorithm.SPENALTY_CONFIG) != null) {
+            spenalty = ConfigUtil.INSTANCE.coerceDouble(RPCAOutlierAlgorithm.SPENALTY_CONFIG, conf.get(RPCAOutlierAlgorithm.SPENALTY_CONFIG));
+        }
+        if(conf.get(RPCAOutlierAlgorithm.FORCE_DIFF_CONFIG) != null) {
+            isForceDiff = ConfigUtil.INSTANCE.coerceBoolean(RPCAOutlierAlgorithm.FORCE_DIFF_CONFIG, conf.get(RPCAOutlierAlgorithm.FORCE_DIFF_CONFIG));
+        }
+        if(conf.get(RPCAOutlierAlgorithm.MIN_RECORDS_CONFIG) != null) {
+            minRecords = ConfigUtil.INSTANCE.coerceInteger(RPCAOutlierAlgorithm.MIN_RECORDS_CONFIG, conf.get(RPCAOutlierAlgorithm.MIN_RECORDS_CONFIG));
+        }
+        if(conf.get(WINDOW_CONF) != null) {
+            window = ConfigUtil.INSTANCE.coerceInteger(WINDOW_CONF, conf.get(WINDOW_CONF));
+        }
+        if(conf.get(TEST_INTERVAL_CONF) != null) {
+            testInterval = ConfigUtil.INSTANCE.coerceInteger(TEST_INTERVAL_CONF, conf.get(TEST_INTERVAL_CONF));
+        }
+        if(conf.get(MAX_KEYS_CONF) != null) {
+            maxKeys = ConfigUtil.INSTANCE.coerceInteger(MAX_KEYS_CONF, conf.get(MAX_KEYS_CONF));
+        }
+    }
+}
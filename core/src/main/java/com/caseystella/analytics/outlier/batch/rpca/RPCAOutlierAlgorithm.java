@@ -15,15 +15,15 @@ import java.util.HashMap;
 import java.util.List;
 
 public class RPCAOutlierAlgorithm implements OutlierAlgorithm{
-    private static final double EPSILON = 1e-12;
-    private static final String THRESHOLD_CONF = "rpca.threshold";
+    static final double EPSILON = 1e-12;
+    public static final String THRESHOLD_CONF = "rpca.threshold";
 
-    private final double LPENALTY_DEFAULT = 1;
-    private final double SPENALTY_DEFAULT = 1.4;
-    private final String LPENALTY_CONFIG = "lpenalty";
-    private final String SPENALTY_CONFIG = "spenalty";
-    private final String FORCE_DIFF_CONFIG = "forceDiff";
-    private final String MIN_RECORDS_CONFIG = "minRecords";
+    public static final double LPENALTY_DEFAULT = 1;
+    public static final double SPENALTY_DEFAULT = 1.4;
+    public static final String LPENALTY_CONFIG = "lpenalty";
+    public static final String SPENALTY_CONFIG = "spenalty";
+    public static final String FORCE_DIFF_CONFIG = "forceDiff";
+    public static final String MIN_RECORDS_CONFIG = "minRecords";
 
     private Double  lpenalty;
     private Double  spenalty;
@@ -140,17 +140,11 @@ public class RPCAOutlierAlgorithm implements OutlierAlgorithm{
                 inputArrayTransformed[n] = (inputArrayTransformed[n]-mean)/stdev;
             }
 
-            // Read Input Data into Array
-            // Read Input Data into Array
-            double[][] input2DArray = new double[nRows][nCols];
-            input2DArray = VectorToMatrix(inputArrayTransformed, nRows, nCols);
+            // With a single column, the SVD in each iteration is just a norm, so skip building the matrix
+            VectorRPCA rSVD = new VectorRPCA(inputArrayTransformed, this.lpenalty, this.spenalty);
 
-            RPCA rSVD = new RPCA(input2DArray, this.lpenalty, this.spenalty);
-
-            double[][] outputE = rSVD.getE().getData();
-            double[][] outputS = rSVD.getS().getData();
-            double[][] outputL = rSVD.getL().getData();
-            return outputS[nRows-1][0];
+            double[] outputS = rSVD.getS();
+            return outputS[nRows-1];
         }
         else {
             return Double.NaN;
@@ -0,0 +1,133 @@
+package com.caseystella.analytics.outlier.batch.rpca;
+
+/**
+ * RPCA over a window of a series which is kept, along with its last solution, from one score to the next.  As
+ * the window slides (or has values replaced, as in a reservoir sample) the sparse part of the values which are
+ * still in it is kept and the next solve warm starts from it, rather than throwing the previous solution away
+ * and starting over.  The stationarity test deciding whether to difference the series costs far more than the
+ * decomposition, so it is only redone once testInterval values have changed (by default, as many as the window
+ * holds).  Redoing it every time gives the same scores as decomposing from nothing.  The window is prepared the
+ * same way as for the RPCAOutlierAlgorithm: differenced if need be, then scaled to zero mean and unit variance.
+ */
+public class SlidingRPCA {
+    private static final double EPSILON = 1e-12;
+    private double[] values;
+    private double[] sparse;
+    private int start = 0;
+    private int size = 0;
+    private int numNonZero = 0;
+    private int numChanged = 0;
+    private boolean needsDiff = false;
+    private boolean tested = false;
+    private double mu = Double.NaN;
+    private int testInterval;
+
+    public SlidingRPCA(int capacity) {
+        this(capacity, capacity);
+    }
+
+    public SlidingRPCA(int capacity, int testInterval) {
+        values = new double[capacity];
+        sparse = new double[capacity];
+        this.testInterval = testInterval;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int capacity() {
+        return values.length;
+    }
+
+    /**
+     * The number of values in the window which are above zero.
+     */
+    public int getNumNonZero() {
+        return numNonZero;
+    }
+
+    /**
+     * Add a value at the end of the window, dropping the oldest value once the window is full.
+     */
+    public void add(double value) {
+        if(size == values.length) {
+            numNonZero -= values[start] > EPSILON?1:0;
+            start = (start + 1) % values.length;
+            size--;
+        }
+        int pos = (start + size) % values.length;
+        values[pos] = value;
+        sparse[pos] = 0;
+        numNonZero += value > EPSILON?1:0;
+        numChanged++;
+        size++;
+    }
+
+    /**
+     * Replace the i-th oldest value in the window.
+     */
+    public void set(int i, double value) {
+        int pos = (start + i) % values.length;
+        if(Double.doubleToLongBits(values[pos]) == Double.doubleToLongBits(value)) {
+            return;
+        }
+        numNonZero += (value > EPSILON?1:0) - (values[pos] > EPSILON?1:0);
+        values[pos] = value;
+        sparse[pos] = 0;
+        numChanged++;
+    }
+
+    /**
+     * The sparse part of the newest value in the window, which is its outlier score.
+     * @param spenalty The penalty on the sparse part, or null to default it from the size of the window.
+     */
+    public double score(double lpenalty, Double spenalty, boolean forceDiff) {
+        double[] x = new double[size];
+        for(int i = 0;i < size;++i) {
+            x[i] = values[(start + i) % values.length];
+        }
+        if(!tested || numChanged >= testInterval) {
+            needsDiff = new AugmentedDickeyFuller(x).isNeedsDiff();
+            tested = true;
+            numChanged = 0;
+        }
+        if(forceDiff || needsDiff) {
+            for(int i = size - 1;i > 0;--i) {
+                x[i] -= x[i - 1];
+            }
+            x[0] = 0;
+        }
+        double mean = 0;
+        for(int i = 0;i < size;++i) {
+            mean += x[i];
+        }
+        mean /= size;
+        double stdev = 0;
+        for(int i = 0;i < size;++i) {
+            stdev += (x[i] - mean)*(x[i] - mean);
+        }
+        stdev = Math.sqrt(stdev / (size - 1));
+        for(int i = 0;i < size;++i) {
+            x[i] = (x[i] - mean)/stdev;
+        }
+        double sPenalty = spenalty == null?RPCAOutlierAlgorithm.SPENALTY_DEFAULT/Math.sqrt(size):spenalty;
+        VectorRPCA rpca;
+        if(Double.isNaN(mu)) {
+            rpca = new VectorRPCA(x, lpenalty, sPenalty);
+        }
+        else {
+            double[] initialS = new double[size];
+            for(int i = 0;i < size;++i) {
+                initialS[i] = sparse[(start + i) % values.length];
+            }
+            rpca = new VectorRPCA(x, lpenalty, sPenalty, initialS, mu);
+        }
+        double[] s = rpca.getS();
+        for(int i = 0;i < size;++i) {
+            sparse[(start + i) % values.length] = s[i];
+        }
+        mu = rpca.getMu();
+        return s[size - 1];
+    }
+}
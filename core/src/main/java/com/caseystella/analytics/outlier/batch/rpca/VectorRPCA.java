@@ -0,0 +1,184 @@
+package com.caseystella.analytics.outlier.batch.rpca;
+
+/**
+ * RPCA specialized to a single column, which is how the outlier algorithm always calls it.  The singular value
+ * decomposition of an n x 1 matrix is just its norm (U is the column scaled to unit length and V is 1), so
+ * thresholding the singular value scales the column rather than rebuilding it from a decomposition.  The
+ * iteration is otherwise the same as RPCA's, worked in place on arrays which are allocated once.
+ */
+public class VectorRPCA {
+
+  private double[] X;
+  private double[] L;
+  private double[] S;
+  private double[] E;
+
+  private double lpenalty;
+  private double spenalty;
+  private double mu;
+  private int iterations = 0;
+
+  private static final int MAX_ITERS = 228;
+
+  public VectorRPCA(double[] data, double lpenalty, double spenalty) {
+    this.X = data;
+    this.lpenalty = lpenalty;
+    this.spenalty = spenalty;
+    this.L = new double[X.length];
+    this.S = new double[X.length];
+    this.E = new double[X.length];
+    computeRSVD(X.length / (4 * l1norm(X)), false);
+  }
+
+  /**
+   * Warm start from a previous solution's S and mu, e.g. for a window which has only changed in a few places
+   * since it was last solved.  The iteration then usually settles within a few rounds rather than starting over.
+   */
+  public VectorRPCA(double[] data, double lpenalty, double spenalty, double[] initialS, double initialMu) {
+    this.X = data;
+    this.lpenalty = lpenalty;
+    this.spenalty = spenalty;
+    this.L = new double[X.length];
+    this.S = initialS.clone();
+    this.E = new double[X.length];
+    computeRSVD(initialMu, true);
+  }
+
+  private void computeRSVD(double mu, boolean warm) {
+    if(warm) {
+      computeL(mu);
+    }
+    double objPrev = 0.5*sumOfSquares(X);
+    double obj = objPrev;
+    double tol = 1e-8 * objPrev;
+    double diff = 2 * tol;
+    int iter = 0;
+
+    while(diff > tol && iter < MAX_ITERS) {
+      double nuclearNorm = computeS(mu);
+      double l1Norm = computeL(mu);
+      double l2Norm = computeE();
+
+      obj = 0.5*l2Norm + nuclearNorm + l1Norm;
+      diff = Math.abs(objPrev - obj);
+      objPrev = obj;
+
+      mu = computeDynamicMu();
+
+      iter = iter + 1;
+    }
+    this.mu = mu;
+    this.iterations = iter;
+  }
+
+  private static double l1norm(double[] x) {
+    double l1norm = 0;
+    for (int i = 0; i < x.length; i++) {
+      l1norm += Math.abs(x[i]);
+    }
+    return l1norm;
+  }
+
+  private static double sumOfSquares(double[] x) {
+    double sum = 0;
+    for (int i = 0; i < x.length; i++) {
+      sum += x[i]*x[i];
+    }
+    return sum;
+  }
+
+  /**
+   * L = (X - S) with its one singular value, the norm, soft thresholded.
+   */
+  private double computeL(double mu) {
+    double LPenalty = lpenalty * mu;
+    for(int i = 0; i < X.length; i++) {
+      L[i] = X[i] - S[i];
+    }
+    double singularValue = Math.sqrt(sumOfSquares(L));
+    double penalized = Math.max(singularValue - LPenalty, 0);
+    double scale = singularValue > 0 ? penalized / singularValue : 0;
+    for(int i = 0; i < L.length; i++) {
+      L[i] *= scale;
+    }
+    return penalized * LPenalty;
+  }
+
+  private double computeS(double mu) {
+    double SPenalty = spenalty * mu;
+    double l1norm = 0;
+    for(int i = 0; i < X.length; i++) {
+      double x = X[i] - L[i];
+      S[i] = Math.signum(x) * Math.max(Math.abs(x) - SPenalty, 0);
+      l1norm += Math.abs(S[i]);
+    }
+    return l1norm * SPenalty;
+  }
+
+  private double computeE() {
+    for(int i = 0; i < X.length; i++) {
+      E[i] = X[i] - L[i] - S[i];
+    }
+    return sumOfSquares(E);
+  }
+
+  private double computeDynamicMu() {
+    double E_sd = standardDeviation(E);
+    double mu = E_sd * Math.sqrt(2*X.length);
+
+    return Math.max(.01, mu);
+  }
+
+  /**
+   * The bias corrected standard deviation, computed with the same corrected two pass algorithm as
+   * DescriptiveStatistics so that the penalties match the general path.
+   */
+  private static double standardDeviation(double[] x) {
+    int n = x.length;
+    if(n < 2) {
+      return 0;
+    }
+    double sum = 0;
+    for(int i = 0; i < n; i++) {
+      sum += x[i];
+    }
+    double mean = sum / n;
+    double correction = 0;
+    for(int i = 0; i < n; i++) {
+      correction += x[i] - mean;
+    }
+    mean += correction / n;
+    double accum = 0;
+    double dev = 0;
+    for(int i = 0; i < n; i++) {
+      double d = x[i] - mean;
+      accum += d * d;
+      dev += d;
+    }
+    return Math.sqrt((accum - (dev * dev / n)) / (n - 1));
+  }
+
+  public double[] getL() {
+    return L;
+  }
+
+  public double[] getS() {
+    return S;
+  }
+
+  public double[] getE() {
+    return E;
+  }
+
+  /**
+   * The mu the iteration finished with, to warm start from.
+   */
+  public double getMu() {
+    return mu;
+  }
+
+  public int getIterations() {
+    return iterations;
+  }
+
+}
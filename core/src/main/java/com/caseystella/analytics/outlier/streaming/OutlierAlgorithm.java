@@ -10,6 +10,11 @@ import java.io.Serializable;
  */
 public interface OutlierAlgorithm extends Serializable {
     Outlier analyze(DataPoint dp);
+
+    /**
+     * Analyze a data point whose grouping key (see Outlier.groupingKey) has already been computed upstream.
+     */
+    Outlier analyze(String groupingKey, DataPoint dp);
     void configure(OutlierConfig configStr);
 
 }
@@ -1,9 +1,11 @@
 package com.caseystella.analytics.outlier.streaming;
 
+import com.caseystella.analytics.outlier.batch.rpca.IncrementalRPCAOutlierAlgorithm;
 import com.caseystella.analytics.outlier.streaming.mad.SketchyMovingMAD;
 
 public enum OutlierAlgorithms {
     SKETCHY_MOVING_MAD(SketchyMovingMAD.class)
+    ,INCREMENTAL_RAD(IncrementalRPCAOutlierAlgorithm.class)
     ;
     Class<? extends OutlierAlgorithm> clazz;
     OutlierAlgorithms(Class<? extends OutlierAlgorithm> clazz) {
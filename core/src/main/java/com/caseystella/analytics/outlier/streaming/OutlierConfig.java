@@ -3,6 +3,7 @@ package com.caseystella.analytics.outlier.streaming;
 import com.caseystella.analytics.distribution.GlobalStatistics;
 import com.caseystella.analytics.distribution.config.RotationConfig;
 import com.caseystella.analytics.distribution.scaling.ScalingFunctions;
+import com.caseystella.analytics.distribution.sketch.QuantileSketches;
 import com.google.common.collect.ImmutableList;
 
 import java.io.Serializable;
@@ -17,6 +18,7 @@ public class OutlierConfig implements Serializable {
     private OutlierAlgorithm sketchyOutlierAlgorithm;
     private com.caseystella.analytics.outlier.batch.OutlierAlgorithm batchOutlierAlgorithm;
     private ScalingFunctions scalingFunction = null;
+    private QuantileSketches sketch = QuantileSketches.QTREE;
     private List<Double> percentilesToTrack = ImmutableList.of(0.50d, 0.75d, 0.90d, 0.95d, 0.99d);
     private List<String> groupingKeys;
     private Map<String, Object> config = new HashMap<>();
@@ -87,6 +89,14 @@ public class OutlierConfig implements Serializable {
         this.scalingFunction = scalingFunction;
     }
 
+    public QuantileSketches getSketch() {
+        return sketch;
+    }
+
+    public void setSketch(QuantileSketches sketch) {
+        this.sketch = sketch;
+    }
+
     public RotationConfig getRotationPolicy() {
         return rotationPolicy;
     }
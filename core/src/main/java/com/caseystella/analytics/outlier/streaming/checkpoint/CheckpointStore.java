@@ -0,0 +1,23 @@
+package com.caseystella.analytics.outlier.streaming.checkpoint;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Durable storage for the checkpoints of one bolt task.  A checkpoint is either full, which replaces everything
+ * written before it, or a delta on top of the previous checkpoints.
+ */
+public interface CheckpointStore {
+    /**
+     * @param name A name unique to the task whose state is stored
+     */
+    void configure(String name, Map<String, Object> config);
+
+    void write(byte[] checkpoint, boolean full) throws IOException;
+
+    /**
+     * @return The last full checkpoint followed by the deltas written after it, in the order they were written.
+     */
+    List<byte[]> read() throws IOException;
+}
@@ -0,0 +1,40 @@
+package com.caseystella.analytics.outlier.streaming.checkpoint;
+
+public enum CheckpointStores {
+    LOCAL_FILE(LocalFileCheckpointStore.class)
+    ;
+    public static final String STORE_CONF = "checkpoint.store";
+    public static final String INTERVAL_SECS_CONF = "checkpoint.intervalSecs";
+    public static final String FULL_EVERY_CONF = "checkpoint.fullEvery";
+    Class<? extends CheckpointStore> clazz;
+    CheckpointStores(Class<? extends CheckpointStore> clazz) {
+        this.clazz = clazz;
+    }
+
+    public CheckpointStore newInstance()  {
+        try {
+            return clazz.newInstance();
+        } catch (InstantiationException e) {
+            throw new RuntimeException("Unable to instantiate checkpoint store.", e);
+        } catch (IllegalAccessException e) {
+            throw new RuntimeException("Unable to instantiate checkpoint store.", e);
+        }
+    }
+
+    public static CheckpointStore newInstance(String checkpointStore) {
+        try {
+            return CheckpointStores.valueOf(checkpointStore).newInstance();
+        }
+        catch(Throwable t) {
+            try {
+                return (CheckpointStore) CheckpointStore.class.forName(checkpointStore).newInstance();
+            } catch (InstantiationException e) {
+                throw new RuntimeException("Unable to instantiate " + checkpointStore + " or find it in the CheckpointStores enum", e);
+            } catch (IllegalAccessException e) {
+                throw new RuntimeException("Unable to instantiate " + checkpointStore + " or find it in the CheckpointStores enum", e);
+            } catch (ClassNotFoundException e) {
+                throw new RuntimeException("Unable to instantiate " + checkpointStore + " or find it in the CheckpointStores enum", e);
+            }
+        }
+    }
+}
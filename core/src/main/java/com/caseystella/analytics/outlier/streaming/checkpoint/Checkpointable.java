@@ -0,0 +1,22 @@
+package com.caseystella.analytics.outlier.streaming.checkpoint;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Implemented by streaming outlier algorithms whose per-key state can be written out and restored,
+ * so that a restarted worker does not have to warm up again.
+ */
+public interface Checkpointable {
+    /**
+     * Write the state of the keys which changed since the last checkpoint, or of every key if full is set.
+     * @return The number of keys written
+     */
+    int checkpoint(DataOutput out, boolean full) throws IOException;
+
+    /**
+     * Read state written by checkpoint, replacing the state of the keys it contains.
+     */
+    void restore(DataInput in) throws IOException;
+}
@@ -0,0 +1,140 @@
+package com.caseystella.analytics.outlier.streaming.checkpoint;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Keeps checkpoints as files in a local directory.  Every full checkpoint starts a new generation,
+ * named NAME.GENERATION.full, and the deltas on top of it are named NAME.GENERATION.delta.SEQUENCE.
+ * Files are written under a temporary name and renamed into place, so a crash mid-write never leaves
+ * a partial checkpoint behind, and older generations are only removed once a newer full checkpoint exists.
+ */
+public class LocalFileCheckpointStore implements CheckpointStore {
+    public static final String DIRECTORY_CONF = "checkpoint.dir";
+    private static final String FULL_SUFFIX = "full";
+    private static final String DELTA_SUFFIX = "delta";
+    private File directory;
+    private String name;
+    private long generation = -1;
+    private long sequence = 0;
+
+    @Override
+    public void configure(String name, Map<String, Object> config) {
+        Object dir = config.get(DIRECTORY_CONF);
+        if(dir == null) {
+            throw new IllegalStateException("You must specify " + DIRECTORY_CONF + " to checkpoint to local files.");
+        }
+        this.directory = new File(dir.toString());
+        if(!directory.exists() && !directory.mkdirs()) {
+            throw new IllegalStateException("Unable to create checkpoint directory " + directory);
+        }
+        this.name = name;
+        this.generation = latestGeneration();
+        this.sequence = deltas(generation).size();
+    }
+
+    @Override
+    public void write(byte[] checkpoint, boolean full) throws IOException {
+        if(full || generation < 0) {
+            long newGeneration = generation + 1;
+            writeAtomically(new File(directory, name + "." + newGeneration + "." + FULL_SUFFIX), checkpoint);
+            long oldGeneration = generation;
+            generation = newGeneration;
+            sequence = 0;
+            removeGenerationsUpTo(oldGeneration);
+        }
+        else {
+            writeAtomically(new File(directory, name + "." + generation + "." + DELTA_SUFFIX + "." + sequence++), checkpoint);
+        }
+    }
+
+    @Override
+    public List<byte[]> read() throws IOException {
+        List<byte[]> ret = new ArrayList<>();
+        if(generation < 0) {
+            return ret;
+        }
+        ret.add(Files.readAllBytes(new File(directory, name + "." + generation + "." + FULL_SUFFIX).toPath()));
+        for(File delta : deltas(generation).values()) {
+            ret.add(Files.readAllBytes(delta.toPath()));
+        }
+        return ret;
+    }
+
+    private void writeAtomically(File target, byte[] data) throws IOException {
+        File tmp = new File(directory, target.getName() + ".tmp");
+        FileOutputStream out = new FileOutputStream(tmp);
+        try {
+            out.write(data);
+            out.getFD().sync();
+        }
+        finally {
+            out.close();
+        }
+        Files.move(tmp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private String[] parse(File f) {
+        String fileName = f.getName();
+        if(!fileName.startsWith(name + ".") || fileName.endsWith(".tmp")) {
+            return null;
+        }
+        String[] parts = fileName.substring(name.length() + 1).split("\\.");
+        try {
+            for(int i = 0;i < parts.length;i += 2) {
+                Long.parseLong(parts[i]);
+            }
+        }
+        catch(NumberFormatException nfe) {
+            return null;
+        }
+        return parts;
+    }
+
+    private long latestGeneration() {
+        long latest = -1;
+        File[] files = directory.listFiles();
+        if(files != null) {
+            for (File f : files) {
+                String[] parts = parse(f);
+                if (parts != null && parts.length == 2 && parts[1].equals(FULL_SUFFIX)) {
+                    latest = Math.max(latest, Long.parseLong(parts[0]));
+                }
+            }
+        }
+        return latest;
+    }
+
+    private TreeMap<Long, File> deltas(long gen) {
+        TreeMap<Long, File> ret = new TreeMap<>();
+        File[] files = directory.listFiles();
+        if(files != null) {
+            for (File f : files) {
+                String[] parts = parse(f);
+                if (parts != null && parts.length == 3 && parts[1].equals(DELTA_SUFFIX) && Long.parseLong(parts[0]) == gen) {
+                    ret.put(Long.parseLong(parts[2]), f);
+                }
+            }
+        }
+        return ret;
+    }
+
+    private void removeGenerationsUpTo(long gen) {
+        File[] files = directory.listFiles();
+        if(files != null) {
+            for (File f : files) {
+                String[] parts = parse(f);
+                if (parts != null && parts.length >= 2 && Long.parseLong(parts[0]) <= gen) {
+                    f.delete();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.caseystella.analytics.outlier.streaming.mad;
+
+import com.caseystella.analytics.distribution.Distribution;
+import com.caseystella.analytics.distribution.GlobalStatistics;
+import com.caseystella.analytics.distribution.sketch.QuantileSketchFactory;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * The state kept per grouping key by SketchyMovingMAD: the distribution of the values, of their absolute
+ * deviations from the median and of the modified z-scores, looked up together under one key.
+ */
+public class MADState {
+    private String key;
+    private Distribution.Context valueDistribution;
+    private Distribution.Context medianDistribution;
+    private Distribution.Context zScoreDistribution;
+    /**
+     * Whether the state changed since it was last checkpointed.
+     */
+    private boolean dirty = false;
+
+    public MADState(String key, int reservoirSize, double decay, QuantileSketchFactory sketchFactory) {
+        this.key = key;
+        this.valueDistribution = new Distribution.Context(reservoirSize, decay, sketchFactory);
+        this.medianDistribution = new Distribution.Context(0, 0, sketchFactory);
+        this.zScoreDistribution = new Distribution.Context(0, 0, sketchFactory);
+    }
+
+    private MADState(String key, Distribution.Context valueDistribution, Distribution.Context medianDistribution, Distribution.Context zScoreDistribution) {
+        this.key = key;
+        this.valueDistribution = valueDistribution;
+        this.medianDistribution = medianDistribution;
+        this.zScoreDistribution = zScoreDistribution;
+    }
+
+    public void write(DataOutput out) throws IOException {
+        out.writeUTF(key);
+        valueDistribution.write(out);
+        medianDistribution.write(out);
+        zScoreDistribution.write(out);
+    }
+
+    /**
+     * @param stats The global statistics used to scale the values; the deviations and z-scores are never scaled.
+     */
+    public static MADState read(DataInput in, GlobalStatistics stats, QuantileSketchFactory sketchFactory) throws IOException {
+        String key = in.readUTF();
+        Distribution.Context valueDistribution = Distribution.Context.read(in, stats, sketchFactory);
+        Distribution.Context medianDistribution = Distribution.Context.read(in, null, sketchFactory);
+        Distribution.Context zScoreDistribution = Distribution.Context.read(in, null, sketchFactory);
+        return new MADState(key, valueDistribution, medianDistribution, zScoreDistribution);
+    }
+
+    public boolean isDirty() {
+        return dirty;
+    }
+
+    public void setDirty(boolean dirty) {
+        this.dirty = dirty;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public Distribution.Context getValueDistribution() {
+        return valueDistribution;
+    }
+
+    public Distribution.Context getMedianDistribution() {
+        return medianDistribution;
+    }
+
+    public Distribution.Context getZScoreDistribution() {
+        return zScoreDistribution;
+    }
+}
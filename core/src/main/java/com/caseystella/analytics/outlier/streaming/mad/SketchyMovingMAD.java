@@ -5,26 +5,37 @@ import com.caseystella.analytics.outlier.Outlier;
 import com.caseystella.analytics.distribution.Distribution;
 import com.caseystella.analytics.distribution.scaling.ScalingFunctions;
 import com.caseystella.analytics.distribution.SimpleTimeRange;
+import com.caseystella.analytics.distribution.sketch.QuantileSketchFactory;
 import com.caseystella.analytics.outlier.OutlierMetadataConstants;
 import com.caseystella.analytics.outlier.streaming.OutlierAlgorithm;
 import com.caseystella.analytics.outlier.streaming.OutlierConfig;
+import com.caseystella.analytics.outlier.streaming.checkpoint.Checkpointable;
+import com.caseystella.analytics.outlier.streaming.state.HasStateStore;
+import com.caseystella.analytics.outlier.streaming.state.StateStore;
+import com.caseystella.analytics.outlier.streaming.state.StateStores;
+import com.caseystella.analytics.outlier.streaming.state.UnboundedStateStore;
 import com.caseystella.analytics.outlier.Severity;
 import com.caseystella.analytics.util.ConfigUtil;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.*;
 
-public class SketchyMovingMAD implements OutlierAlgorithm{
+public class SketchyMovingMAD implements OutlierAlgorithm, HasStateStore, Checkpointable {
+    private static final int CHECKPOINT_VERSION = 1;
     public static final double ZSCORE = 0.6745;
     private static final double EPSILON = 1e-4;
     private OutlierConfig config;
-    private Map<String, Distribution.Context> valueDistributions = new HashMap<>();
-    private Map<String, Distribution.Context> medianDistributions = new HashMap<>();
-    private Map<String, Distribution.Context> zScoreDistributions = new HashMap<>();
+    private StateStore<MADState> states = new UnboundedStateStore<>();
+    //the states changed since the last checkpoint, by key, dropped as the store evicts them
+    private Map<String, MADState> dirtyStates = new LinkedHashMap<>();
     private Map<Severity, Double> zScoreCutoffs = new EnumMap<>(Severity.class);
     private long minAmountToPredict = 100;
     private double minPercentileZScoreToAllow = 0.95;
     private int reservoirSize;
     private double decay = 0.1;
+    private QuantileSketchFactory sketchFactory;
     private LinkedList<Severity> lastOutlier = new LinkedList<>();
     private boolean smoothOutliers = false;
     public SketchyMovingMAD() {
@@ -39,16 +50,17 @@ public class SketchyMovingMAD implements OutlierAlgorithm{
         return this;
     }
 
-    public Map<String, Distribution.Context> getMedianDistributions() {
-        return medianDistributions;
-    }
-
     public OutlierConfig getConfig() {
         return config;
     }
 
-    public Map<String, Distribution.Context> getValueDistributions() {
-        return valueDistributions;
+    public MADState getState(String groupingKey) {
+        return states.get(groupingKey);
+    }
+
+    @Override
+    public StateStore<MADState> getStateStore() {
+        return states;
     }
 
     @Override
@@ -56,10 +68,22 @@ public class SketchyMovingMAD implements OutlierAlgorithm{
         if(config == null) {
             throw new RuntimeException("Outlier Algorithm is not configured yet.");
         }
-        String groupingKey = Outlier.groupingKey(dp, config.getGroupingKeys());
-        Distribution.Context valueDistribution = getContext(groupingKey, valueDistributions, reservoirSize, decay);
-        Distribution.Context medianDistribution = getContext(groupingKey, medianDistributions, 0, 0);
-        Distribution.Context zScoreDistribution = getContext(groupingKey, zScoreDistributions, 0, 0);
+        return analyze(Outlier.groupingKey(dp, config.getGroupingKeys()), dp);
+    }
+
+    @Override
+    public Outlier analyze(String groupingKey, DataPoint dp) {
+        if(config == null) {
+            throw new RuntimeException("Outlier Algorithm is not configured yet.");
+        }
+        MADState state = getState(groupingKey, reservoirSize, decay);
+        if(!state.isDirty()) {
+            state.setDirty(true);
+            dirtyStates.put(groupingKey, state);
+        }
+        Distribution.Context valueDistribution = state.getValueDistribution();
+        Distribution.Context medianDistribution = state.getMedianDistribution();
+        Distribution.Context zScoreDistribution = state.getZScoreDistribution();
         boolean haveEnoughValues = valueDistribution.getAmount() > minAmountToPredict && Math.abs(scalePoint(dp)) > EPSILON;
         boolean haveEnoughMedians =medianDistribution.getAmount() > minAmountToPredict;
         boolean makePrediction = haveEnoughValues
@@ -147,6 +171,40 @@ public class SketchyMovingMAD implements OutlierAlgorithm{
         valueDistribution.getSample().insert(dp.getValue());
         return o;
     }
+    @Override
+    public int checkpoint(DataOutput out, boolean full) throws IOException {
+        Iterable<MADState> toWrite = full?states.values():dirtyStates.values();
+        int numStates = full?states.size():dirtyStates.size();
+        out.writeInt(CHECKPOINT_VERSION);
+        out.writeInt(numStates);
+        for(MADState state : toWrite) {
+            state.write(out);
+        }
+        for(MADState state : dirtyStates.values()) {
+            state.setDirty(false);
+        }
+        dirtyStates.clear();
+        return numStates;
+    }
+
+    @Override
+    public void restore(DataInput in) throws IOException {
+        if(config == null) {
+            throw new RuntimeException("Outlier Algorithm is not configured yet.");
+        }
+        int version = in.readInt();
+        if(version != CHECKPOINT_VERSION) {
+            throw new IOException("Unsupported checkpoint version " + version);
+        }
+        int numStates = in.readInt();
+        for(int i = 0;i < numStates;++i) {
+            MADState state = MADState.read(in, config.getGlobalStatistics(), sketchFactory);
+            //the restored state replaces whatever changes were made to the key since
+            dirtyStates.remove(state.getKey());
+            states.put(state.getKey(), state);
+        }
+    }
+
     private List<DataPoint> getSample(List<Double> sample) {
         List<DataPoint> ret = new ArrayList<>();
         int i = 0;
@@ -188,18 +246,17 @@ public class SketchyMovingMAD implements OutlierAlgorithm{
         return Severity.SEVERE_OUTLIER;
     }
 
-    private Distribution.Context getContext( String source
-                                           , Map<String, Distribution.Context> contextMap
-                                           , int reservoirSize
-                                           , double decay
-                                           )
+    private MADState getState( String groupingKey
+                             , int reservoirSize
+                             , double decay
+                             )
     {
-        Distribution.Context context = contextMap.get(source);
-        if(context == null) {
-            context = new Distribution.Context(reservoirSize, decay);
-            contextMap.put(source, context);
+        MADState state = states.get(groupingKey);
+        if(state == null) {
+            state = new MADState(groupingKey, reservoirSize, decay, sketchFactory);
+            states.put(groupingKey, state);
         }
-        return context;
+        return state;
     }
     public static final String ZSCORE_CUTOFFS_CONF = "zscoreCutoffs";
     public static final String MIN_AMOUNT_TO_PREDICT = "minAmountToPredict";
@@ -224,6 +281,17 @@ public class SketchyMovingMAD implements OutlierAlgorithm{
         else {
             reservoirSize = (int)minAmountToPredict;
         }
+        sketchFactory = config.getSketch().newFactory(config.getConfig());
+        states = StateStores.create(config.getConfig());
+        states.setEvictionListener(new StateStore.EvictionListener<MADState>() {
+            @Override
+            public void onEviction(String key, MADState value) {
+                if(dirtyStates.get(key) == value) {
+                    dirtyStates.remove(key);
+                }
+            }
+        });
+        dirtyStates.clear();
         if(config.getConfig().containsKey(SMOOTH)) {
             smoothOutliers = true;
         }
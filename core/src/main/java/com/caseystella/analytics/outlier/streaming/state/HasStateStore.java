@@ -0,0 +1,8 @@
+package com.caseystella.analytics.outlier.streaming.state;
+
+/**
+ * Implemented by outlier algorithms which keep per-key state, so that callers can monitor it.
+ */
+public interface HasStateStore {
+    StateStore<?> getStateStore();
+}
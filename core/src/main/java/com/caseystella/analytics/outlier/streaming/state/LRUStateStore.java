@@ -0,0 +1,131 @@
+package com.caseystella.analytics.outlier.streaming.state;
+
+import com.google.common.base.Function;
+import com.google.common.collect.Iterables;
+
+import javax.annotation.Nullable;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A state store holding at most maxKeys keys, evicting the least recently used key when full.  If
+ * maxIdleMs is positive, keys which have not been accessed for that long are evicted as well.
+ */
+public class LRUStateStore<V> implements StateStore<V> {
+    private static class TimestampedValue<V> {
+        V value;
+        long lastAccess;
+        TimestampedValue(V value, long lastAccess) {
+            this.value = value;
+            this.lastAccess = lastAccess;
+        }
+    }
+    private int maxKeys;
+    private long maxIdleMs;
+    private long numEvictions = 0;
+    private long numIdleEvictions = 0;
+    private LinkedHashMap<String, TimestampedValue<V>> store;
+    private transient EvictionListener<V> listener;
+
+    public LRUStateStore(int maxKeys, long maxIdleMs) {
+        if(maxKeys <= 0) {
+            throw new IllegalArgumentException("The maximum number of keys must be positive, but was " + maxKeys);
+        }
+        this.maxKeys = maxKeys;
+        this.maxIdleMs = maxIdleMs;
+        //access ordered, so the eldest entry is always the least recently used
+        store = new LinkedHashMap<String, TimestampedValue<V>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, TimestampedValue<V>> eldest) {
+                if(size() > LRUStateStore.this.maxKeys) {
+                    numEvictions++;
+                    evicted(eldest.getKey(), eldest.getValue().value);
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    protected long now() {
+        return System.currentTimeMillis();
+    }
+
+    @Override
+    public V get(String key) {
+        long now = now();
+        evictIdle(now);
+        TimestampedValue<V> entry = store.get(key);
+        if(entry == null) {
+            return null;
+        }
+        entry.lastAccess = now;
+        return entry.value;
+    }
+
+    @Override
+    public void put(String key, V value) {
+        long now = now();
+        evictIdle(now);
+        store.put(key, new TimestampedValue<>(value, now));
+    }
+
+    @Override
+    public V remove(String key) {
+        TimestampedValue<V> entry = store.remove(key);
+        return entry == null?null:entry.value;
+    }
+
+    private void evictIdle(long now) {
+        if(maxIdleMs <= 0) {
+            return;
+        }
+        for(Iterator<Map.Entry<String, TimestampedValue<V>>> it = store.entrySet().iterator();it.hasNext();) {
+            Map.Entry<String, TimestampedValue<V>> entry = it.next();
+            if(now - entry.getValue().lastAccess <= maxIdleMs) {
+                break;
+            }
+            it.remove();
+            numIdleEvictions++;
+            evicted(entry.getKey(), entry.getValue().value);
+        }
+    }
+
+    private void evicted(String key, V value) {
+        if(listener != null) {
+            listener.onEviction(key, value);
+        }
+    }
+
+    @Override
+    public int size() {
+        return store.size();
+    }
+
+    @Override
+    public Iterable<V> values() {
+        return Iterables.transform(store.values(), new Function<TimestampedValue<V>, V>() {
+            @Nullable
+            @Override
+            public V apply(@Nullable TimestampedValue<V> v) {
+                return v.value;
+            }
+        });
+    }
+
+    @Override
+    public long getNumEvictions() {
+        return numEvictions;
+    }
+
+    @Override
+    public long getNumIdleEvictions() {
+        return numIdleEvictions;
+    }
+
+    @Override
+    public void setEvictionListener(EvictionListener<V> listener) {
+        this.listener = listener;
+    }
+}
@@ -0,0 +1,34 @@
+package com.caseystella.analytics.outlier.streaming.state;
+
+import java.io.Serializable;
+
+/**
+ * Per-key state held by a streaming outlier algorithm.  Implementations may evict keys to keep the
+ * amount of state bounded; an evicted key simply starts over the next time it is seen.
+ */
+public interface StateStore<V> extends Serializable {
+    /**
+     * Told about each key the store evicts, so that anything else referring to its value can let go of it.
+     */
+    interface EvictionListener<V> {
+        void onEviction(String key, V value);
+    }
+
+    V get(String key);
+    void put(String key, V value);
+    V remove(String key);
+    int size();
+    Iterable<V> values();
+
+    /**
+     * @return The number of keys evicted because the store was full.
+     */
+    long getNumEvictions();
+
+    /**
+     * @return The number of keys evicted because they had not been accessed recently.
+     */
+    long getNumIdleEvictions();
+
+    void setEvictionListener(EvictionListener<V> listener);
+}
@@ -0,0 +1,44 @@
+package com.caseystella.analytics.outlier.streaming.state;
+
+import com.caseystella.analytics.util.ConfigUtil;
+
+import java.util.Map;
+
+public enum StateStores {
+    UNBOUNDED {
+        @Override
+        public <V> StateStore<V> newStore(Map<String, Object> config) {
+            return new UnboundedStateStore<V>();
+        }
+    }
+    ,LRU {
+        @Override
+        public <V> StateStore<V> newStore(Map<String, Object> config) {
+            if(config == null || !config.containsKey(MAX_KEYS)) {
+                throw new IllegalStateException("You must specify " + MAX_KEYS + " for an LRU state store.");
+            }
+            int maxKeys = ConfigUtil.INSTANCE.coerceInteger(MAX_KEYS, config.get(MAX_KEYS));
+            long maxIdleMs = 0;
+            if(config.containsKey(MAX_IDLE_MS)) {
+                maxIdleMs = ConfigUtil.INSTANCE.coerceLong(MAX_IDLE_MS, config.get(MAX_IDLE_MS));
+            }
+            return new LRUStateStore<V>(maxKeys, maxIdleMs);
+        }
+    }
+    ;
+    public static final String STATE_STORE = "stateStore";
+    public static final String MAX_KEYS = "maxKeys";
+    public static final String MAX_IDLE_MS = "maxIdleMs";
+
+    public abstract <V> StateStore<V> newStore(Map<String, Object> config);
+
+    /**
+     * Create the state store named by the stateStore key of the config, or an unbounded one if there is none.
+     */
+    public static <V> StateStore<V> create(Map<String, Object> config) {
+        if(config != null && config.containsKey(STATE_STORE)) {
+            return StateStores.valueOf(config.get(STATE_STORE).toString()).newStore(config);
+        }
+        return UNBOUNDED.newStore(config);
+    }
+}
@@ -0,0 +1,48 @@
+package com.caseystella.analytics.outlier.streaming.state;
+
+import java.util.HashMap;
+import java.util.Map;
+
+public class UnboundedStateStore<V> implements StateStore<V> {
+    private Map<String, V> store = new HashMap<>();
+
+    @Override
+    public V get(String key) {
+        return store.get(key);
+    }
+
+    @Override
+    public void put(String key, V value) {
+        store.put(key, value);
+    }
+
+    @Override
+    public V remove(String key) {
+        return store.remove(key);
+    }
+
+    @Override
+    public int size() {
+        return store.size();
+    }
+
+    @Override
+    public Iterable<V> values() {
+        return store.values();
+    }
+
+    @Override
+    public long getNumEvictions() {
+        return 0;
+    }
+
+    @Override
+    public long getNumIdleEvictions() {
+        return 0;
+    }
+
+    @Override
+    public void setEvictionListener(EvictionListener<V> listener) {
+        //nothing is ever evicted
+    }
+}
@@ -0,0 +1,266 @@
+package com.caseystella.analytics.timeseries;
+
+import com.caseystella.analytics.DataPoint;
+import com.caseystella.analytics.distribution.SimpleTimeRange;
+import com.caseystella.analytics.distribution.TimeRange;
+import com.caseystella.analytics.util.ConfigUtil;
+import com.google.common.base.Function;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Caches the points retrieved from another timeseries database handler.  For each metric and filter, the most
+ * recent window retrieved is kept.  A later retrieval which starts within the window and ends after it only
+ * fetches the missing tail from the backing handler; one which starts before the window fetches the whole range.
+ * Since windows slide forward, points before the start of the latest retrieval are dropped.
+ *
+ * At most cache.max_keys windows are kept, evicting the least recently used, and a window is refetched once it is
+ * older than cache.max_age_ms, which bounds how stale the cache can be.  Persisting a point which falls within a
+ * cached window of its metric drops the window.  When instantiated by name, cache.handler names the backing handler,
+ * which is configured with the same configuration.
+ *
+ * As with the TSDBHandler, retrieve returns the points in [range begin, pt's timestamp] other than pt itself.
+ *
+ * Note that nothing in the tree retrieves from a timeseries database handler yet: batch confirmation works on the
+ * sample carried by the prospective outlier.  This is infrastructure for a consumer which confirms against the
+ * stored history, and until there is one the cache (and its retrievalCache metric) sees no traffic.
+ */
+public class CachingTimeseriesDatabaseHandler implements TimeseriesDatabaseHandler {
+    public static final String HANDLER_CONF = "cache.handler";
+    public static final String MAX_KEYS_CONF = "cache.max_keys";
+    public static final String MAX_AGE_MS_CONF = "cache.max_age_ms";
+    public static final int DEFAULT_MAX_KEYS = 1000;
+    public static final long DEFAULT_MAX_AGE_MS = 60000;
+
+    private static class CacheKey {
+        String metric;
+        Map<String, String> filter;
+
+        CacheKey(String metric, Map<String, String> filter) {
+            this.metric = metric;
+            this.filter = filter == null?new HashMap<String, String>():new HashMap<>(filter);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+
+            CacheKey cacheKey = (CacheKey) o;
+
+            if (!metric.equals(cacheKey.metric)) return false;
+            return filter.equals(cacheKey.filter);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = metric.hashCode();
+            result = 31 * result + filter.hashCode();
+            return result;
+        }
+    }
+
+    private static class Window {
+        long begin;
+        long end;
+        long created;
+        List<DataPoint> points;
+
+        Window(long begin, long end, long created, List<DataPoint> points) {
+            this.begin = begin;
+            this.end = end;
+            this.created = created;
+            this.points = points;
+        }
+    }
+
+    private TimeseriesDatabaseHandler handler;
+    private int maxKeys = DEFAULT_MAX_KEYS;
+    private long maxAgeMs = DEFAULT_MAX_AGE_MS;
+    private transient LinkedHashMap<CacheKey, Window> cache;
+    //an upper bound on the end of the cached windows for each metric, so most writes need not look at the windows
+    private transient Map<String, Long> latestEnd;
+    private long numHits = 0;
+    private long numPartialHits = 0;
+    private long numMisses = 0;
+    private long numEvictions = 0;
+
+    public CachingTimeseriesDatabaseHandler() {
+    }
+
+    public CachingTimeseriesDatabaseHandler(TimeseriesDatabaseHandler handler) {
+        this.handler = handler;
+    }
+
+    private LinkedHashMap<CacheKey, Window> getCache() {
+        if(cache == null) {
+            //access ordered, so the eldest entry is always the least recently used
+            cache = new LinkedHashMap<CacheKey, Window>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<CacheKey, Window> eldest) {
+                    if(size() > maxKeys) {
+                        numEvictions++;
+                        return true;
+                    }
+                    return false;
+                }
+            };
+        }
+        return cache;
+    }
+
+    private Map<String, Long> getLatestEnd() {
+        if(latestEnd == null) {
+            latestEnd = new HashMap<>();
+        }
+        return latestEnd;
+    }
+
+    private void updateLatestEnd(String metric, long end) {
+        Long latest = getLatestEnd().get(metric);
+        if(latest == null || latest < end) {
+            getLatestEnd().put(metric, end);
+        }
+    }
+
+    protected long now() {
+        return System.currentTimeMillis();
+    }
+
+    @Override
+    public synchronized void persist(String metric, DataPoint pt, Map<String, String> tags, Function<Object, Void> callback) {
+        handler.persist(metric, pt, tags, callback);
+        Long latest = getLatestEnd().get(metric);
+        if(latest == null || latest < pt.getTimestamp()) {
+            return;
+        }
+        getLatestEnd().put(metric, pt.getTimestamp() - 1);
+        for(Iterator<Map.Entry<CacheKey, Window>> it = getCache().entrySet().iterator();it.hasNext();) {
+            Map.Entry<CacheKey, Window> kv = it.next();
+            if(kv.getValue().end >= pt.getTimestamp() && kv.getKey().metric.equals(metric)) {
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Fetch the points in [begin, end] from the backing handler.
+     */
+    private List<DataPoint> fetch(String metric, long begin, long end, Map<String, String> filter) {
+        //retrieve ends at the point's timestamp and drops the point, so ask for a point just past the end which
+        //matches nothing and trim what comes back to the range.
+        DataPoint endpoint = new DataPoint(end + 1, Double.NaN, null, metric);
+        List<DataPoint> ret = new ArrayList<>();
+        for(DataPoint dp : handler.retrieve(metric, endpoint, new SimpleTimeRange(begin, end + 1), filter, -1)) {
+            if(dp.getTimestamp() >= begin && dp.getTimestamp() <= end) {
+                ret.add(dp);
+            }
+        }
+        return ret;
+    }
+
+    @Override
+    public synchronized List<DataPoint> retrieve(String metric, DataPoint pt, TimeRange range, Map<String, String> filter, int maxPts) {
+        long begin = range.getBegin();
+        long end = pt.getTimestamp();
+        long now = now();
+        CacheKey key = new CacheKey(metric, filter);
+        Window window = getCache().get(key);
+        if(window == null || begin < window.begin || now - window.created > maxAgeMs) {
+            numMisses++;
+            window = new Window(begin, end, now, fetch(metric, begin, end, filter));
+            getCache().put(key, window);
+            updateLatestEnd(metric, end);
+        }
+        else {
+            if(end > window.end) {
+                numPartialHits++;
+                window.points.addAll(fetch(metric, window.end + 1, end, filter));
+                window.end = end;
+                updateLatestEnd(metric, end);
+            }
+            else {
+                numHits++;
+            }
+            if(begin > window.begin) {
+                int start = 0;
+                while(start < window.points.size() && window.points.get(start).getTimestamp() < begin) {
+                    start++;
+                }
+                window.points = new ArrayList<>(window.points.subList(start, window.points.size()));
+                window.begin = begin;
+            }
+        }
+        List<DataPoint> ret = new ArrayList<>();
+        for(DataPoint dp : window.points) {
+            if(dp.getTimestamp() > end || (maxPts > 0 && ret.size() >= maxPts)) {
+                break;
+            }
+            if(dp.getTimestamp() != pt.getTimestamp() || dp.getValue() != pt.getValue()) {
+                ret.add(dp);
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * The window is in memory anyway, so this is a cursor over the points retrieve would return.
+     */
+    @Override
+    public TimeseriesCursor retrieveCursor(String metric, DataPoint pt, TimeRange range, Map<String, String> filter, int maxPts) {
+        return TimeseriesCursors.of(retrieve(metric, pt, range, filter, maxPts));
+    }
+
+    @Override
+    public void configure(Map<String, Object> config) {
+        if(config != null) {
+            if(config.get(HANDLER_CONF) != null) {
+                handler = TimeseriesDatabaseHandlers.newInstance(config.get(HANDLER_CONF).toString());
+            }
+            if(config.get(MAX_KEYS_CONF) != null) {
+                maxKeys = ConfigUtil.INSTANCE.coerceInteger(MAX_KEYS_CONF, config.get(MAX_KEYS_CONF));
+            }
+            if(config.get(MAX_AGE_MS_CONF) != null) {
+                maxAgeMs = ConfigUtil.INSTANCE.coerceLong(MAX_AGE_MS_CONF, config.get(MAX_AGE_MS_CONF));
+            }
+        }
+        if(handler == null) {
+            throw new IllegalStateException("The retrieval cache must be configured with a backing handler in " + HANDLER_CONF);
+        }
+        handler.configure(config);
+    }
+
+    @Override
+    public synchronized void flush() {
+        handler.flush();
+    }
+
+    public TimeseriesDatabaseHandler getHandler() {
+        return handler;
+    }
+
+    public synchronized int size() {
+        return getCache().size();
+    }
+
+    public synchronized long getNumHits() {
+        return numHits;
+    }
+
+    public synchronized long getNumPartialHits() {
+        return numPartialHits;
+    }
+
+    public synchronized long getNumMisses() {
+        return numMisses;
+    }
+
+    public synchronized long getNumEvictions() {
+        return numEvictions;
+    }
+}
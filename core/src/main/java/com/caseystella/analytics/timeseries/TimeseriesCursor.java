@@ -0,0 +1,29 @@
+package com.caseystella.analytics.timeseries;
+
+import java.util.Map;
+
+/**
+ * A forward-only cursor over retrieved points, which lets a consumer stream over a range without a DataPoint
+ * being allocated per point.  The accessors refer to the current point, which is the one the last call to next
+ * moved to.
+ *
+ * Nothing in the tree retrieves from a timeseries database handler yet, since batch confirmation works on the
+ * sample carried by the prospective outlier.  TimeseriesCursors.toValues is there to fill the input of an RPCA
+ * confirming against the stored history directly, but has no caller until such a consumer exists.
+ */
+public interface TimeseriesCursor extends AutoCloseable {
+    /**
+     * Move to the next point, returning false if there are none left.
+     */
+    boolean next();
+    long getTimestamp();
+    double getValue();
+
+    /**
+     * The tags of the current point.  This may be shared between points, so copy it if it needs to be kept.
+     */
+    Map<String, String> getTags();
+
+    @Override
+    void close();
+}
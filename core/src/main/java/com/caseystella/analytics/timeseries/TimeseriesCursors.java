@@ -0,0 +1,90 @@
+package com.caseystella.analytics.timeseries;
+
+import com.caseystella.analytics.DataPoint;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+public class TimeseriesCursors {
+
+    /**
+     * A cursor over points which are already in memory.
+     */
+    public static TimeseriesCursor of(final Iterable<DataPoint> points) {
+        final Iterator<DataPoint> it = points.iterator();
+        return new TimeseriesCursor() {
+            DataPoint current = null;
+
+            @Override
+            public boolean next() {
+                current = it.hasNext()?it.next():null;
+                return current != null;
+            }
+
+            @Override
+            public long getTimestamp() {
+                return current.getTimestamp();
+            }
+
+            @Override
+            public double getValue() {
+                return current.getValue();
+            }
+
+            @Override
+            public Map<String, String> getTags() {
+                return current.getMetadata();
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+
+    /**
+     * Drain a cursor into DataPoints, with the given source.
+     */
+    public static List<DataPoint> toList(TimeseriesCursor cursor, String source) {
+        List<DataPoint> ret = new ArrayList<>();
+        try {
+            while(cursor.next()) {
+                Map<String, String> tags = cursor.getTags();
+                ret.add(new DataPoint(cursor.getTimestamp()
+                                     , cursor.getValue()
+                                     , tags == null?null:new HashMap<>(tags)
+                                     , source
+                                     )
+                       );
+            }
+        }
+        finally {
+            cursor.close();
+        }
+        return ret;
+    }
+
+    /**
+     * Drain the values of a cursor, e.g. for the input of a batch outlier algorithm.
+     */
+    public static double[] toValues(TimeseriesCursor cursor) {
+        double[] ret = new double[16];
+        int n = 0;
+        try {
+            while(cursor.next()) {
+                if(n == ret.length) {
+                    ret = Arrays.copyOf(ret, 2*n);
+                }
+                ret[n++] = cursor.getValue();
+            }
+        }
+        finally {
+            cursor.close();
+        }
+        return Arrays.copyOf(ret, n);
+    }
+}
@@ -11,5 +11,15 @@ import java.util.Map;
 public interface TimeseriesDatabaseHandler extends Serializable {
     void persist(String metric, DataPoint pt, Map<String, String> tags, Function<Object, Void> callback);
     List<DataPoint> retrieve(String metric, DataPoint pt, TimeRange range, Map<String, String> filter, int maxPts);
+
+    /**
+     * Retrieve the same points as retrieve, but as a cursor, so that large ranges can be streamed over.
+     */
+    TimeseriesCursor retrieveCursor(String metric, DataPoint pt, TimeRange range, Map<String, String> filter, int maxPts);
     void configure(Map<String, Object> config);
+
+    /**
+     * Write out anything buffered by persist.  Called periodically by the bolts, e.g. on tick tuples.
+     */
+    void flush();
 }
@@ -3,6 +3,7 @@ package com.caseystella.analytics.timeseries;
 import com.caseystella.analytics.DataPoint;
 import com.caseystella.analytics.outlier.Outlier;
 import com.caseystella.analytics.outlier.Severity;
+import com.caseystella.analytics.timeseries.local.LocalTimeSeriesDB;
 import com.caseystella.analytics.timeseries.tsdb.TSDBHandler;
 import com.google.common.base.Function;
 
@@ -14,6 +15,8 @@ import java.util.Map;
 
 public enum TimeseriesDatabaseHandlers {
     TSDB(TSDBHandler.class)
+    ,LOCAL(LocalTimeSeriesDB.class)
+    ,CACHING(CachingTimeseriesDatabaseHandler.class)
     ;
     public static final String TYPE_KEY = "type";
     public static final String RAW_TYPE = "raw";
@@ -2,17 +2,30 @@ package com.caseystella.analytics.timeseries.inmemory;
 
 import com.caseystella.analytics.DataPoint;
 import com.caseystella.analytics.distribution.TimeRange;
+import com.caseystella.analytics.timeseries.TimeseriesCursor;
+import com.caseystella.analytics.timeseries.TimeseriesCursors;
 import com.caseystella.analytics.timeseries.TimeseriesDatabaseHandler;
 import com.google.common.base.Function;
 import com.google.common.collect.ComparisonChain;
-import com.google.common.collect.Sets;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
+/**
+ * An in-memory timeseries database.  Points are kept per metric in a MetricColumn, which stores them as primitive
+ * columns rather than objects so that tens of millions of points fit on a modest heap.  Each metric has its own
+ * lock, so writers and readers of different metrics never contend.
+ *
+ * Handlers are serialized out with the topology and instantiated by name, so rather than holding its points
+ * directly, a handler refers to a named store within the JVM.  By default, every handler shares the default store
+ * (which the static accessors read); set STORE_CONF to keep a set of handlers apart from the rest.
+ */
 public class InMemoryTimeSeriesDB implements TimeseriesDatabaseHandler {
-    public static Map<String, NavigableSet<DataPoint>> backingStore = new HashMap<>();
+    public static final String STORE_CONF = "inmemory.store";
+    public static final String DEFAULT_STORE = "default";
+    private static final ConcurrentMap<String, ConcurrentMap<String, MetricColumn>> stores = new ConcurrentHashMap<>();
 
-    public final static Object _sync = new Object();
     public static final Comparator<DataPoint> COMPARATOR = new Comparator<DataPoint>() {
         @Override
         public int compare(DataPoint o1, DataPoint o2) {
@@ -22,6 +35,37 @@ public class InMemoryTimeSeriesDB implements TimeseriesDatabaseHandler {
                                    .result() ;
         }
     };
+
+    private String storeName;
+    private transient ConcurrentMap<String, MetricColumn> backingStore;
+
+    public InMemoryTimeSeriesDB() {
+        this(DEFAULT_STORE);
+    }
+
+    public InMemoryTimeSeriesDB(String storeName) {
+        this.storeName = storeName;
+    }
+
+    private static ConcurrentMap<String, MetricColumn> getStore(String name) {
+        ConcurrentMap<String, MetricColumn> store = stores.get(name);
+        if(store == null) {
+            ConcurrentMap<String, MetricColumn> newStore = new ConcurrentHashMap<>();
+            store = stores.putIfAbsent(name, newStore);
+            if(store == null) {
+                store = newStore;
+            }
+        }
+        return store;
+    }
+
+    private ConcurrentMap<String, MetricColumn> getBackingStore() {
+        if(backingStore == null) {
+            backingStore = getStore(storeName);
+        }
+        return backingStore;
+    }
+
     @Override
     public void persist( String metric
                                     , DataPoint pt
@@ -29,21 +73,26 @@ public class InMemoryTimeSeriesDB implements TimeseriesDatabaseHandler {
                                     , Function<Object, Void> callback
                                     )
     {
-        synchronized(_sync) {
-            NavigableSet<DataPoint> tsMap = backingStore.get(metric);
-            if (tsMap == null) {
-                tsMap = Sets.synchronizedNavigableSet(new TreeSet<>(COMPARATOR));
-                backingStore.put(metric, tsMap);
-            }
-            Map<String, String> metadata = pt.getMetadata();
-            if(metadata == null) {
-                metadata = new HashMap<>();
-            }
-            if(tags != null) {
-                metadata.putAll(tags);
+        ConcurrentMap<String, MetricColumn> store = getBackingStore();
+        MetricColumn column = store.get(metric);
+        if (column == null) {
+            MetricColumn newColumn = new MetricColumn();
+            column = store.putIfAbsent(metric, newColumn);
+            if(column == null) {
+                column = newColumn;
             }
-            pt.setMetadata(metadata);
-            tsMap.add(pt);
+        }
+        Map<String, String> metadata = pt.getMetadata();
+        if(metadata == null) {
+            metadata = new HashMap<>();
+        }
+        if(tags != null) {
+            metadata.putAll(tags);
+        }
+        pt.setMetadata(metadata);
+        column.add(pt);
+        if(callback != null) {
+            callback.apply(pt);
         }
     }
 
@@ -59,7 +108,7 @@ public class InMemoryTimeSeriesDB implements TimeseriesDatabaseHandler {
         dp.setValue(Long.MIN_VALUE);
         return dp;
     }
-    private static boolean mapContains(Map<String, String> tags, Map<String, String> filter) {
+    static boolean mapContains(Map<String, String> tags, Map<String, String> filter) {
         if(filter != null) {
             for (Map.Entry<String, String> kv : filter.entrySet()) {
                 Object o = tags.get(kv.getKey());
@@ -72,41 +121,59 @@ public class InMemoryTimeSeriesDB implements TimeseriesDatabaseHandler {
     }
     @Override
     public List<DataPoint> retrieve(String metric, DataPoint pt, TimeRange range, Map<String, String> filter, int maxPts) {
-        synchronized(_sync) {
-            NavigableSet<DataPoint> tsMap = backingStore.get(metric);
-            List<DataPoint> ret = new ArrayList<>();
-            for (DataPoint pts : tsMap.subSet(getLeftEndpoint(range.getBegin())
-                                                              , true
-                                                              , getRightEndpoint(pt.getTimestamp())
-                                                              , true
-                                                              )) {
-                if(pts.getTimestamp() != pt.getTimestamp() && pts.getValue() != pt.getValue() && mapContains(pts.getMetadata(), filter)) {
-                    ret.add(pts);
-                }
-            }
-            return ret;
+        MetricColumn column = getBackingStore().get(metric);
+        if(column == null) {
+            return new ArrayList<>();
         }
+        return column.retrieve(range.getBegin(), pt.getTimestamp(), filter, pt);
     }
 
-    public static Collection<DataPoint> getAllPoints(String metric) {
-        synchronized (_sync) {
-            NavigableSet<DataPoint> metricMap = backingStore.get(metric);
-            if(metricMap != null) {
-                return metricMap;
-            }
-            else {
-                return Collections.EMPTY_LIST;
-            }
+    @Override
+    public TimeseriesCursor retrieveCursor(String metric, DataPoint pt, TimeRange range, Map<String, String> filter, int maxPts) {
+        MetricColumn column = getBackingStore().get(metric);
+        if(column == null) {
+            return TimeseriesCursors.of(Collections.<DataPoint>emptyList());
         }
+        return column.cursor(range.getBegin(), pt.getTimestamp(), filter, pt);
     }
-    public static void clear() {
-        synchronized(_sync) {
-            backingStore.clear();
+
+    /**
+     * The points persisted for a metric in this handler's store, in order.
+     */
+    public Collection<DataPoint> getPoints(String metric) {
+        MetricColumn column = getBackingStore().get(metric);
+        if(column != null) {
+            return column.getPoints();
+        }
+        else {
+            return Collections.emptyList();
         }
     }
 
+    /**
+     * Drop every point in this handler's store.
+     */
+    public void truncate() {
+        getBackingStore().clear();
+    }
+
+    public static Collection<DataPoint> getAllPoints(String metric) {
+        return new InMemoryTimeSeriesDB().getPoints(metric);
+    }
+    public static void clear() {
+        getStore(DEFAULT_STORE).clear();
+    }
+
     @Override
     public void configure(Map<String, Object> config) {
+        if(config != null && config.get(STORE_CONF) != null) {
+            storeName = config.get(STORE_CONF).toString();
+            backingStore = null;
+        }
+    }
+
+    @Override
+    public void flush() {
 
     }
 }
@@ -0,0 +1,358 @@
+package com.caseystella.analytics.timeseries.inmemory;
+
+import com.caseystella.analytics.DataPoint;
+import com.caseystella.analytics.timeseries.TimeseriesCursor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * The points for a single metric, stored by column.  Timestamps, values and tag ids are kept in parallel primitive
+ * arrays, in blocks which are ordered by (timestamp, value) both within and across blocks.  Points usually arrive
+ * in time order and are appended to the last block; the odd late point is inserted in place, splitting its block
+ * if it is full.  The source and metadata of a point are dictionary encoded, since a metric rarely has more than
+ * a handful of distinct tag sets.
+ */
+class MetricColumn {
+    static final int BLOCK_SIZE = 4096;
+
+    private static class Block {
+        long[] timestamps;
+        double[] values;
+        int[] tags;
+        int size = 0;
+
+        Block(int capacity) {
+            timestamps = new long[capacity];
+            values = new double[capacity];
+            tags = new int[capacity];
+        }
+
+        boolean isFull() {
+            return size == timestamps.length;
+        }
+
+        void insert(int pos, long ts, double value, int tag) {
+            System.arraycopy(timestamps, pos, timestamps, pos + 1, size - pos);
+            System.arraycopy(values, pos, values, pos + 1, size - pos);
+            System.arraycopy(tags, pos, tags, pos + 1, size - pos);
+            timestamps[pos] = ts;
+            values[pos] = value;
+            tags[pos] = tag;
+            size++;
+        }
+
+        Block split() {
+            Block right = new Block(timestamps.length);
+            int mid = size/2;
+            right.size = size - mid;
+            System.arraycopy(timestamps, mid, right.timestamps, 0, right.size);
+            System.arraycopy(values, mid, right.values, 0, right.size);
+            System.arraycopy(tags, mid, right.tags, 0, right.size);
+            size = mid;
+            return right;
+        }
+
+        /**
+         * The first position whose point is not less than (ts, value).
+         */
+        int lowerBound(long ts, double value) {
+            int lo = 0;
+            int hi = size;
+            while(lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if(compare(timestamps[mid], values[mid], ts, value) < 0) {
+                    lo = mid + 1;
+                }
+                else {
+                    hi = mid;
+                }
+            }
+            return lo;
+        }
+    }
+
+    private static class TagSet {
+        String source;
+        Map<String, String> metadata;
+
+        TagSet(String source, Map<String, String> metadata) {
+            this.source = source;
+            this.metadata = metadata;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+
+            TagSet tagSet = (TagSet) o;
+
+            if (source != null ? !source.equals(tagSet.source) : tagSet.source != null) return false;
+            return metadata != null ? metadata.equals(tagSet.metadata) : tagSet.metadata == null;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = source != null ? source.hashCode() : 0;
+            result = 31 * result + (metadata != null ? metadata.hashCode() : 0);
+            return result;
+        }
+    }
+
+    private final List<Block> blocks = new ArrayList<>();
+    private final List<TagSet> dictionary = new ArrayList<>();
+    private final Map<TagSet, Integer> dictionaryIds = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private int size = 0;
+
+    private static int compare(long lTs, double lValue, long rTs, double rValue) {
+        int ret = lTs < rTs ? -1 : (lTs == rTs ? 0 : 1);
+        return ret != 0 ? ret : Double.compare(lValue, rValue);
+    }
+
+    private int tagId(String source, Map<String, String> metadata) {
+        TagSet tagSet = new TagSet(source, metadata);
+        Integer id = dictionaryIds.get(tagSet);
+        if(id == null) {
+            tagSet.metadata = metadata == null ? null : Collections.unmodifiableMap(new HashMap<>(metadata));
+            id = dictionary.size();
+            dictionary.add(tagSet);
+            dictionaryIds.put(tagSet, id);
+        }
+        return id;
+    }
+
+    /**
+     * Add a point, unless a point with the same timestamp and value is already here.
+     */
+    public boolean add(DataPoint pt) {
+        long ts = pt.getTimestamp();
+        double value = pt.getValue();
+        lock.writeLock().lock();
+        try {
+            Block last = blocks.isEmpty() ? null : blocks.get(blocks.size() - 1);
+            if(last == null
+            || last.size == 0
+            || compare(last.timestamps[last.size - 1], last.values[last.size - 1], ts, value) < 0
+              ) {
+                if(last == null || last.isFull()) {
+                    last = new Block(BLOCK_SIZE);
+                    blocks.add(last);
+                }
+                last.insert(last.size, ts, value, tagId(pt.getSource(), pt.getMetadata()));
+                size++;
+                return true;
+            }
+            int blockIdx = findBlock(ts, value);
+            Block block = blocks.get(blockIdx);
+            int pos = block.lowerBound(ts, value);
+            if(pos < block.size && compare(block.timestamps[pos], block.values[pos], ts, value) == 0) {
+                return false;
+            }
+            if(block.isFull()) {
+                Block right = block.split();
+                blocks.add(blockIdx + 1, right);
+                if(pos > block.size) {
+                    pos -= block.size;
+                    block = right;
+                }
+            }
+            block.insert(pos, ts, value, tagId(pt.getSource(), pt.getMetadata()));
+            size++;
+            return true;
+        }
+        finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * The last block whose first point is not greater than (ts, value), or the first block if there is none.
+     */
+    private int findBlock(long ts, double value) {
+        int lo = 0;
+        int hi = blocks.size() - 1;
+        while(lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            Block b = blocks.get(mid);
+            if(compare(b.timestamps[0], b.values[0], ts, value) <= 0) {
+                lo = mid;
+            }
+            else {
+                hi = mid - 1;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * The first block whose last timestamp is at least ts, or the number of blocks if there is none.
+     */
+    private int findFirstBlock(long ts) {
+        int lo = 0;
+        int hi = blocks.size();
+        while(lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            Block b = blocks.get(mid);
+            if(b.timestamps[b.size - 1] < ts) {
+                lo = mid + 1;
+            }
+            else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    private DataPoint toDataPoint(Block b, int i) {
+        TagSet tagSet = dictionary.get(b.tags[i]);
+        return new DataPoint( b.timestamps[i]
+                            , b.values[i]
+                            , tagSet.metadata == null ? null : new HashMap<>(tagSet.metadata)
+                            , tagSet.source
+                            );
+    }
+
+    /**
+     * The points with timestamps in [begin, end] whose metadata matches the filter, in order.  As with the set
+     * based store, points sharing either the timestamp or the value of the excluded point are skipped.
+     */
+    public List<DataPoint> retrieve(long begin, long end, Map<String, String> filter, DataPoint excluded) {
+        Selection selection = select(begin, end, filter, excluded);
+        List<DataPoint> ret = new ArrayList<>(selection.size);
+        for(int i = 0;i < selection.size;++i) {
+            TagSet tagSet = selection.dictionary.get(selection.tags[i]);
+            ret.add(new DataPoint( selection.timestamps[i]
+                                 , selection.values[i]
+                                 , tagSet.metadata == null ? null : new HashMap<>(tagSet.metadata)
+                                 , tagSet.source
+                                 )
+                   );
+        }
+        return ret;
+    }
+
+    /**
+     * The same points as retrieve, as a cursor over their columns.
+     */
+    public TimeseriesCursor cursor(long begin, long end, Map<String, String> filter, DataPoint excluded) {
+        final Selection selection = select(begin, end, filter, excluded);
+        return new TimeseriesCursor() {
+            int i = -1;
+
+            @Override
+            public boolean next() {
+                return ++i < selection.size;
+            }
+
+            @Override
+            public long getTimestamp() {
+                return selection.timestamps[i];
+            }
+
+            @Override
+            public double getValue() {
+                return selection.values[i];
+            }
+
+            @Override
+            public Map<String, String> getTags() {
+                return selection.dictionary.get(selection.tags[i]).metadata;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+
+    /**
+     * The columns of the points selected by a retrieval, copied out so that they may be read outside of the lock.
+     */
+    private static class Selection {
+        long[] timestamps = new long[16];
+        double[] values = new double[16];
+        int[] tags = new int[16];
+        int size = 0;
+        List<TagSet> dictionary;
+
+        void add(long ts, double value, int tag) {
+            if(size == timestamps.length) {
+                timestamps = Arrays.copyOf(timestamps, 2*size);
+                values = Arrays.copyOf(values, 2*size);
+                tags = Arrays.copyOf(tags, 2*size);
+            }
+            timestamps[size] = ts;
+            values[size] = value;
+            tags[size] = tag;
+            size++;
+        }
+    }
+
+    private Selection select(long begin, long end, Map<String, String> filter, DataPoint excluded) {
+        Selection ret = new Selection();
+        lock.readLock().lock();
+        try {
+            ret.dictionary = new ArrayList<>(dictionary);
+            BitSet matches = new BitSet(dictionary.size());
+            for(int i = 0;i < dictionary.size();++i) {
+                if(InMemoryTimeSeriesDB.mapContains(dictionary.get(i).metadata, filter)) {
+                    matches.set(i);
+                }
+            }
+            for(int blockIdx = findFirstBlock(begin);blockIdx < blocks.size();++blockIdx) {
+                Block b = blocks.get(blockIdx);
+                for(int i = b.lowerBound(begin, Double.NEGATIVE_INFINITY);i < b.size;++i) {
+                    if(b.timestamps[i] > end) {
+                        return ret;
+                    }
+                    if(!matches.get(b.tags[i])) {
+                        continue;
+                    }
+                    if(excluded != null && (b.timestamps[i] == excluded.getTimestamp() || b.values[i] == excluded.getValue())) {
+                        continue;
+                    }
+                    ret.add(b.timestamps[i], b.values[i], b.tags[i]);
+                }
+            }
+            return ret;
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public List<DataPoint> getPoints() {
+        List<DataPoint> ret = new ArrayList<>(size);
+        lock.readLock().lock();
+        try {
+            for(Block b : blocks) {
+                for(int i = 0;i < b.size;++i) {
+                    ret.add(toDataPoint(b, i));
+                }
+            }
+            return ret;
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+}
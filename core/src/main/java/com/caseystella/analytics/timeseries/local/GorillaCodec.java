@@ -0,0 +1,213 @@
+package com.caseystella.analytics.timeseries.local;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Encodes a block of points in the style of Facebook's Gorilla: timestamps are stored as zig-zagged deltas of
+ * deltas in a handful of size classes, so regularly spaced points cost a bit apiece, and each value is stored as
+ * the meaningful bits of its XOR with the previous value, so slowly changing values cost a few bits.
+ */
+public class GorillaCodec {
+
+    static class BitOutput {
+        private byte[] buf;
+        private long bitPos = 0;
+
+        BitOutput(int capacity) {
+            buf = new byte[Math.max(16, capacity)];
+        }
+
+        void writeBit(boolean bit) {
+            writeBits(bit?1:0, 1);
+        }
+
+        /**
+         * Write the low nbits of value, most significant first.
+         */
+        void writeBits(long value, int nbits) {
+            ensureCapacity(bitPos + nbits);
+            while(nbits > 0) {
+                int byteIdx = (int)(bitPos >>> 3);
+                int bitOffset = (int)(bitPos & 7);
+                int available = 8 - bitOffset;
+                int n = Math.min(available, nbits);
+                int bits = (int)((value >>> (nbits - n)) & ((1 << n) - 1));
+                buf[byteIdx] |= bits << (available - n);
+                bitPos += n;
+                nbits -= n;
+            }
+        }
+
+        private void ensureCapacity(long bits) {
+            int bytes = (int)((bits + 7) >>> 3);
+            if(bytes > buf.length) {
+                buf = Arrays.copyOf(buf, Math.max(bytes, 2*buf.length));
+            }
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buf, (int)((bitPos + 7) >>> 3));
+        }
+    }
+
+    /**
+     * Reads bits straight out of a (possibly memory mapped) buffer, starting at an offset.
+     */
+    static class BitInput {
+        private final ByteBuffer buf;
+        private final int offset;
+        private long bitPos = 0;
+
+        BitInput(ByteBuffer buf, int offset) {
+            this.buf = buf;
+            this.offset = offset;
+        }
+
+        boolean readBit() {
+            return readBits(1) == 1;
+        }
+
+        long readBits(int nbits) {
+            long ret = 0;
+            while(nbits > 0) {
+                int b = buf.get(offset + (int)(bitPos >>> 3)) & 0xFF;
+                int bitOffset = (int)(bitPos & 7);
+                int available = 8 - bitOffset;
+                int n = Math.min(available, nbits);
+                int bits = (b >>> (available - n)) & ((1 << n) - 1);
+                ret = (ret << n) | bits;
+                bitPos += n;
+                nbits -= n;
+            }
+            return ret;
+        }
+    }
+
+    private static void writeTimestamp(BitOutput out, long deltaOfDelta) {
+        long zz = (deltaOfDelta << 1) ^ (deltaOfDelta >> 63);
+        if(zz == 0) {
+            out.writeBit(false);
+        }
+        else if(zz >>> 7 == 0) {
+            out.writeBits(0b10, 2);
+            out.writeBits(zz, 7);
+        }
+        else if(zz >>> 9 == 0) {
+            out.writeBits(0b110, 3);
+            out.writeBits(zz, 9);
+        }
+        else if(zz >>> 12 == 0) {
+            out.writeBits(0b1110, 4);
+            out.writeBits(zz, 12);
+        }
+        else {
+            out.writeBits(0b1111, 4);
+            out.writeBits(zz, 64);
+        }
+    }
+
+    private static long readTimestamp(BitInput in) {
+        long zz;
+        if(!in.readBit()) {
+            return 0;
+        }
+        else if(!in.readBit()) {
+            zz = in.readBits(7);
+        }
+        else if(!in.readBit()) {
+            zz = in.readBits(9);
+        }
+        else if(!in.readBit()) {
+            zz = in.readBits(12);
+        }
+        else {
+            zz = in.readBits(64);
+        }
+        return (zz >>> 1) ^ -(zz & 1);
+    }
+
+    /**
+     * Encode the first n points.  The timestamps need not be sorted.
+     */
+    public static byte[] encode(long[] timestamps, double[] values, int n) {
+        BitOutput out = new BitOutput(2*n + 16);
+        if(n == 0) {
+            return new byte[0];
+        }
+        long prevTs = timestamps[0];
+        long prevDelta = 0;
+        long prevBits = Double.doubleToRawLongBits(values[0]);
+        int prevLeading = -1;
+        int prevTrailing = 0;
+        out.writeBits(prevTs, 64);
+        out.writeBits(prevBits, 64);
+        for(int i = 1;i < n;++i) {
+            long delta = timestamps[i] - prevTs;
+            writeTimestamp(out, delta - prevDelta);
+            prevDelta = delta;
+            prevTs = timestamps[i];
+
+            long bits = Double.doubleToRawLongBits(values[i]);
+            long xor = bits ^ prevBits;
+            if(xor == 0) {
+                out.writeBit(false);
+            }
+            else {
+                out.writeBit(true);
+                int leading = Math.min(Long.numberOfLeadingZeros(xor), 31);
+                int trailing = Long.numberOfTrailingZeros(xor);
+                if(prevLeading >= 0 && leading >= prevLeading && trailing >= prevTrailing) {
+                    //fits in the previous window of meaningful bits
+                    out.writeBit(false);
+                    out.writeBits(xor >>> prevTrailing, 64 - prevLeading - prevTrailing);
+                }
+                else {
+                    int meaningful = 64 - leading - trailing;
+                    out.writeBit(true);
+                    out.writeBits(leading, 5);
+                    out.writeBits(meaningful - 1, 6);
+                    out.writeBits(xor >>> trailing, meaningful);
+                    prevLeading = leading;
+                    prevTrailing = trailing;
+                }
+            }
+            prevBits = bits;
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Decode n points encoded at the offset into the buffer into the given arrays.
+     */
+    public static void decode(ByteBuffer buf, int offset, int n, long[] timestamps, double[] values) {
+        if(n == 0) {
+            return;
+        }
+        BitInput in = new BitInput(buf, offset);
+        long prevTs = in.readBits(64);
+        long prevDelta = 0;
+        long prevBits = in.readBits(64);
+        int prevLeading = 0;
+        int prevTrailing = 0;
+        timestamps[0] = prevTs;
+        values[0] = Double.longBitsToDouble(prevBits);
+        for(int i = 1;i < n;++i) {
+            long delta = prevDelta + readTimestamp(in);
+            prevTs += delta;
+            prevDelta = delta;
+            timestamps[i] = prevTs;
+
+            if(in.readBit()) {
+                if(in.readBit()) {
+                    prevLeading = (int)in.readBits(5);
+                    int meaningful = (int)in.readBits(6) + 1;
+                    prevTrailing = 64 - prevLeading - meaningful;
+                }
+                long xor = in.readBits(64 - prevLeading - prevTrailing) << prevTrailing;
+                prevBits ^= xor;
+            }
+            values[i] = Double.longBitsToDouble(prevBits);
+        }
+    }
+}
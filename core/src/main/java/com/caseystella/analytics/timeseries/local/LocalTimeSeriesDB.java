@@ -0,0 +1,206 @@
+package com.caseystella.analytics.timeseries.local;
+
+import com.caseystella.analytics.DataPoint;
+import com.caseystella.analytics.distribution.TimeRange;
+import com.caseystella.analytics.timeseries.TimeseriesCursor;
+import com.caseystella.analytics.timeseries.TimeseriesCursors;
+import com.caseystella.analytics.timeseries.TimeseriesDatabaseHandler;
+import com.caseystella.analytics.timeseries.TimeseriesDatabaseHandlers;
+import com.caseystella.analytics.util.ConfigUtil;
+import com.google.common.base.Function;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A durable timeseries database on the local disk, for when there is no HBase around (e.g. replay or edge
+ * deployments).  Each metric gets a directory under the configured directory, holding a series per distinct set
+ * of tags.  Points are appended to a series' segment files in Gorilla compressed blocks of block_size points
+ * and read back through a memory mapping of the segments.  As with the TSDBHandler, retrieve only returns raw
+ * points and a point is only reported written to its callback once its block is written out, which happens
+ * when the block fills or on flush.
+ *
+ * The segment files may only have one writer, so handlers within a JVM share the stores for a directory and
+ * separate processes must be pointed at separate directories.
+ */
+public class LocalTimeSeriesDB implements TimeseriesDatabaseHandler {
+    public static final String DIRECTORY_CONFIG = "directory";
+    public static final String BLOCK_SIZE_CONFIG = "block_size";
+    public static final String SEGMENT_SIZE_CONFIG = "segment_size_bytes";
+    public static final int DEFAULT_BLOCK_SIZE = 1024;
+    public static final long DEFAULT_SEGMENT_SIZE = 64*1024*1024;
+    //segments are addressed by int offsets, so keep them well clear of 2GB
+    public static final long MAX_SEGMENT_SIZE = 1024*1024*1024;
+    private static final ConcurrentMap<String, MetricStore> stores = new ConcurrentHashMap<>();
+
+    private File directory;
+    private int blockSize = DEFAULT_BLOCK_SIZE;
+    private long segmentSize = DEFAULT_SEGMENT_SIZE;
+    private transient Map<String, MetricStore> used;
+
+    private MetricStore getStore(String metric) {
+        if(used == null) {
+            used = new HashMap<>();
+        }
+        MetricStore store = used.get(metric);
+        if(store == null) {
+            if(directory == null) {
+                throw new IllegalStateException("The local timeseries database must be configured with a " + DIRECTORY_CONFIG);
+            }
+            try {
+                File metricDir = new File(directory, URLEncoder.encode(metric, "UTF-8"));
+                String key = metricDir.getCanonicalPath();
+                store = stores.get(key);
+                if(store == null) {
+                    MetricStore newStore = new MetricStore(metricDir, blockSize, segmentSize);
+                    store = stores.putIfAbsent(key, newStore);
+                    if(store == null) {
+                        store = newStore;
+                    }
+                }
+            } catch (UnsupportedEncodingException e) {
+                throw new RuntimeException(e.getMessage(), e);
+            } catch (IOException e) {
+                throw new RuntimeException("Unable to open the store for " + metric, e);
+            }
+            used.put(metric, store);
+        }
+        return store;
+    }
+
+    private static void written(List<Function<Object, Void>> callbacks) {
+        for(Function<Object, Void> callback : callbacks) {
+            callback.apply(null);
+        }
+    }
+
+    @Override
+    public void persist(String metric, DataPoint pt, Map<String, String> tags, Function<Object, Void> callback) {
+        try {
+            written(getStore(metric).add(tags, pt.getTimestamp(), pt.getValue(), callback));
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to persist to " + metric + ": " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public List<DataPoint> retrieve(final String metric
+                                   , final DataPoint pt
+                                   , TimeRange range
+                                   , Map<String, String> filter
+                                   , int maxPts
+                                   )
+    {
+        List<DataPoint> ret = TimeseriesCursors.toList(retrieveCursor(metric, pt, range, filter, -1), metric);
+        //the cursor is only in order if each series was written in order
+        Collections.sort(ret, new Comparator<DataPoint>() {
+            @Override
+            public int compare(DataPoint o1, DataPoint o2) {
+                return Long.compare(o1.getTimestamp(), o2.getTimestamp());
+            }
+        });
+        if(maxPts > 0 && ret.size() > maxPts) {
+            return new ArrayList<>(ret.subList(0, maxPts));
+        }
+        return ret;
+    }
+
+    @Override
+    public TimeseriesCursor retrieveCursor(String metric
+                                          , final DataPoint pt
+                                          , TimeRange range
+                                          , Map<String, String> filter
+                                          , final int maxPts
+                                          )
+    {
+        Map<String, String> tags = new HashMap<>();
+        if(filter != null) {
+            tags.putAll(filter);
+        }
+        tags.put(TimeseriesDatabaseHandlers.TYPE_KEY, TimeseriesDatabaseHandlers.RAW_TYPE);
+        final TimeseriesCursor cursor;
+        try {
+            cursor = getStore(metric).cursor(range.getBegin(), pt.getTimestamp(), tags);
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to retrieve from " + metric + ": " + e.getMessage(), e);
+        }
+        return new TimeseriesCursor() {
+            int returned = 0;
+
+            @Override
+            public boolean next() {
+                if(maxPts > 0 && returned >= maxPts) {
+                    return false;
+                }
+                while(cursor.next()) {
+                    if(cursor.getTimestamp() != pt.getTimestamp() || cursor.getValue() != pt.getValue()) {
+                        returned++;
+                        return true;
+                    }
+                }
+                return false;
+            }
+
+            @Override
+            public long getTimestamp() {
+                return cursor.getTimestamp();
+            }
+
+            @Override
+            public double getValue() {
+                return cursor.getValue();
+            }
+
+            @Override
+            public Map<String, String> getTags() {
+                return cursor.getTags();
+            }
+
+            @Override
+            public void close() {
+                cursor.close();
+            }
+        };
+    }
+
+    @Override
+    public void configure(Map<String, Object> config) {
+        Object dirObj = config == null?null:config.get(DIRECTORY_CONFIG);
+        if(dirObj == null) {
+            throw new IllegalStateException("The local timeseries database must be configured with a " + DIRECTORY_CONFIG);
+        }
+        directory = new File(dirObj.toString());
+        {
+            Object o = config.get(BLOCK_SIZE_CONFIG);
+            if(o != null) {
+                blockSize = Math.max(1, ConfigUtil.INSTANCE.coerceInteger(BLOCK_SIZE_CONFIG, o));
+            }
+        }
+        {
+            Object o = config.get(SEGMENT_SIZE_CONFIG);
+            if(o != null) {
+                segmentSize = Math.min(MAX_SEGMENT_SIZE, ConfigUtil.INSTANCE.coerceLong(SEGMENT_SIZE_CONFIG, o));
+            }
+        }
+        used = null;
+    }
+
+    @Override
+    public void flush() {
+        if(used == null) {
+            return;
+        }
+        for(Map.Entry<String, MetricStore> kv : used.entrySet()) {
+            try {
+                written(kv.getValue().flush());
+            } catch (IOException e) {
+                throw new RuntimeException("Unable to flush " + kv.getKey() + ": " + e.getMessage(), e);
+            }
+        }
+    }
+}
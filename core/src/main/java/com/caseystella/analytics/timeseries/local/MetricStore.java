@@ -0,0 +1,321 @@
+package com.caseystella.analytics.timeseries.local;
+
+import com.caseystella.analytics.timeseries.TimeseriesCursor;
+import com.google.common.base.Function;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Properties;
+
+/**
+ * The directory of series for a single metric.  Each distinct set of tags is its own series, with its tags in a
+ * properties file and its points in a run of segment files which roll over once they reach the segment size.
+ * Points are buffered a block at a time and the block is encoded and appended when it fills or is flushed.
+ */
+class MetricStore {
+    private static final String SERIES_PREFIX = "series-";
+    private static final String TAGS_SUFFIX = ".tags";
+    private static final String SEGMENT_SUFFIX = ".seg";
+
+    private class Series {
+        int id;
+        Map<String, String> tags;
+        List<Segment> segments = new ArrayList<>();
+        long[] pendingTimestamps = new long[blockSize];
+        double[] pendingValues = new double[blockSize];
+        int numPending = 0;
+        List<Function<Object, Void>> pendingCallbacks = new ArrayList<>();
+
+        Series(int id, Map<String, String> tags) {
+            this.id = id;
+            this.tags = tags;
+        }
+
+        File segmentFile(int segment) {
+            return new File(dir, SERIES_PREFIX + id + "-" + segment + SEGMENT_SUFFIX);
+        }
+
+        void writeBlock(List<Function<Object, Void>> written) throws IOException {
+            if(numPending == 0) {
+                return;
+            }
+            Segment last = segments.isEmpty()?null:segments.get(segments.size() - 1);
+            if(last == null || last.length() >= segmentSize) {
+                last = new Segment(segmentFile(segments.size()));
+                segments.add(last);
+            }
+            last.append(pendingTimestamps, pendingValues, numPending);
+            numPending = 0;
+            written.addAll(pendingCallbacks);
+            pendingCallbacks.clear();
+        }
+    }
+
+    /**
+     * Walks the points of a series in [begin, end] in the order written, decoding a block at a time.
+     */
+    private static class SeriesCursor {
+        final Map<String, String> tags;
+        final List<Segment.BlockRef> blocks;
+        final long[] pendingTimestamps;
+        final double[] pendingValues;
+        final long begin;
+        final long end;
+        long[] decodedTimestamps = null;
+        double[] decodedValues = null;
+        int block = -1;
+        long[] timestamps = null;
+        double[] values = null;
+        int size = 0;
+        int i = -1;
+
+        SeriesCursor( Map<String, String> tags
+                    , List<Segment.BlockRef> blocks
+                    , long[] pendingTimestamps
+                    , double[] pendingValues
+                    , long begin
+                    , long end
+                    )
+        {
+            this.tags = Collections.unmodifiableMap(tags);
+            this.blocks = blocks;
+            this.pendingTimestamps = pendingTimestamps;
+            this.pendingValues = pendingValues;
+            this.begin = begin;
+            this.end = end;
+        }
+
+        boolean next() {
+            while(true) {
+                for(++i;i < size;++i) {
+                    if(timestamps[i] >= begin && timestamps[i] <= end) {
+                        return true;
+                    }
+                }
+                if(++block > blocks.size()) {
+                    return false;
+                }
+                i = -1;
+                if(block == blocks.size()) {
+                    //the points which have yet to be written
+                    timestamps = pendingTimestamps;
+                    values = pendingValues;
+                    size = pendingTimestamps.length;
+                }
+                else {
+                    Segment.BlockRef ref = blocks.get(block);
+                    if(decodedTimestamps == null || decodedTimestamps.length < ref.count) {
+                        decodedTimestamps = new long[ref.count];
+                        decodedValues = new double[ref.count];
+                    }
+                    ref.decode(decodedTimestamps, decodedValues);
+                    timestamps = decodedTimestamps;
+                    values = decodedValues;
+                    size = ref.count;
+                }
+            }
+        }
+
+        long getTimestamp() {
+            return timestamps[i];
+        }
+
+        double getValue() {
+            return values[i];
+        }
+    }
+
+    /**
+     * Merges the cursors of the series by timestamp, which is in order as long as each series was written in order.
+     */
+    private static class MergedCursor implements TimeseriesCursor {
+        private final PriorityQueue<SeriesCursor> queue;
+        private SeriesCursor current = null;
+
+        MergedCursor(List<SeriesCursor> cursors) {
+            queue = new PriorityQueue<>(Math.max(1, cursors.size()), new Comparator<SeriesCursor>() {
+                @Override
+                public int compare(SeriesCursor o1, SeriesCursor o2) {
+                    return Long.compare(o1.getTimestamp(), o2.getTimestamp());
+                }
+            });
+            for(SeriesCursor cursor : cursors) {
+                if(cursor.next()) {
+                    queue.add(cursor);
+                }
+            }
+        }
+
+        @Override
+        public boolean next() {
+            if(current != null && current.next()) {
+                queue.add(current);
+            }
+            current = queue.poll();
+            return current != null;
+        }
+
+        @Override
+        public long getTimestamp() {
+            return current.getTimestamp();
+        }
+
+        @Override
+        public double getValue() {
+            return current.getValue();
+        }
+
+        @Override
+        public Map<String, String> getTags() {
+            return current.tags;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private final File dir;
+    private final int blockSize;
+    private final long segmentSize;
+    private Map<Map<String, String>, Series> series = null;
+    private int nextSeriesId = 0;
+
+    MetricStore(File dir, int blockSize, long segmentSize) {
+        this.dir = dir;
+        this.blockSize = blockSize;
+        this.segmentSize = segmentSize;
+    }
+
+    private Map<Map<String, String>, Series> getSeries() throws IOException {
+        if(series != null) {
+            return series;
+        }
+        if(!dir.exists() && !dir.mkdirs()) {
+            throw new IOException("Unable to create " + dir);
+        }
+        series = new HashMap<>();
+        File[] tagFiles = dir.listFiles(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return name.startsWith(SERIES_PREFIX) && name.endsWith(TAGS_SUFFIX);
+            }
+        });
+        for(File tagFile : tagFiles) {
+            String name = tagFile.getName();
+            int id = Integer.parseInt(name.substring(SERIES_PREFIX.length(), name.length() - TAGS_SUFFIX.length()));
+            Properties props = new Properties();
+            InputStream is = new FileInputStream(tagFile);
+            try {
+                props.load(is);
+            }
+            finally {
+                is.close();
+            }
+            Map<String, String> tags = new HashMap<>();
+            for(String key : props.stringPropertyNames()) {
+                tags.put(key, props.getProperty(key));
+            }
+            Series s = new Series(id, tags);
+            for(int segment = 0;s.segmentFile(segment).exists();++segment) {
+                s.segments.add(new Segment(s.segmentFile(segment)));
+            }
+            series.put(tags, s);
+            nextSeriesId = Math.max(nextSeriesId, id + 1);
+        }
+        return series;
+    }
+
+    private Series getOrCreate(Map<String, String> tags) throws IOException {
+        Series s = getSeries().get(tags);
+        if(s == null) {
+            tags = new HashMap<>(tags);
+            s = new Series(nextSeriesId++, tags);
+            Properties props = new Properties();
+            props.putAll(tags);
+            OutputStream os = new FileOutputStream(new File(dir, SERIES_PREFIX + s.id + TAGS_SUFFIX));
+            try {
+                props.store(os, null);
+            }
+            finally {
+                os.close();
+            }
+            series.put(tags, s);
+        }
+        return s;
+    }
+
+    /**
+     * Add a point, returning the callbacks of the points which have been written out as a result.
+     */
+    synchronized List<Function<Object, Void>> add( Map<String, String> tags
+                                                 , long timestamp
+                                                 , double value
+                                                 , Function<Object, Void> callback
+                                                 ) throws IOException
+    {
+        Series s = getOrCreate(tags == null?new HashMap<String, String>():tags);
+        s.pendingTimestamps[s.numPending] = timestamp;
+        s.pendingValues[s.numPending] = value;
+        s.numPending++;
+        if(callback != null) {
+            s.pendingCallbacks.add(callback);
+        }
+        List<Function<Object, Void>> written = new ArrayList<>();
+        if(s.numPending == blockSize) {
+            s.writeBlock(written);
+        }
+        return written;
+    }
+
+    /**
+     * Write out the partial blocks, returning the callbacks of the points written.
+     */
+    synchronized List<Function<Object, Void>> flush() throws IOException {
+        List<Function<Object, Void>> written = new ArrayList<>();
+        if(series != null) {
+            for (Series s : series.values()) {
+                s.writeBlock(written);
+            }
+        }
+        return written;
+    }
+
+    /**
+     * A cursor over the points with timestamps in [begin, end] in the series whose tags contain the filter.  The
+     * blocks to read are picked out up front, so the cursor may be read outside of the lock while points are added.
+     */
+    synchronized TimeseriesCursor cursor(long begin, long end, Map<String, String> filter) throws IOException {
+        List<SeriesCursor> cursors = new ArrayList<>();
+        for(Series s : getSeries().values()) {
+            if(s.tags.entrySet().containsAll(filter.entrySet())) {
+                List<Segment.BlockRef> blocks = new ArrayList<>();
+                for(Segment segment : s.segments) {
+                    segment.blocks(begin, end, blocks);
+                }
+                cursors.add(new SeriesCursor( s.tags
+                                            , blocks
+                                            , Arrays.copyOf(s.pendingTimestamps, s.numPending)
+                                            , Arrays.copyOf(s.pendingValues, s.numPending)
+                                            , begin
+                                            , end
+                                            )
+                           );
+            }
+        }
+        return new MergedCursor(cursors);
+    }
+}
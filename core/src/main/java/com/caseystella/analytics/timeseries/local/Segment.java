@@ -0,0 +1,149 @@
+package com.caseystella.analytics.timeseries.local;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * An append-only file of Gorilla encoded blocks.  Each block starts with a header of its minimum and maximum
+ * timestamp, the number of points and the length of the encoded points.  The headers make up a sparse time
+ * index, which is kept in memory and rebuilt by skipping from header to header when the segment is opened.
+ * Blocks are read straight out of a read-only mapping of the file, which is widened as the file grows.
+ */
+class Segment {
+    static final int HEADER_SIZE = 8 + 8 + 4 + 4;
+
+    private final File file;
+    private final FileChannel channel;
+    private long length;
+    private MappedByteBuffer mapped;
+
+    private int numBlocks = 0;
+    private long[] minTs = new long[16];
+    private long[] maxTs = new long[16];
+    private long[] offsets = new long[16];
+    private int[] counts = new int[16];
+
+    Segment(File file) throws IOException {
+        this.file = file;
+        this.channel = new RandomAccessFile(file, "rw").getChannel();
+        long size = channel.size();
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        long pos = 0;
+        while(pos + HEADER_SIZE <= size) {
+            header.clear();
+            channel.read(header, pos);
+            header.flip();
+            long min = header.getLong();
+            long max = header.getLong();
+            int count = header.getInt();
+            int payloadLength = header.getInt();
+            if(pos + HEADER_SIZE + payloadLength > size) {
+                break;
+            }
+            addToIndex(min, max, pos, count);
+            pos += HEADER_SIZE + payloadLength;
+        }
+        if(pos < size) {
+            //a block was only partially written when we went down, so drop it.
+            channel.truncate(pos);
+        }
+        length = pos;
+        channel.position(length);
+    }
+
+    private void addToIndex(long min, long max, long offset, int count) {
+        if(numBlocks == minTs.length) {
+            minTs = Arrays.copyOf(minTs, 2*numBlocks);
+            maxTs = Arrays.copyOf(maxTs, 2*numBlocks);
+            offsets = Arrays.copyOf(offsets, 2*numBlocks);
+            counts = Arrays.copyOf(counts, 2*numBlocks);
+        }
+        minTs[numBlocks] = min;
+        maxTs[numBlocks] = max;
+        offsets[numBlocks] = offset;
+        counts[numBlocks] = count;
+        numBlocks++;
+    }
+
+    long length() {
+        return length;
+    }
+
+    File getFile() {
+        return file;
+    }
+
+    void append(long[] timestamps, double[] values, int n) throws IOException {
+        if(n == 0) {
+            return;
+        }
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+        for(int i = 0;i < n;++i) {
+            min = Math.min(min, timestamps[i]);
+            max = Math.max(max, timestamps[i]);
+        }
+        byte[] payload = GorillaCodec.encode(timestamps, values, n);
+        ByteBuffer block = ByteBuffer.allocate(HEADER_SIZE + payload.length);
+        block.putLong(min);
+        block.putLong(max);
+        block.putInt(n);
+        block.putInt(payload.length);
+        block.put(payload);
+        block.flip();
+        while(block.hasRemaining()) {
+            channel.write(block, length + block.position());
+        }
+        addToIndex(min, max, length, n);
+        length += HEADER_SIZE + payload.length;
+    }
+
+    /**
+     * A block of points within a mapping of the segment.  Blocks are never rewritten, so this stays valid as the
+     * segment grows.
+     */
+    static class BlockRef {
+        final ByteBuffer buf;
+        final int offset;
+        final int count;
+
+        BlockRef(ByteBuffer buf, int offset, int count) {
+            this.buf = buf;
+            this.offset = offset;
+            this.count = count;
+        }
+
+        void decode(long[] timestamps, double[] values) {
+            GorillaCodec.decode(buf, offset, count, timestamps, values);
+        }
+    }
+
+    /**
+     * Add the blocks which may have points with timestamps in [begin, end].
+     */
+    void blocks(long begin, long end, List<BlockRef> blocks) throws IOException {
+        for(int i = 0;i < numBlocks;++i) {
+            if(maxTs[i] >= begin && minTs[i] <= end) {
+                blocks.add(new BlockRef(map(), (int)offsets[i] + HEADER_SIZE, counts[i]));
+            }
+        }
+    }
+
+    private MappedByteBuffer map() throws IOException {
+        if(mapped == null || mapped.capacity() < length) {
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+        }
+        return mapped;
+    }
+
+    void close() throws IOException {
+        mapped = null;
+        channel.close();
+    }
+}
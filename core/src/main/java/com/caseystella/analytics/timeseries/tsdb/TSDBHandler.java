@@ -3,6 +3,7 @@ package com.caseystella.analytics.timeseries.tsdb;
 import com.caseystella.analytics.timeseries.TSConstants;
 import com.caseystella.analytics.DataPoint;
 import com.caseystella.analytics.distribution.TimeRange;
+import com.caseystella.analytics.timeseries.TimeseriesCursor;
 import com.caseystella.analytics.timeseries.TimeseriesDatabaseHandler;
 import com.caseystella.analytics.timeseries.TimeseriesDatabaseHandlers;
 import com.caseystella.analytics.util.ConfigUtil;
@@ -18,18 +19,53 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+/**
+ * Persists to and retrieves from OpenTSDB.  By default every point is written as it is persisted, waiting on the
+ * write if there is no callback.  With a batch_size above 1, points are buffered and written a batch at a time,
+ * when the batch fills, when the oldest buffered point has waited batch_linger_ms or when flushed, and the
+ * batch is sent to HBase right away rather than trickling out point by point.  At most max_in_flight_batches
+ * batches are outstanding; beyond that, flushing waits on the oldest.
+ */
 public class TSDBHandler implements TimeseriesDatabaseHandler {
     protected static final Logger LOG = LoggerFactory.getLogger(TSDBHandler.class);
     public static final String DOWNSAMPLE_AGGREGATOR_CONFIG = "downsample_aggregator";
     public static final String DOWNSAMPLE_INTERVAL_CONFIG = "downsample_interval";
+    public static final String BATCH_SIZE_CONFIG = "batch_size";
+    public static final String BATCH_LINGER_MS_CONFIG = "batch_linger_ms";
+    public static final String MAX_IN_FLIGHT_CONFIG = "max_in_flight_batches";
+    public static final int DEFAULT_MAX_IN_FLIGHT = 4;
     private TSDB tsdb;
     private Aggregator aggregator = null;
     private long sampleInterval;
+    private int batchSize = 1;
+    private long lingerMs = 0;
+    private int maxInFlight = DEFAULT_MAX_IN_FLIGHT;
+    private List<PendingPoint> buffer = new ArrayList<>();
+    private long firstBufferedMs;
+    private ArrayDeque<Deferred<ArrayList<Object>>> inFlight = new ArrayDeque<>();
+
+    private static class PendingPoint implements Serializable {
+        String metric;
+        long timestamp;
+        double value;
+        Map<String, String> tags;
+        Function<Object, Void> callback;
+
+        PendingPoint(String metric, long timestamp, double value, Map<String, String> tags, Function<Object, Void> callback) {
+            this.metric = metric;
+            this.timestamp = timestamp;
+            this.value = value;
+            this.tags = tags;
+            this.callback = callback;
+        }
+    }
 
 
     public void persist(String metric, DataPoint dp, Map<String, String> tags) {
@@ -37,6 +73,17 @@ public class TSDBHandler implements TimeseriesDatabaseHandler {
     }
     @Override
     public void persist(String metric, DataPoint dp, Map<String, String> tags, final Function<Object, Void> callback) {
+        if(batchSize > 1) {
+            long now = System.currentTimeMillis();
+            if(buffer.isEmpty()) {
+                firstBufferedMs = now;
+            }
+            buffer.add(new PendingPoint(metric, dp.getTimestamp(), dp.getValue(), tags, callback));
+            if(buffer.size() >= batchSize || (lingerMs > 0 && now - firstBufferedMs >= lingerMs)) {
+                flush();
+            }
+            return;
+        }
         try {
             if(callback == null) {
                 tsdb.addPoint(metric, dp.getTimestamp(), dp.getValue(), tags).joinUninterruptibly();
@@ -56,6 +103,42 @@ public class TSDBHandler implements TimeseriesDatabaseHandler {
         }
     }
 
+    @Override
+    public void flush() {
+        if(buffer.isEmpty()) {
+            return;
+        }
+        while(inFlight.size() >= maxInFlight) {
+            join(inFlight.poll());
+        }
+        List<Deferred<Object>> batch = new ArrayList<>(buffer.size());
+        for(PendingPoint p : buffer) {
+            Deferred<Object> ret = tsdb.addPoint(p.metric, p.timestamp, p.value, p.tags);
+            final Function<Object, Void> callback = p.callback;
+            if(callback != null) {
+                ret.addCallback(new Callback<Object, Object>() {
+                    @Override
+                    public Object call(Object o) throws Exception {
+                        return callback.apply(o);
+                    }
+                });
+            }
+            batch.add(ret);
+        }
+        buffer.clear();
+        //send the batch now rather than waiting on the HBase client's flush interval
+        tsdb.flush();
+        inFlight.add(Deferred.group(batch));
+    }
+
+    private static void join(Deferred<ArrayList<Object>> batch) {
+        try {
+            batch.joinUninterruptibly();
+        } catch (Exception e) {
+            LOG.error("Unable to write batch of points: " + e.getMessage(), e);
+        }
+    }
+
     @Override
     public List<DataPoint> retrieve(String metric
                                    , DataPoint pt
@@ -64,6 +147,114 @@ public class TSDBHandler implements TimeseriesDatabaseHandler {
                                    , int maxPts
                                    )
     {
+        QueryCursor cursor = query(metric, pt, range, filter, maxPts);
+        List<DataPoint> ret = new ArrayList<>();
+        while(cursor.next()) {
+            ret.add(new DataPoint(cursor.getTimestamp(), cursor.getValue(), cursor.getTags(), metric));
+        }
+        {
+            String reason = " with range: (" + cursor.start + "," + cursor.end + ") and grouping: "
+                          + Joiner.on(",").join(cursor.tags.entrySet());
+            LOG.info("Found " + cursor.total + " and returned " + ret.size() + reason);
+        }
+        /*if(ret.size() == 0) {
+            throw new RuntimeException("Unable to find any datapoints on " + range + " in " + metric + ": " + tags);
+        }*/
+        return ret;
+    }
+
+    /**
+     * Walks the query results in place rather than copying them out into DataPoints.
+     */
+    private static class QueryCursor implements TimeseriesCursor {
+        private final net.opentsdb.core.DataPoints[] datapoints;
+        private final DataPoint pt;
+        private final long start;
+        private final long end;
+        private final int maxPts;
+        private final Map<String, String> tags;
+        private int series = 0;
+        private int i = -1;
+        private int returned = 0;
+        private int total = 0;
+        private Map<String, String> currentTags = null;
+
+        QueryCursor(net.opentsdb.core.DataPoints[] datapoints, DataPoint pt, long start, long end, int maxPts, Map<String, String> tags) {
+            this.datapoints = datapoints;
+            this.pt = pt;
+            this.start = start;
+            this.end = end;
+            this.maxPts = maxPts;
+            this.tags = tags;
+        }
+
+        @Override
+        public boolean next() {
+            while(series < datapoints.length) {
+                DataPoints dp = datapoints[series];
+                if(i < 0 && LOG.isDebugEnabled() && dp.size() == 0) {
+                    LOG.debug("Returned 0 sized query.");
+                }
+                for (++i; i < dp.size(); ++i,++total) {
+                    long ts = dp.timestamp(i);
+                    if(ts > end || (maxPts > 0 && returned >= maxPts)) {
+                        break;
+                    }
+                    if(ts >= start) {
+                        if(ts != pt.getTimestamp() || dp.doubleValue(i) != pt.getValue()) {
+                            if(currentTags == null) {
+                                currentTags = dp.getTags();
+                            }
+                            returned++;
+                            total++;
+                            return true;
+                        }
+                    }
+                }
+                series++;
+                i = -1;
+                currentTags = null;
+            }
+            return false;
+        }
+
+        @Override
+        public long getTimestamp() {
+            return datapoints[series].timestamp(i);
+        }
+
+        @Override
+        public double getValue() {
+            return datapoints[series].doubleValue(i);
+        }
+
+        @Override
+        public Map<String, String> getTags() {
+            return currentTags;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    @Override
+    public TimeseriesCursor retrieveCursor(String metric
+                                          , DataPoint pt
+                                          , TimeRange range
+                                          , Map<String, String> filter
+                                          , int maxPts
+                                          )
+    {
+        return query(metric, pt, range, filter, maxPts);
+    }
+
+    private QueryCursor query(String metric, DataPoint pt, TimeRange range, Map<String, String> filter, int maxPts) {
+        //make sure that we read our own writes
+        flush();
+        while(!inFlight.isEmpty()) {
+            join(inFlight.poll());
+        }
         Query q = tsdb.newQuery();
         long start = range.getBegin();
         long end = pt.getTimestamp();
@@ -88,35 +279,7 @@ public class TSDBHandler implements TimeseriesDatabaseHandler {
         if(datapoints.length == 0) {
             throw new RuntimeException("Unable to retrieve points (empty set)");
         }
-        List<DataPoint> ret = new ArrayList<>();
-        int total =0;
-        for(int j = 0;j < datapoints.length;++j) {
-            DataPoints dp = datapoints[j];
-            if(LOG.isDebugEnabled() && dp.size() == 0) {
-               LOG.debug("Returned 0 sized query.");
-            }
-            for (int i = 0; i < dp.size(); ++i,++total) {
-                double val = dp.doubleValue(i);
-                long ts = dp.timestamp(i);
-                if(ts > end || (maxPts > 0 && ret.size() >= maxPts)) {
-                    break;
-                }
-                if(ts >= start) {
-                    if(ts != pt.getTimestamp() || val != pt.getValue()) {
-                        ret.add(new DataPoint(ts, val, dp.getTags(), metric));
-                    }
-                }
-            }
-        }
-        {
-            String reason = " with range: (" + start + "," + end + ") and grouping: "
-                          + Joiner.on(",").join(tags.entrySet());
-            LOG.info("Found " + total + " and returned " + ret.size() + reason);
-        }
-        /*if(ret.size() == 0) {
-            throw new RuntimeException("Unable to find any datapoints on " + range + " in " + metric + ": " + tags);
-        }*/
-        return ret;
+        return new QueryCursor(datapoints, pt, start, end, maxPts, tags);
     }
 
     public static class TSDBConfig extends Config {
@@ -158,5 +321,23 @@ public class TSDBHandler implements TimeseriesDatabaseHandler {
                 sampleInterval = ConfigUtil.INSTANCE.coerceLong(DOWNSAMPLE_INTERVAL_CONFIG, aggObj);
             }
         }
+        {
+            Object o = config.get(BATCH_SIZE_CONFIG);
+            if(o != null) {
+                batchSize = ConfigUtil.INSTANCE.coerceInteger(BATCH_SIZE_CONFIG, o);
+            }
+        }
+        {
+            Object o = config.get(BATCH_LINGER_MS_CONFIG);
+            if(o != null) {
+                lingerMs = ConfigUtil.INSTANCE.coerceLong(BATCH_LINGER_MS_CONFIG, o);
+            }
+        }
+        {
+            Object o = config.get(MAX_IN_FLIGHT_CONFIG);
+            if(o != null) {
+                maxInFlight = Math.max(1, ConfigUtil.INSTANCE.coerceInteger(MAX_IN_FLIGHT_CONFIG, o));
+            }
+        }
     }
 }
@@ -5,6 +5,8 @@ import com.twitter.algebird.QTreeSemigroup
 import scala.collection.JavaConversions._
 
 object DistributionUtils {
+  val semigroup = new QTreeSemigroup[Double](6)
+
   def createTree(values: java.lang.Iterable[java.lang.Double] ) : QTree[Double] = {
     val semigroup = new QTreeSemigroup[Double](6);
     iterableAsScalaIterable(values).map{QTree(_)}.reduce(merge(_, _, semigroup))
@@ -13,10 +15,65 @@ object DistributionUtils {
     QTree(value)
   }
 
+  /**
+   * Fold the first length values of a buffer into a tree in one bulk merge, compressing once per batch
+   * rather than once per value.  The tree may be null, in which case a new tree is created from the values.
+   */
+  def bulkInsert(tree:QTree[Double], values:Array[Double], length:Int) : QTree[Double] = {
+    java.util.Arrays.sort(values, 0, length)
+    val batch = mergeSorted(values, 0, length)
+    if(tree == null) {
+      batch
+    }
+    else {
+      semigroup.plus(tree, batch)
+    }
+  }
+
+  /**
+   * Merge neighbouring sorted values pairwise so that most merges happen between trees which share
+   * all but their lowest levels, which keeps the number of intermediate nodes allocated small.
+   */
+  private def mergeSorted(values:Array[Double], begin:Int, end:Int) : QTree[Double] = {
+    if(end - begin == 1) {
+      QTree(values(begin))
+    }
+    else {
+      val mid = (begin + end) >>> 1
+      mergeSorted(values, begin, mid).merge(mergeSorted(values, mid, end))(semigroup.underlyingMonoid)
+    }
+  }
+
+  /**
+   * Write a tree depth first as (offset, level, count, sum, children flags).
+   */
+  def writeTree(tree:QTree[Double], out:java.io.DataOutput) : Unit = {
+    out.writeLong(tree.offset)
+    out.writeInt(tree.level)
+    out.writeLong(tree.count)
+    out.writeDouble(tree.sum)
+    val lower = tree.lowerChild
+    val upper = tree.upperChild
+    out.writeByte((if(lower.isDefined) 1 else 0) | (if(upper.isDefined) 2 else 0))
+    lower.foreach(writeTree(_, out))
+    upper.foreach(writeTree(_, out))
+  }
+
+  def readTree(in:java.io.DataInput) : QTree[Double] = {
+    val offset = in.readLong()
+    val level = in.readInt()
+    val count = in.readLong()
+    val sum = in.readDouble()
+    val children = in.readByte()
+    val lower = if((children & 1) != 0) Some(readTree(in)) else None
+    val upper = if((children & 2) != 0) Some(readTree(in)) else None
+    QTree[Double](offset, level, count, sum, lower, upper)
+  }
+
   def merge(left:QTree[Double], right:QTree[Double], semigroup :QTreeSemigroup[Double] = new QTreeSemigroup(6)) : QTree[Double] = {
     semigroup.plus(left, right)
   }
   def merge(left:QTree[Double], right:QTree[Double]) : QTree[Double] = {
-    merge(left, right, new QTreeSemigroup(6))
+    merge(left, right, semigroup)
   }
 }
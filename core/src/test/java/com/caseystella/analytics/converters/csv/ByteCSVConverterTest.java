@@ -0,0 +1,79 @@
+package com.caseystella.analytics.converters.csv;
+
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+public class ByteCSVConverterTest {
+    @Test
+    public void testParseDouble() {
+        Random r = new Random(0);
+        String[] fixed = new String[] { "0", "-0", "1.", ".5", "+3.25", "1e10", "1.5E-7", "123456789012345678"
+                                      , "0.1", "9007199254740993", "1e-300", "4.9e-324", "NaN", "-Infinity", "1.5f"
+                                      };
+        for(String s : fixed) {
+            assertParses(s);
+        }
+        for(int i = 0;i < 10000;++i) {
+            double d = r.nextGaussian()*Math.pow(10, r.nextInt(20) - 10);
+            assertParses(Double.toString(d));
+            assertParses(String.format("%.4f", d));
+        }
+    }
+
+    private static void assertParses(String s) {
+        byte[] bytes = Bytes.toBytes("x," + s + ",y");
+        Assert.assertEquals(s, Double.doubleToLongBits(Double.parseDouble(s))
+                             , Double.doubleToLongBits(ByteCSVConverter.parseDouble(bytes, 2, 2 + s.length()))
+                           );
+    }
+
+    @Test
+    public void testParseLong() {
+        for(long l : new long[] { 0, -1, 7, Long.MAX_VALUE, Long.MIN_VALUE, 1234567890123L}) {
+            byte[] bytes = Bytes.toBytes(Long.toString(l));
+            Assert.assertEquals(l, ByteCSVConverter.parseLong(bytes, 0, bytes.length));
+        }
+        for(String s : new String[] { "", "-", "1.0", "9223372036854775808", "12a"}) {
+            byte[] bytes = Bytes.toBytes(s);
+            try {
+                ByteCSVConverter.parseLong(bytes, 0, bytes.length);
+                Assert.fail("Expected " + s + " not to parse");
+            }
+            catch(NumberFormatException nfe) {
+            }
+        }
+    }
+
+    @Test
+    public void testConvert() {
+        Map<String, Object> columnMap = new HashMap<>();
+        columnMap.put("a", 0);
+        columnMap.put("b", 2);
+        columnMap.put("c", 3);
+        columnMap.put("d", 4);
+        Map<String, Object> columnTypes = new HashMap<>();
+        columnTypes.put("c", "DOUBLE");
+        columnTypes.put("d", "LONG");
+        Map<String, Object> config = new HashMap<>();
+        config.put(CSVConverter.COLUMN_MAP_CONF, columnMap);
+        config.put(ByteCSVConverter.COLUMN_TYPES_CONF, columnTypes);
+        ByteCSVConverter converter = new ByteCSVConverter();
+        Map<String, Object> ret = converter.convert(Bytes.toBytes("\"x,y\",skip,\"say \"\"hi\"\"\",1.5,oops"), config);
+        Assert.assertEquals("x,y", ret.get("a"));
+        Assert.assertEquals("say \"hi\"", ret.get("b"));
+        Assert.assertEquals(1.5, ret.get("c"));
+        Assert.assertEquals("oops", ret.get("d"));
+        ret = converter.convert(Bytes.toBytes("naïve,,,-2e3,42,extra"), config);
+        Assert.assertEquals("naïve", ret.get("a"));
+        Assert.assertEquals("", ret.get("b"));
+        Assert.assertEquals(-2000.0, ret.get("c"));
+        Assert.assertEquals(42L, ret.get("d"));
+        Assert.assertNull(converter.convert(Bytes.toBytes("too,few,columns"), config));
+        Assert.assertNull(converter.convert(Bytes.toBytes("  # a comment"), config));
+    }
+}
@@ -0,0 +1,38 @@
+package com.caseystella.analytics.converters.primitive;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Random;
+import java.util.TimeZone;
+
+public class DateParserTest {
+    @Test
+    public void testMatchesSimpleDateFormat() throws Exception {
+        TimeZone defaultTz = TimeZone.getDefault();
+        //a zone with daylight savings, to make sure the fast path agrees across transitions.  The parsers are not
+        //the cached ones, which are fixed to the default time zone.
+        TimeZone.setDefault(TimeZone.getTimeZone("America/New_York"));
+        try {
+            Random r = new Random(0);
+            String[] formats = new String[] { "yyyy-MM-dd", "yyyy/MM/dd HH:mm:ss", "yyyy-MM-dd'T'HH:mm:ss.SSS", "yyyyMMddHHmm", "dd MMM yyyy"};
+            for (String format : formats) {
+                SimpleDateFormat sdf = new SimpleDateFormat(format);
+                DateParser parser = new DateParser(format);
+                for (int i = 0; i < 10000; ++i) {
+                    String s = sdf.format(new Date((long) (r.nextDouble() * 2000000000000L)));
+                    Assert.assertEquals(format + ": " + s, sdf.parse(s).getTime(), parser.parse(s));
+                }
+            }
+            //values which do not fit the layout fall back to SimpleDateFormat
+            Assert.assertEquals(new SimpleDateFormat("yyyy-MM-dd").parse("2016-2-1").getTime(), new DateParser("yyyy-MM-dd").parse("2016-2-1"));
+            Assert.assertEquals(1456790400000L, DateParser.get(DateParser.EPOCH_SECONDS).parse("1456790400"));
+            Assert.assertEquals(1456790400123L, DateParser.get(DateParser.EPOCH_MILLIS).parse("1456790400123"));
+        }
+        finally {
+            TimeZone.setDefault(defaultTz);
+        }
+    }
+}
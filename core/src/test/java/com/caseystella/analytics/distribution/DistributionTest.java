@@ -2,11 +2,14 @@ package com.caseystella.analytics.distribution;
 
 import com.caseystella.analytics.DataPoint;
 import com.caseystella.analytics.distribution.scaling.ScalingFunctions;
+import com.caseystella.analytics.distribution.sketch.QTreeSketch;
+import com.caseystella.analytics.distribution.sketch.TDigestSketch;
 import org.apache.commons.math3.stat.descriptive.DescriptiveStatistics;
 import org.junit.Assert;
 import org.junit.Test;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Random;
 
@@ -35,4 +38,67 @@ public class DistributionTest {
         System.out.println("Real : " + realMedian + ", approx: " + approxMedian);
         Assert.assertTrue(Math.abs(realMedian - approxMedian) < 5);
     }
+
+    @Test
+    public void testBufferedInsertion() {
+        Random r = new Random(0);
+        DescriptiveStatistics stats = new DescriptiveStatistics();
+        Distribution perPoint = null;
+        Distribution buffered = null;
+        for(int i = 0; i < 10000;++i) {
+            double val = r.nextGaussian()*100 + 1000;
+            DataPoint dp = (new DataPoint(i, val, null, "foo"));
+            stats.addValue(val);
+            if(perPoint == null) {
+                perPoint = new Distribution(dp, ScalingFunctions.NONE, new GlobalStatistics());
+                buffered = new Distribution(dp, ScalingFunctions.NONE, new GlobalStatistics(), new QTreeSketch(64));
+            }
+            else {
+                perPoint.addDataPoint(dp, ScalingFunctions.NONE);
+                buffered.addDataPoint(dp, ScalingFunctions.NONE);
+            }
+        }
+        Assert.assertEquals(perPoint.getAmount(), buffered.getAmount());
+        for(double p : new double[] { 0.05, 0.25, 0.5, 0.75, 0.95}) {
+            double real = stats.getPercentile(100*p);
+            ValueRange bufferedRange = buffered.getPercentileRange(p);
+            System.out.println(p + " => real: " + real + ", per point: " + perPoint.getPercentile(p) + ", buffered: " + buffered.getPercentile(p));
+            Assert.assertTrue(bufferedRange.getBegin() <= real && real <= bufferedRange.getEnd());
+            Assert.assertEquals(perPoint.getPercentile(p), buffered.getPercentile(p), 1e-6);
+        }
+    }
+
+    @Test
+    public void testTDigestQuantiles() {
+        Random r = new Random(0);
+        DescriptiveStatistics stats = new DescriptiveStatistics();
+        List<Distribution> chunks = new ArrayList<>();
+        Distribution chunk = null;
+        for(int i = 0; i < 100000;++i) {
+            double val = Math.exp(r.nextGaussian());
+            DataPoint dp = (new DataPoint(i, val, null, "foo"));
+            stats.addValue(val);
+            if(chunk == null || chunk.getAmount() == 10000) {
+                chunk = new Distribution(dp, ScalingFunctions.NONE, new GlobalStatistics(), new TDigestSketch(100));
+                chunks.add(chunk);
+            }
+            else {
+                chunk.addDataPoint(dp, ScalingFunctions.NONE);
+            }
+        }
+        Distribution merged = Distribution.merge(chunks);
+        Assert.assertEquals(100000, merged.getAmount());
+        Assert.assertTrue(((TDigestSketch)merged.getSketch()).getNumCentroids() <= 100);
+        Assert.assertEquals(stats.getMin(), merged.getPercentile(0), 1e-9);
+        Assert.assertEquals(stats.getMax(), merged.getPercentile(1), 1e-9);
+        for(double p : new double[] { 0.01, 0.05, 0.25, 0.5, 0.75, 0.95, 0.99}) {
+            double real = stats.getPercentile(100*p);
+            double approx = merged.getPercentile(p);
+            //the error of a t-digest is bounded in rank, not in value
+            double[] sorted = stats.getSortedValues();
+            int rank = Math.abs(Arrays.binarySearch(sorted, approx) + 1);
+            System.out.println(p + " => real: " + real + ", approx: " + approx + ", rank: " + rank);
+            Assert.assertEquals(p, (double)rank/sorted.length, 0.005);
+        }
+    }
 }
@@ -98,4 +98,38 @@ public class RotationTest {
         Assert.assertEquals(11, context.getChunks().size());
         Assert.assertTrue(context.getAmount() <= 110);
     }
+
+    @Test
+    public void incrementalRotationTest() throws Exception {
+        OutlierConfig config = JSONUtil.INSTANCE.load(amountConfig, OutlierConfig.class);
+        final List<Distribution> rotated = new ArrayList<>();
+        final List<Distribution> expected = new ArrayList<>();
+        Distribution.Context context = new Distribution.Context(0, 0) {
+            @Override
+            protected void rotate() {
+                super.rotate();
+                rotated.add(new Distribution(getCurrentDistribution()));
+                expected.add(Distribution.merge(getChunks()));
+            }
+        };
+        GlobalStatistics globalStats= new GlobalStatistics();
+        Random r = new Random(0);
+        LongWritable ts = new LongWritable(0L);
+        for(int i = 0;i < 1000;++i) {
+            context.addDataPoint(nextDataPoint(r, ts, 1, null), config.getRotationPolicy(), config.getChunkingPolicy(), config.getScalingFunction(), globalStats);
+        }
+        Assert.assertEquals(89, rotated.size());
+        //the window kept by the two stacks must agree with merging the chunks from scratch
+        for(int i = 0;i < rotated.size();++i) {
+            Distribution actual = rotated.get(i);
+            Distribution merged = expected.get(i);
+            Assert.assertEquals(merged.getAmount(), actual.getAmount());
+            Assert.assertEquals(merged.getBegin(), actual.getBegin());
+            Assert.assertEquals(merged.getEnd(), actual.getEnd());
+            Assert.assertEquals(merged.getSum(), actual.getSum(), 1e-6);
+            for(double p = 0.1;p < 1;p += 0.1) {
+                Assert.assertEquals(merged.getPercentile(p), actual.getPercentile(p), 1e-6);
+            }
+        }
+    }
 }
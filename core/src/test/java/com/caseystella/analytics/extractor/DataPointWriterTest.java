@@ -0,0 +1,82 @@
+package com.caseystella.analytics.extractor;
+
+import com.caseystella.analytics.DataPoint;
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableMap;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+public class DataPointWriterTest {
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        File f = File.createTempFile("points", ".bin");
+        f.deleteOnExit();
+        Random r = new Random(0);
+        List<DataPoint> expected = new ArrayList<>();
+        long ts = 1000000L;
+        //enough points to span several blocks, with the timestamps mostly but not entirely sorted
+        for(int i = 0;i < 3*DataPointWriter.BLOCK_SIZE + 17;++i) {
+            ts += r.nextInt(100) - 10;
+            Map<String, String> metadata = null;
+            String source = null;
+            if(i % 5 != 0) {
+                metadata = new HashMap<>(ImmutableMap.of("host", "host_" + r.nextInt(20)));
+                source = "source_" + r.nextInt(3);
+            }
+            expected.add(new DataPoint(ts, r.nextGaussian()*1000, metadata, source));
+        }
+        expected.add(new DataPoint(Long.MIN_VALUE, Double.NaN, new HashMap<String, String>(), "edge"));
+        expected.add(new DataPoint(Long.MAX_VALUE, Double.NEGATIVE_INFINITY, new HashMap<String, String>(), "edge"));
+        //strings past the 64KB that writeUTF can manage, with characters which take more than one byte
+        expected.add(new DataPoint(0, 1, new HashMap<>(ImmutableMap.of("long", Strings.repeat("\u00e9x", 40000))), Strings.repeat("s", 70000)));
+        DataPointWriter writer = new DataPointWriter(f);
+        for(DataPoint dp : expected) {
+            writer.write(dp);
+        }
+        writer.close();
+        Assert.assertTrue(DataPointReader.isDataPointFile(f));
+        List<DataPoint> actual = new ArrayList<>();
+        for(DataPoint dp : DataPointReader.read(f)) {
+            actual.add(dp);
+        }
+        Assert.assertEquals(expected.size(), actual.size());
+        for(int i = 0;i < expected.size();++i) {
+            DataPoint e = expected.get(i);
+            DataPoint a = actual.get(i);
+            Assert.assertEquals(e.getTimestamp(), a.getTimestamp());
+            Assert.assertEquals(Double.doubleToLongBits(e.getValue()), Double.doubleToLongBits(a.getValue()));
+            Assert.assertEquals(e.getSource(), a.getSource());
+            Assert.assertEquals(e.getMetadata(), a.getMetadata());
+        }
+        //each point gets its own metadata
+        int same = 2;
+        while(!expected.get(1).getMetadata().equals(expected.get(same).getMetadata())
+           || !expected.get(1).getSource().equals(expected.get(same).getSource())) {
+            same++;
+        }
+        actual.get(1).getMetadata().put("score", "1.0");
+        Assert.assertFalse(actual.get(same).getMetadata().containsKey("score"));
+    }
+
+    @Test
+    public void testNotADataPointFile() throws Exception {
+        File f = File.createTempFile("points", ".csv");
+        f.deleteOnExit();
+        FileOutputStream out = new FileOutputStream(f);
+        out.write("1000,5.0\n".getBytes());
+        out.close();
+        Assert.assertFalse(DataPointReader.isDataPointFile(f));
+        File empty = File.createTempFile("points", ".csv");
+        empty.deleteOnExit();
+        Assert.assertFalse(DataPointReader.isDataPointFile(empty));
+    }
+}
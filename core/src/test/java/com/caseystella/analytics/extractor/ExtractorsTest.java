@@ -45,6 +45,18 @@ public class ExtractorsTest {
 
     @Test
     public void testExtractor() throws Exception {
+        testExtractor(extractorConfig);
+    }
+
+    @Test
+    public void testByteExtractor() throws Exception {
+        testExtractor(extractorConfig.replace("\"CSVConverter\"", "\"ByteCSVConverter\""));
+        testExtractor(extractorConfig.replace("\"CSVConverter\"", "\"ByteCSVConverter\"")
+                                     .replace("\"columnMap\"", "\"columnTypes\" : { \"sensor1_value\" : \"DOUBLE\", \"sensor2_ts\" : \"LONG\" }, \"columnMap\"")
+                     );
+    }
+
+    public void testExtractor(String extractorConfig) throws Exception {
         Assert.assertNotNull(extractorConfig);
         DataPointExtractorConfig config = DataPointExtractorConfig.load(extractorConfig);
         DataPointExtractor extractor = new DataPointExtractor().withConfig(config);
@@ -103,6 +115,11 @@ public class ExtractorsTest {
     public static String fraudExtractorConfig;
     @Test
     public void testFraudExtractor() throws Exception {
+        testFraudExtractor(fraudExtractorConfig);
+        testFraudExtractor(fraudExtractorConfig.replace("\"CSVConverter\"", "\"ByteCSVConverter\""));
+    }
+
+    public void testFraudExtractor(String fraudExtractorConfig) throws Exception {
         Assert.assertNotNull(extractorConfig);
         DataPointExtractorConfig config = DataPointExtractorConfig.load(fraudExtractorConfig);
         DataPointExtractor extractor = new DataPointExtractor().withConfig(config);
@@ -118,4 +135,12 @@ public class ExtractorsTest {
             Assert.assertEquals(75, dp.getValue(), 1e-5);
         }
     }
+
+    @Test
+    public void testSanitize() {
+        Assert.assertEquals("a_bandcdefg_h", ExtractionPlan.sanitize("a b&c,(d)[e]{f}?'g\"/h"));
+        String clean = "plant_1";
+        Assert.assertSame(clean, ExtractionPlan.sanitize(clean));
+        Assert.assertEquals("", ExtractionPlan.sanitize("(),"));
+    }
 }
@@ -5,6 +5,8 @@ import com.caseystella.analytics.outlier.Outlier;
 import com.caseystella.analytics.outlier.OutlierHelper;
 import com.caseystella.analytics.outlier.Severity;
 import com.caseystella.analytics.outlier.batch.rpca.RPCAOutlierAlgorithm;
+import com.caseystella.analytics.outlier.streaming.OutlierConfig;
+import com.google.common.collect.ImmutableMap;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -33,4 +35,106 @@ public class RPCATest {
                 );
         Assert.assertEquals( Severity.SEVERE_OUTLIER , result.getSeverity() );
     }
+
+    @Test
+    public void testVectorRPCAMatchesRPCA() throws Exception {
+        Random r = new Random(0);
+        for(int n : new int[] { 10, 100, 500 }) {
+            double[] data = new double[n];
+            for(int i = 0;i < n;++i) {
+                data[i] = r.nextGaussian() + (i % 37 == 0?10:0);
+            }
+            double spenalty = 1.4/Math.sqrt(n);
+            double[][] matrix = new double[n][1];
+            for(int i = 0;i < n;++i) {
+                matrix[i][0] = data[i];
+            }
+            RPCA expected = new RPCA(matrix, 1, spenalty);
+            VectorRPCA actual = new VectorRPCA(data.clone(), 1, spenalty);
+            for(int i = 0;i < n;++i) {
+                Assert.assertEquals(expected.getS().getEntry(i, 0), actual.getS()[i], 1e-8);
+                Assert.assertEquals(expected.getL().getEntry(i, 0), actual.getL()[i], 1e-8);
+            }
+        }
+    }
+
+    @Test
+    public void testWarmStartMatchesColdStart() throws Exception {
+        Random r = new Random(0);
+        int n = 200;
+        double[] data = new double[n + 1];
+        for(int i = 0;i < data.length;++i) {
+            data[i] = r.nextGaussian() + (i % 37 == 0?10:0);
+        }
+        double spenalty = 1.4/Math.sqrt(n);
+        double[] first = new double[n];
+        System.arraycopy(data, 0, first, 0, n);
+        VectorRPCA previous = new VectorRPCA(first, 1, spenalty);
+        //slide the window by one and start from the previous sparse part
+        double[] initialS = new double[n];
+        System.arraycopy(previous.getS(), 1, initialS, 0, n - 1);
+        double[] next = new double[n];
+        System.arraycopy(data, 1, next, 0, n);
+        VectorRPCA cold = new VectorRPCA(next.clone(), 1, spenalty);
+        VectorRPCA warm = new VectorRPCA(next.clone(), 1, spenalty, initialS, previous.getMu());
+        for(int i = 0;i < n;++i) {
+            Assert.assertEquals(cold.getS()[i], warm.getS()[i], 1e-6);
+            Assert.assertEquals(cold.getL()[i], warm.getL()[i], 1e-6);
+        }
+        Assert.assertTrue(warm.getIterations() < cold.getIterations());
+    }
+
+    @Test
+    public void testIncrementalMatchesSlidingWindow() throws Exception {
+        Random r = new Random(0);
+        int window = 50;
+        OutlierConfig config = new OutlierConfig();
+        config.setConfig(ImmutableMap.<String, Object>of( IncrementalRPCAOutlierAlgorithm.WINDOW_CONF, window
+                                                        , RPCAOutlierAlgorithm.FORCE_DIFF_CONFIG, true
+                                                        )
+                        );
+        IncrementalRPCAOutlierAlgorithm detector = new IncrementalRPCAOutlierAlgorithm();
+        detector.configure(config);
+        List<Double> values = new ArrayList<>();
+        for(int i = 0;i < 300;++i) {
+            double val = r.nextDouble()*1000 + (i % 41 == 0?10000:0);
+            values.add(val);
+            Outlier result = detector.analyze("foo", new DataPoint(i, val, null, "foo"));
+            if(values.size() < window) {
+                Assert.assertEquals(Severity.NOT_ENOUGH_DATA, result.getSeverity());
+                continue;
+            }
+            SlidingRPCA expected = new SlidingRPCA(window);
+            for(double v : values.subList(values.size() - window, values.size())) {
+                expected.add(v);
+            }
+            Assert.assertEquals(Math.abs(expected.score(1, null, true)), result.getScore(), 1e-6);
+        }
+    }
+
+    @Test
+    public void testIncremental() throws Exception {
+        Random r = new Random(0);
+        List<DataPoint> points = new ArrayList<>();
+        for(int i = 0; i < 100;++i) {
+            double val = r.nextDouble()*1000;
+            points.add(new DataPoint(i, val, null, "foo"));
+        }
+        IncrementalRPCAOutlierAlgorithm detector = new IncrementalRPCAOutlierAlgorithm();
+        detector.configure(new OutlierConfig());
+        DataPoint normalPoint = new DataPoint(101, 500, null, "foo");
+        Outlier result = detector.analyze(new Outlier(normalPoint, Severity.NORMAL, null, 0d, points.size())
+                                         , points
+                                         , normalPoint
+                                         );
+        Assert.assertEquals( Severity.NORMAL , result.getSeverity() );
+        //the second time around the window is warm started
+        points.set(10, new DataPoint(10, 200, null, "foo"));
+        DataPoint evaluationPoint = new DataPoint(102, 10000, null, "foo");
+        result = detector.analyze(new Outlier(evaluationPoint, Severity.NORMAL, null, 0d, points.size())
+                                 , points
+                                 , evaluationPoint
+                                 );
+        Assert.assertEquals( Severity.SEVERE_OUTLIER , result.getSeverity() );
+    }
 }
@@ -0,0 +1,167 @@
+package com.caseystella.analytics.outlier.streaming.checkpoint;
+
+import com.caseystella.analytics.DataPoint;
+import com.caseystella.analytics.distribution.sketch.QuantileSketches;
+import com.caseystella.analytics.outlier.Outlier;
+import com.caseystella.analytics.outlier.streaming.OutlierConfig;
+import com.caseystella.analytics.outlier.streaming.mad.SketchyMovingMAD;
+import com.caseystella.analytics.outlier.streaming.state.StateStores;
+import com.caseystella.analytics.util.JSONUtil;
+import com.google.common.collect.ImmutableMap;
+import org.adrianwalker.multilinestring.Multiline;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+
+public class CheckpointTest {
+    /**
+     {
+     "rotationPolicy" : {
+                        "type" : "BY_AMOUNT"
+                       ,"amount" : 100
+                       ,"unit" : "POINTS"
+                        }
+     ,"chunkingPolicy" : {
+                        "type" : "BY_AMOUNT"
+                       ,"amount" : 10
+                       ,"unit" : "POINTS"
+                         }
+     ,"globalStatistics" : {
+                         "min" : -10000
+                         }
+     ,"sketchyOutlierAlgorithm" : "SKETCHY_MOVING_MAD"
+     ,"config" : {
+                 "minAmountToPredict" : 100
+                ,"reservoirSize" : 10
+                ,"zscoreCutoffs" : {
+                                    "NORMAL" : 3.5
+                                   ,"MODERATE_OUTLIER" : 5
+                                   }
+                 }
+     }
+     */
+    @Multiline
+    public static String madConfig;
+
+    private static SketchyMovingMAD newAlgorithm(String sketch) throws IOException {
+        OutlierConfig config = JSONUtil.INSTANCE.load(madConfig, OutlierConfig.class);
+        config.setSketch(QuantileSketches.valueOf(sketch));
+        return ((SketchyMovingMAD)config.getSketchyOutlierAlgorithm()).withConfig(config);
+    }
+
+    private static DataPoint nextPoint(Random r, int i) {
+        double val = r.nextDouble() * 1000 - 10000;
+        if(i % 97 == 0) {
+            val += 3000;
+        }
+        return new DataPoint(i, val, new HashMap<String, String>(), "source_" + (i % 3));
+    }
+
+    private static byte[] checkpoint(Checkpointable state, boolean full) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        state.checkpoint(out, full);
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private static void restore(Checkpointable state, byte[] checkpoint) throws IOException {
+        state.restore(new DataInputStream(new ByteArrayInputStream(checkpoint)));
+    }
+
+    @Test
+    public void testRestoredStateMatches() throws IOException {
+        for(String sketch : new String[] { "QTREE", "TDIGEST"}) {
+            Random r = new Random(0);
+            SketchyMovingMAD original = newAlgorithm(sketch);
+            int i = 0;
+            for(;i < 1000;++i) {
+                original.analyze(nextPoint(r, i));
+            }
+            byte[] full = checkpoint(original, true);
+            for(;i < 1100;++i) {
+                original.analyze(nextPoint(r, i));
+            }
+            byte[] delta = checkpoint(original, false);
+            SketchyMovingMAD restored = newAlgorithm(sketch);
+            restore(restored, full);
+            restore(restored, delta);
+            Assert.assertEquals(3, restored.getStateStore().size());
+            for(;i < 2000;++i) {
+                DataPoint dp = nextPoint(r, i);
+                Outlier expected = original.analyze(new DataPoint(dp.getTimestamp(), dp.getValue(), new HashMap<String, String>(), dp.getSource()));
+                Outlier actual = restored.analyze(dp);
+                Assert.assertEquals(expected.getSeverity(), actual.getSeverity());
+                Assert.assertEquals(expected.getScore(), actual.getScore());
+            }
+        }
+    }
+
+    @Test
+    public void testDeltasOnlyContainChangedKeys() throws IOException {
+        Random r = new Random(0);
+        SketchyMovingMAD algorithm = newAlgorithm("QTREE");
+        for(int i = 0;i < 300;++i) {
+            algorithm.analyze(nextPoint(r, i));
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        Assert.assertEquals(3, algorithm.checkpoint(new DataOutputStream(bytes), false));
+        algorithm.analyze(new DataPoint(300, 1, new HashMap<String, String>(), "source_0"));
+        Assert.assertEquals(1, algorithm.checkpoint(new DataOutputStream(bytes), false));
+        Assert.assertEquals(0, algorithm.checkpoint(new DataOutputStream(bytes), false));
+        Assert.assertEquals(3, algorithm.checkpoint(new DataOutputStream(bytes), true));
+    }
+
+    @Test
+    public void testEvictedKeysAreNotTracked() throws IOException {
+        OutlierConfig config = JSONUtil.INSTANCE.load(madConfig, OutlierConfig.class);
+        config.getConfig().put(StateStores.STATE_STORE, "LRU");
+        config.getConfig().put(StateStores.MAX_KEYS, 10);
+        SketchyMovingMAD algorithm = ((SketchyMovingMAD)config.getSketchyOutlierAlgorithm()).withConfig(config);
+        Random r = new Random(0);
+        //never checkpointed, so only eviction keeps the changed keys from piling up
+        for(int i = 0;i < 10000;++i) {
+            DataPoint dp = nextPoint(r, i);
+            algorithm.analyze(new DataPoint(i, dp.getValue(), dp.getMetadata(), "source_" + i));
+        }
+        Assert.assertEquals(10, algorithm.getStateStore().size());
+        Assert.assertEquals(10, algorithm.checkpoint(new DataOutputStream(new ByteArrayOutputStream()), false));
+    }
+
+    @Test
+    public void testLocalFileStore() throws IOException {
+        File dir = Files.createTempDirectory("checkpoints").toFile();
+        CheckpointStore store = new LocalFileCheckpointStore();
+        store.configure("bolt-0", ImmutableMap.<String, Object>of(LocalFileCheckpointStore.DIRECTORY_CONF, dir.getAbsolutePath()));
+        Assert.assertTrue(store.read().isEmpty());
+        store.write(new byte[] { 0 }, true);
+        store.write(new byte[] { 1 }, false);
+        store.write(new byte[] { 2 }, false);
+        //a new store picks up where the last one left off
+        store = new LocalFileCheckpointStore();
+        store.configure("bolt-0", ImmutableMap.<String, Object>of(LocalFileCheckpointStore.DIRECTORY_CONF, dir.getAbsolutePath()));
+        List<byte[]> checkpoints = store.read();
+        Assert.assertEquals(3, checkpoints.size());
+        for(int i = 0;i < 3;++i) {
+            Assert.assertEquals(i, checkpoints.get(i)[0]);
+        }
+        store.write(new byte[] { 3 }, false);
+        store.write(new byte[] { 4 }, true);
+        store.write(new byte[] { 5 }, false);
+        checkpoints = store.read();
+        Assert.assertEquals(2, checkpoints.size());
+        Assert.assertEquals(4, checkpoints.get(0)[0]);
+        Assert.assertEquals(5, checkpoints.get(1)[0]);
+        Assert.assertEquals(2, dir.listFiles().length);
+    }
+}
@@ -5,6 +5,7 @@ import com.caseystella.analytics.extractor.Extractor;
 import com.caseystella.analytics.outlier.Outlier;
 import com.caseystella.analytics.extractor.DataPointExtractor;
 import com.caseystella.analytics.extractor.DataPointExtractorConfig;
+import com.caseystella.analytics.extractor.DataPointReader;
 import com.caseystella.analytics.outlier.streaming.OutlierConfig;
 import com.caseystella.analytics.outlier.Severity;
 import com.caseystella.analytics.util.JSONUtil;
@@ -31,11 +32,22 @@ public class OutlierRunner {
     }
 
     public double getMean() {
-        return ((SketchyMovingMAD)config.getSketchyOutlierAlgorithm()).getValueDistributions().get("benchmark").getCurrentDistribution().getMean();
+        return ((SketchyMovingMAD)config.getSketchyOutlierAlgorithm()).getState("benchmark").getValueDistribution().getCurrentDistribution().getMean();
     }
 
     public List<Outlier> run(File csv, int linesToSkip, final EnumSet<Severity> reportedSeverities, Function<Map.Entry<DataPoint, Outlier>, Void> callback) throws IOException {
         final List<Outlier> ret = new ArrayList<>();
+        if(DataPointReader.isDataPointFile(csv)) {
+            //already extracted, so there is no header to skip
+            for(DataPoint dp : DataPointReader.read(csv)) {
+                Outlier o = config.getSketchyOutlierAlgorithm().analyze(dp);
+                callback.apply(new AbstractMap.SimpleEntry<>(dp, o));
+                if(reportedSeverities.contains(o.getSeverity())) {
+                    ret.add(o);
+                }
+            }
+            return ret;
+        }
         BufferedReader br = new BufferedReader(new FileReader(csv));
         int numLines = 0;
         for(String line = null;(line = br.readLine()) != null;numLines++){
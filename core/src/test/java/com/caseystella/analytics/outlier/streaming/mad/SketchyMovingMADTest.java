@@ -85,7 +85,7 @@ public class SketchyMovingMADTest {
             Assert.assertTrue(s == Severity.SEVERE_OUTLIER );
         }
 
-        Assert.assertTrue(madAlgo.getMedianDistributions().get("foo").getAmount() <= 110);
-        Assert.assertTrue(madAlgo.getMedianDistributions().get("foo").getChunks().size() <= 12);
+        Assert.assertTrue(madAlgo.getState("foo").getMedianDistribution().getAmount() <= 110);
+        Assert.assertTrue(madAlgo.getState("foo").getMedianDistribution().getChunks().size() <= 12);
     }
 }
@@ -0,0 +1,47 @@
+package com.caseystella.analytics.outlier.streaming.state;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+public class LRUStateStoreTest {
+    @Test
+    public void testSizeEviction() {
+        StateStore<Integer> store = new LRUStateStore<>(2, 0);
+        store.put("a", 1);
+        store.put("b", 2);
+        //touch a so that b is the least recently used
+        Assert.assertEquals(1, (int)store.get("a"));
+        store.put("c", 3);
+        Assert.assertEquals(2, store.size());
+        Assert.assertNull(store.get("b"));
+        Assert.assertEquals(1, (int)store.get("a"));
+        Assert.assertEquals(3, (int)store.get("c"));
+        Assert.assertEquals(1, store.getNumEvictions());
+        Assert.assertEquals(0, store.getNumIdleEvictions());
+    }
+
+    @Test
+    public void testIdleEviction() {
+        final AtomicLong now = new AtomicLong(0);
+        StateStore<Integer> store = new LRUStateStore<Integer>(10, 100) {
+            @Override
+            protected long now() {
+                return now.get();
+            }
+        };
+        store.put("a", 1);
+        now.set(50);
+        store.put("b", 2);
+        now.set(120);
+        Assert.assertEquals(2, (int)store.get("b"));
+        Assert.assertEquals(1, store.size());
+        Assert.assertNull(store.get("a"));
+        now.set(300);
+        store.put("c", 3);
+        Assert.assertEquals(1, store.size());
+        Assert.assertEquals(2, store.getNumIdleEvictions());
+        Assert.assertEquals(0, store.getNumEvictions());
+    }
+}
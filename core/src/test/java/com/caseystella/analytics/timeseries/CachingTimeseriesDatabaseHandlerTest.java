@@ -0,0 +1,81 @@
+package com.caseystella.analytics.timeseries;
+
+import com.caseystella.analytics.DataPoint;
+import com.caseystella.analytics.distribution.SimpleTimeRange;
+import com.caseystella.analytics.distribution.TimeRange;
+import com.caseystella.analytics.timeseries.inmemory.InMemoryTimeSeriesDB;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class CachingTimeseriesDatabaseHandlerTest {
+    private static class CountingTimeSeriesDB extends InMemoryTimeSeriesDB {
+        int numRetrievals = 0;
+
+        CountingTimeSeriesDB() {
+            super("cachingTest");
+        }
+
+        @Override
+        public List<DataPoint> retrieve(String metric, DataPoint pt, TimeRange range, Map<String, String> filter, int maxPts) {
+            numRetrievals++;
+            return super.retrieve(metric, pt, range, filter, maxPts);
+        }
+    }
+
+    private static void assertRetrieval(CountingTimeSeriesDB backend, CachingTimeseriesDatabaseHandler cache, long begin, long end) {
+        DataPoint pt = new DataPoint(end, end, null, "foo");
+        Map<String, String> filter = new HashMap<>();
+        List<DataPoint> expected = backend.retrieve("test", pt, new SimpleTimeRange(begin, end), filter, -1);
+        backend.numRetrievals--;
+        Assert.assertEquals(expected, cache.retrieve("test", pt, new SimpleTimeRange(begin, end), filter, -1));
+    }
+
+    @Test
+    public void testIncrementalRetrieval() {
+        CountingTimeSeriesDB backend = new CountingTimeSeriesDB();
+        try {
+            CachingTimeseriesDatabaseHandler cache = new CachingTimeseriesDatabaseHandler(backend);
+            cache.configure(new HashMap<String, Object>());
+            for (int i = 0; i < 1000; ++i) {
+                cache.persist("test", new DataPoint(i, i, null, "foo"), new HashMap<String, String>(), null);
+            }
+            assertRetrieval(backend, cache, 0, 500);
+            Assert.assertEquals(1, cache.getNumMisses());
+            Assert.assertEquals(1, backend.numRetrievals);
+
+            //overlapping and later, so only the tail is fetched
+            assertRetrieval(backend, cache, 100, 600);
+            Assert.assertEquals(1, cache.getNumPartialHits());
+            Assert.assertEquals(2, backend.numRetrievals);
+
+            //within the window
+            assertRetrieval(backend, cache, 200, 550);
+            Assert.assertEquals(1, cache.getNumHits());
+            Assert.assertEquals(2, backend.numRetrievals);
+
+            //before the window
+            assertRetrieval(backend, cache, 50, 550);
+            Assert.assertEquals(2, cache.getNumMisses());
+            Assert.assertEquals(3, backend.numRetrievals);
+
+            //a late point drops the window
+            cache.persist("test", new DataPoint(300, 300.5, null, "foo"), new HashMap<String, String>(), null);
+            assertRetrieval(backend, cache, 50, 550);
+            Assert.assertEquals(3, cache.getNumMisses());
+            Assert.assertEquals(4, backend.numRetrievals);
+
+            //but a later one does not
+            cache.persist("test", new DataPoint(1000, 1000, null, "foo"), new HashMap<String, String>(), null);
+            assertRetrieval(backend, cache, 60, 540);
+            Assert.assertEquals(2, cache.getNumHits());
+            Assert.assertEquals(4, backend.numRetrievals);
+        }
+        finally {
+            backend.truncate();
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.caseystella.analytics.timeseries.local;
+
+import com.caseystella.analytics.DataPoint;
+import com.caseystella.analytics.distribution.SimpleTimeRange;
+import com.caseystella.analytics.timeseries.TimeseriesCursor;
+import com.caseystella.analytics.timeseries.TimeseriesCursors;
+import com.caseystella.analytics.timeseries.TimeseriesDatabaseHandlers;
+import com.google.common.base.Function;
+import org.junit.Assert;
+import org.junit.Test;
+
+import javax.annotation.Nullable;
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class LocalTimeSeriesDBTest {
+    @Test
+    public void testCodecRoundTrip() {
+        Random r = new Random(0);
+        int n = 1000;
+        long[] timestamps = new long[n];
+        double[] values = new double[n];
+        long ts = 1000000L;
+        for(int i = 0;i < n;++i) {
+            //mostly regular, with the odd jitter, gap or point out of order
+            ts += i % 17 == 0 ? -r.nextInt(5000) : (i % 5 == 0 ? r.nextInt(100000) : 1000);
+            timestamps[i] = ts;
+            values[i] = i % 7 == 0 ? values[Math.max(0, i - 1)] : (i % 13 == 0 ? Double.NaN : r.nextGaussian()*100);
+        }
+        byte[] encoded = GorillaCodec.encode(timestamps, values, n);
+        long[] decodedTimestamps = new long[n];
+        double[] decodedValues = new double[n];
+        GorillaCodec.decode(ByteBuffer.wrap(encoded), 0, n, decodedTimestamps, decodedValues);
+        Assert.assertArrayEquals(timestamps, decodedTimestamps);
+        for(int i = 0;i < n;++i) {
+            Assert.assertEquals(Double.doubleToRawLongBits(values[i]), Double.doubleToRawLongBits(decodedValues[i]));
+        }
+    }
+
+    private static Map<String, String> tags(String type, String host) {
+        Map<String, String> ret = new HashMap<>();
+        ret.put(TimeseriesDatabaseHandlers.TYPE_KEY, type);
+        ret.put("host", host);
+        return ret;
+    }
+
+    @Test
+    public void testPersistAndRetrieve() throws Exception {
+        File dir = Files.createTempDirectory("local_tsdb").toFile();
+        Map<String, Object> config = new HashMap<>();
+        config.put(LocalTimeSeriesDB.DIRECTORY_CONFIG, dir.getAbsolutePath());
+        config.put(LocalTimeSeriesDB.BLOCK_SIZE_CONFIG, 100);
+        config.put(LocalTimeSeriesDB.SEGMENT_SIZE_CONFIG, 1000);
+        LocalTimeSeriesDB tsdb = new LocalTimeSeriesDB();
+        tsdb.configure(config);
+        final AtomicInteger numWritten = new AtomicInteger(0);
+        Function<Object, Void> callback = new Function<Object, Void>() {
+            @Nullable
+            @Override
+            public Void apply(@Nullable Object o) {
+                numWritten.incrementAndGet();
+                return null;
+            }
+        };
+        List<DataPoint> points = new ArrayList<>();
+        for(int i = 0;i < 1050;++i) {
+            DataPoint dp = new DataPoint(i*1000, i % 10, null, "foo");
+            tsdb.persist("test", dp, tags(TimeseriesDatabaseHandlers.RAW_TYPE, i % 2 == 0 ? "even" : "odd"), callback);
+            tsdb.persist("test", dp, tags(TimeseriesDatabaseHandlers.OUTLIER_TYPE, "even"), null);
+            points.add(dp);
+        }
+        Assert.assertEquals(1000, numWritten.get());
+        //we read the points which have yet to be written, too
+        DataPoint evalPt = points.get(1049);
+        Map<String, String> filter = new HashMap<>();
+        filter.put("host", "even");
+        List<DataPoint> retrieved = tsdb.retrieve("test", evalPt, new SimpleTimeRange(100*1000, evalPt.getTimestamp()), filter, -1);
+        Assert.assertEquals(475, retrieved.size());
+        for(int i = 0;i < retrieved.size();++i) {
+            DataPoint expected = points.get(100 + 2*i);
+            Assert.assertEquals(expected.getTimestamp(), retrieved.get(i).getTimestamp());
+            Assert.assertEquals(expected.getValue(), retrieved.get(i).getValue(), 0);
+            Assert.assertEquals("even", retrieved.get(i).getMetadata().get("host"));
+        }
+        //the cursor streams the same points, block by block
+        Assert.assertEquals(retrieved, TimeseriesCursors.toList(tsdb.retrieveCursor("test", evalPt, new SimpleTimeRange(100*1000, evalPt.getTimestamp()), filter, -1), "test"));
+        tsdb.flush();
+        Assert.assertEquals(1050, numWritten.get());
+
+        //a store opened fresh over the directory sees the same points
+        TimeseriesCursor reread = new MetricStore(new File(dir, "test"), 100, 1000).cursor(0, Long.MAX_VALUE, tags(TimeseriesDatabaseHandlers.RAW_TYPE, "odd"));
+        int numReread = 0;
+        while(reread.next()) {
+            Assert.assertEquals("odd", reread.getTags().get("host"));
+            numReread++;
+        }
+        reread.close();
+        Assert.assertEquals(525, numReread);
+        Assert.assertTrue(new File(dir, "test").list().length > 4);
+    }
+}
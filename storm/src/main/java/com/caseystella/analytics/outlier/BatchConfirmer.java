@@ -0,0 +1,257 @@
+package com.caseystella.analytics.outlier;
+
+import backtype.storm.tuple.Tuple;
+import com.caseystella.analytics.DataPoint;
+import com.caseystella.analytics.outlier.batch.OutlierAlgorithm;
+import com.caseystella.analytics.outlier.streaming.OutlierConfig;
+import org.apache.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Confirms prospective outliers with the batch outlier algorithm on a bounded pool of worker threads, so
+ * that a burst of prospective outliers does not stall the tuple path.  The batch algorithms are not
+ * thread-safe, so each worker gets its own, and each grouping key is always confirmed by the same worker so
+ * that algorithms keeping state per key (e.g. the warm starts of the IncrementalRPCAOutlierAlgorithm) see all
+ * of the key's outliers.  Finished confirmations are queued up and handed back to the bolt's thread by drain(),
+ * since the collector and the timeseries database handler are only used from there.  When a worker's queue is
+ * full, the submitting thread runs the confirmation itself with that worker's algorithm, which pushes back on
+ * the spout rather than dropping or buffering without bound.  Confirmations submitted after close() are not run,
+ * but still come back from drain() with a severity of NOT_ENOUGH_DATA so that their tuples are acked.
+ * <p>
+ * The pool is opt-in: unless confirmation.threads is positive, the OutlierBolt confirms on its own thread
+ * before emitting, as it always has.
+ */
+public class BatchConfirmer {
+    private static final Logger LOG = Logger.getLogger(BatchConfirmer.class);
+    public static final String THREADS_CONF = "confirmation.threads";
+    public static final String QUEUE_SIZE_CONF = "confirmation.queueSize";
+    public static final int DEFAULT_THREADS = 0;
+    public static final int DEFAULT_QUEUE_SIZE = 100;
+
+    public static class Confirmation {
+        private Tuple input;
+        private Outlier outlier;
+        private DataPoint dataPoint;
+
+        public Confirmation(Tuple input, Outlier outlier, DataPoint dataPoint) {
+            this.input = input;
+            this.outlier = outlier;
+            this.dataPoint = dataPoint;
+        }
+
+        public Tuple getInput() {
+            return input;
+        }
+
+        public Outlier getOutlier() {
+            return outlier;
+        }
+
+        public DataPoint getDataPoint() {
+            return dataPoint;
+        }
+    }
+
+    /**
+     * A single thread confirming the outliers of its share of the grouping keys with its own algorithm.  The
+     * algorithm is locked while in use, as the submitting thread may use it too.
+     */
+    private class Worker {
+        private final OutlierAlgorithm algorithm = newAlgorithm();
+        private final ThreadPoolExecutor executor;
+
+        Worker(final int workerNum, int queueSize) {
+            executor = new ThreadPoolExecutor(1
+                                             , 1
+                                             , 0L
+                                             , TimeUnit.MILLISECONDS
+                                             , new ArrayBlockingQueue<Runnable>(queueSize)
+                                             , new ThreadFactory() {
+                                                   @Override
+                                                   public Thread newThread(Runnable r) {
+                                                       Thread t = new Thread(r, "outlier-confirmation-" + workerNum);
+                                                       t.setDaemon(true);
+                                                       return t;
+                                                   }
+                                               }
+                                             , new RejectedExecutionHandler() {
+                                                   @Override
+                                                   public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
+                                                       numRejections.incrementAndGet();
+                                                       if(!executor.isShutdown()) {
+                                                           r.run();
+                                                       }
+                                                       else {
+                                                           ((ConfirmationTask)r).skip();
+                                                       }
+                                                   }
+                                               }
+                                             );
+        }
+
+        Outlier analyze(Outlier outlier, DataPoint dp) {
+            synchronized(algorithm) {
+                return algorithm.analyze(outlier, outlier.getSample(), dp);
+            }
+        }
+    }
+
+    private final OutlierConfig outlierConfig;
+    private final List<Worker> workers = new ArrayList<>();
+    private final ConcurrentLinkedQueue<Confirmation> completed = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger inFlight = new AtomicInteger(0);
+    private final AtomicLong numRejections = new AtomicLong(0);
+    private final AtomicLong numCompleted = new AtomicLong(0);
+    private final AtomicLong totalLatencyMs = new AtomicLong(0);
+    private final AtomicLong maxLatencyMs = new AtomicLong(0);
+
+    /**
+     * @param queueSize The most confirmations waiting, shared out between the workers.
+     */
+    public BatchConfirmer(OutlierConfig outlierConfig, int numThreads, int queueSize) {
+        this.outlierConfig = outlierConfig;
+        int workerQueueSize = Math.max(1, (queueSize + numThreads - 1)/numThreads);
+        for(int i = 0;i < numThreads;++i) {
+            workers.add(new Worker(i, workerQueueSize));
+        }
+    }
+
+    private OutlierAlgorithm newAlgorithm() {
+        try {
+            OutlierAlgorithm ret = outlierConfig.getBatchOutlierAlgorithm().getClass().newInstance();
+            ret.configure(outlierConfig);
+            return ret;
+        } catch (InstantiationException e) {
+            throw new RuntimeException("Unable to instantiate batch outlier algorithm.", e);
+        } catch (IllegalAccessException e) {
+            throw new RuntimeException("Unable to instantiate batch outlier algorithm.", e);
+        }
+    }
+
+    private class ConfirmationTask implements Runnable {
+        private final Worker worker;
+        private final Tuple input;
+        private final Outlier outlier;
+        private final DataPoint dp;
+        private final long submitted = System.currentTimeMillis();
+
+        ConfirmationTask(Worker worker, Tuple input, Outlier outlier, DataPoint dp) {
+            this.worker = worker;
+            this.input = input;
+            this.outlier = outlier;
+            this.dp = dp;
+        }
+
+        @Override
+        public void run() {
+            Outlier result = outlier;
+            try {
+                result = worker.analyze(outlier, dp);
+            }
+            catch(RuntimeException e) {
+                LOG.error("Unable to confirm outlier: " + e.getMessage(), e);
+                result.setSeverity(Severity.NOT_ENOUGH_DATA);
+            }
+            long latency = System.currentTimeMillis() - submitted;
+            totalLatencyMs.addAndGet(latency);
+            long max = maxLatencyMs.get();
+            while(latency > max && !maxLatencyMs.compareAndSet(max, latency)) {
+                max = maxLatencyMs.get();
+            }
+            numCompleted.incrementAndGet();
+            complete(result);
+        }
+
+        /**
+         * Hand the outlier back unconfirmed, since the pool is shut down.
+         */
+        void skip() {
+            outlier.setSeverity(Severity.NOT_ENOUGH_DATA);
+            complete(outlier);
+        }
+
+        private void complete(Outlier result) {
+            completed.add(new Confirmation(input, result, dp));
+            inFlight.decrementAndGet();
+        }
+    }
+
+    /**
+     * Confirm a prospective outlier.  The confirmation shows up in a later drain().
+     */
+    public void submit(Tuple input, Outlier outlier, DataPoint dp) {
+        String key = Outlier.groupingKey(dp, outlierConfig.getGroupingKeys());
+        Worker worker = workers.get((key.hashCode() & Integer.MAX_VALUE) % workers.size());
+        inFlight.incrementAndGet();
+        worker.executor.execute(new ConfirmationTask(worker, input, outlier, dp));
+    }
+
+    /**
+     * The confirmations which have finished since the last drain.
+     */
+    public List<Confirmation> drain() {
+        List<Confirmation> ret = new ArrayList<>();
+        for(Confirmation c = completed.poll();c != null;c = completed.poll()) {
+            ret.add(c);
+        }
+        return ret;
+    }
+
+    public int getQueueDepth() {
+        int ret = 0;
+        for(Worker worker : workers) {
+            ret += worker.executor.getQueue().size();
+        }
+        return ret;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    public long getNumRejections() {
+        return numRejections.get();
+    }
+
+    public long getNumCompleted() {
+        return numCompleted.get();
+    }
+
+    public long getTotalLatencyMs() {
+        return totalLatencyMs.get();
+    }
+
+    /**
+     * The largest latency seen since the last call.
+     */
+    public long getAndResetMaxLatencyMs() {
+        return maxLatencyMs.getAndSet(0);
+    }
+
+    /**
+     * Stop taking confirmations and wait for the ones in flight to finish.
+     */
+    public void close() {
+        for(Worker worker : workers) {
+            worker.executor.shutdown();
+        }
+        long deadline = System.currentTimeMillis() + 30000;
+        try {
+            for(Worker worker : workers) {
+                worker.executor.awaitTermination(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.caseystella.analytics.outlier;
+
+import backtype.storm.metric.api.IMetric;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Reports the backlog of outliers waiting on batch confirmation, along with the number of confirmations,
+ * rejections (which ran on the bolt's thread instead) and their latencies since the last report.
+ */
+public class BatchConfirmerMetric implements IMetric {
+    private BatchConfirmer confirmer;
+    private long lastCompleted = 0;
+    private long lastRejections = 0;
+    private long lastLatencyMs = 0;
+
+    public BatchConfirmerMetric(BatchConfirmer confirmer) {
+        this.confirmer = confirmer;
+    }
+
+    @Override
+    public Object getValueAndReset() {
+        long completed = confirmer.getNumCompleted();
+        long rejections = confirmer.getNumRejections();
+        long latencyMs = confirmer.getTotalLatencyMs();
+        Map<String, Long> ret = new HashMap<>();
+        ret.put("queueDepth", (long)confirmer.getQueueDepth());
+        ret.put("inFlight", (long)confirmer.getInFlight());
+        ret.put("completed", completed - lastCompleted);
+        ret.put("rejections", rejections - lastRejections);
+        ret.put("meanLatencyMs", completed > lastCompleted?(latencyMs - lastLatencyMs)/(completed - lastCompleted):0L);
+        ret.put("maxLatencyMs", confirmer.getAndResetMaxLatencyMs());
+        lastCompleted = completed;
+        lastRejections = rejections;
+        lastLatencyMs = latencyMs;
+        return ret;
+    }
+}
@@ -0,0 +1,131 @@
+package com.caseystella.analytics.outlier;
+
+import com.caseystella.analytics.outlier.streaming.checkpoint.CheckpointStore;
+import com.caseystella.analytics.outlier.streaming.checkpoint.Checkpointable;
+import org.apache.log4j.Logger;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Periodically checkpoints a bolt's outlier state.  The state is serialized on the bolt's thread, since it is
+ * not thread-safe, but only the keys changed since the last checkpoint are written, except for every fullEvery-th
+ * checkpoint which writes everything.  Writing to the store happens on a background thread so that slow storage
+ * does not stall the tuple path; if a write is still in progress, the next checkpoint is skipped.
+ */
+public class Checkpointer {
+    private static final Logger LOG = Logger.getLogger(Checkpointer.class);
+    private Checkpointable state;
+    private CheckpointStore store;
+    private int fullEvery;
+    private int numCheckpoints = 0;
+    private volatile boolean forceFull = false;
+    private ExecutorService writer;
+    private Future<?> pendingWrite = null;
+
+    public Checkpointer(Checkpointable state, CheckpointStore store, int fullEvery) {
+        this.state = state;
+        this.store = store;
+        this.fullEvery = fullEvery;
+        writer = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "outlier-checkpoint-writer");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+    }
+
+    /**
+     * Restore whatever state is in the store.  A checkpoint which cannot be read is logged and skipped,
+     * so that a bad checkpoint costs a warm up rather than the worker.
+     */
+    public int restore() {
+        int numRestored = 0;
+        List<byte[]> checkpoints;
+        try {
+            checkpoints = store.read();
+        } catch (IOException e) {
+            LOG.error("Unable to read checkpoints, starting with empty state: " + e.getMessage(), e);
+            return 0;
+        }
+        for(byte[] checkpoint : checkpoints) {
+            try {
+                state.restore(new DataInputStream(new ByteArrayInputStream(checkpoint)));
+                numRestored++;
+            } catch (IOException e) {
+                LOG.error("Unable to restore checkpoint: " + e.getMessage(), e);
+            }
+        }
+        //the next checkpoint starts a new generation, so nothing depends on what we could not read
+        forceFull = true;
+        return numRestored;
+    }
+
+    public void checkpoint() {
+        if(pendingWrite != null && !pendingWrite.isDone()) {
+            LOG.warn("Skipping checkpoint because the previous one is still being written.");
+            return;
+        }
+        final boolean full = forceFull || (fullEvery > 0 && numCheckpoints % fullEvery == 0);
+        forceFull = false;
+        numCheckpoints++;
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        int numKeys;
+        try {
+            DataOutputStream out = new DataOutputStream(bytes);
+            numKeys = state.checkpoint(out, full);
+            out.flush();
+        } catch (IOException e) {
+            LOG.error("Unable to serialize checkpoint: " + e.getMessage(), e);
+            forceFull = true;
+            return;
+        }
+        final byte[] checkpoint = bytes.toByteArray();
+        if(LOG.isDebugEnabled()) {
+            LOG.debug("Checkpointing " + numKeys + " keys in " + checkpoint.length + " bytes (full: " + full + ")");
+        }
+        pendingWrite = writer.submit(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    store.write(checkpoint, full);
+                } catch (IOException e) {
+                    LOG.error("Unable to write checkpoint: " + e.getMessage(), e);
+                    //the changed keys in this delta are lost, so the next checkpoint has to have everything
+                    forceFull = true;
+                }
+            }
+        });
+    }
+
+    /**
+     * Write a final checkpoint and wait for the writes to finish.
+     */
+    public void close() {
+        if(pendingWrite != null) {
+            try {
+                pendingWrite.get();
+            } catch (Exception e) {
+                LOG.error("Unable to wait for checkpoint: " + e.getMessage(), e);
+            }
+        }
+        checkpoint();
+        writer.shutdown();
+        try {
+            writer.awaitTermination(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
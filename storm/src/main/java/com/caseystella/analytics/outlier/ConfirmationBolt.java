@@ -0,0 +1,81 @@
+package com.caseystella.analytics.outlier;
+
+import backtype.storm.Config;
+import backtype.storm.task.OutputCollector;
+import backtype.storm.task.TopologyContext;
+import backtype.storm.topology.IRichBolt;
+import backtype.storm.topology.OutputFieldsDeclarer;
+import backtype.storm.tuple.Fields;
+import backtype.storm.tuple.Tuple;
+import com.caseystella.analytics.DataPoint;
+import com.caseystella.analytics.outlier.streaming.OutlierConfig;
+import com.caseystella.analytics.timeseries.PersistenceConfig;
+import com.caseystella.analytics.timeseries.TimeseriesDatabaseHandler;
+import com.google.common.collect.ImmutableList;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Confirms the prospective outliers an OutlierBolt emits on its PROSPECTIVE_STREAM_ID stream with the batch
+ * outlier algorithm.  Prospective outliers are rare next to the points the OutlierBolt sees, but confirming
+ * them is expensive, so this lets that work be scaled separately.
+ */
+public class ConfirmationBolt implements IRichBolt {
+    OutputCollector _collector;
+    OutlierConfig outlierConfig;
+    PersistenceConfig persistenceConfig;
+    com.caseystella.analytics.outlier.batch.OutlierAlgorithm batchOutlierAlgorithm;
+    TimeseriesDatabaseHandler tsdbHandler;
+
+    public ConfirmationBolt(OutlierConfig outlierConfig, PersistenceConfig persistenceConfig) {
+        this.outlierConfig = outlierConfig;
+        this.persistenceConfig = persistenceConfig;
+    }
+
+    @Override
+    public void prepare(Map stormConf, TopologyContext context, OutputCollector collector) {
+        _collector = collector;
+        batchOutlierAlgorithm = outlierConfig.getBatchOutlierAlgorithm();
+        batchOutlierAlgorithm.configure(outlierConfig);
+        tsdbHandler = persistenceConfig.getDatabaseHandler();
+        tsdbHandler.configure(persistenceConfig.getConfig());
+    }
+
+    @Override
+    public void execute(Tuple input) {
+        if(OutlierBolt.isTick(input)) {
+            tsdbHandler.flush();
+            _collector.ack(input);
+            return;
+        }
+        DataPoint dp = (DataPoint)input.getValueByField(Constants.DATA_POINT);
+        List<DataPoint> sample = (List<DataPoint>) input.getValueByField(Constants.SAMPLE);
+        Double score = (Double) input.getValueByField(Constants.SCORE);
+        Outlier outlier = new Outlier(dp, Severity.SEVERE_OUTLIER, null, score, sample == null?0:sample.size());
+        outlier.setSample(sample);
+        outlier = batchOutlierAlgorithm.analyze(outlier, sample, dp);
+        if(outlier.getSeverity() == Severity.SEVERE_OUTLIER) {
+            OutlierBolt.emitOutlier(dp, tsdbHandler, persistenceConfig, _collector);
+        }
+        _collector.ack(input);
+    }
+
+    @Override
+    public void cleanup() {
+        tsdbHandler.flush();
+    }
+
+    @Override
+    public void declareOutputFields(OutputFieldsDeclarer declarer) {
+        declarer.declareStream(OutlierBolt.STREAM_ID, new Fields(ImmutableList.of("outlier")));
+    }
+
+    @Override
+    public Map<String, Object> getComponentConfiguration() {
+        Map<String, Object> ret = new HashMap<>();
+        ret.put(Config.TOPOLOGY_TICK_TUPLE_FREQ_SECS, OutlierBolt.TICK_SECS);
+        return ret;
+    }
+}
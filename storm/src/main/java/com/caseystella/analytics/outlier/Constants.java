@@ -4,4 +4,8 @@ public class Constants {
     public static final String GROUP_ID= "group_id";
     public static final String DATA_POINT= "datapoint";
     public static final String NUM_PTS = "num_pts";
+    public static final String SAMPLE = "sample";
+    public static final String SCORE = "score";
+    public static final String METRIC = "metric";
+    public static final String TAGS = "tags";
 }
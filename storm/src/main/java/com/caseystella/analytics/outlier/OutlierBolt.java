@@ -1,24 +1,49 @@
 package com.caseystella.analytics.outlier;
 
+import backtype.storm.Config;
 import backtype.storm.task.OutputCollector;
 import backtype.storm.task.TopologyContext;
 import backtype.storm.topology.IRichBolt;
 import backtype.storm.topology.OutputFieldsDeclarer;
 import backtype.storm.tuple.Fields;
 import backtype.storm.tuple.Tuple;
+import backtype.storm.tuple.Values;
 import com.caseystella.analytics.DataPoint;
 import com.caseystella.analytics.outlier.streaming.OutlierAlgorithm;
 import com.caseystella.analytics.outlier.streaming.OutlierConfig;
+import com.caseystella.analytics.outlier.streaming.checkpoint.CheckpointStore;
+import com.caseystella.analytics.outlier.streaming.checkpoint.CheckpointStores;
+import com.caseystella.analytics.outlier.streaming.checkpoint.Checkpointable;
+import com.caseystella.analytics.outlier.streaming.state.HasStateStore;
+import com.caseystella.analytics.outlier.streaming.state.StateStore;
+import com.caseystella.analytics.timeseries.CachingTimeseriesDatabaseHandler;
 import com.caseystella.analytics.timeseries.PersistenceConfig;
 import com.caseystella.analytics.timeseries.TimeseriesDatabaseHandler;
 import com.caseystella.analytics.timeseries.TimeseriesDatabaseHandlers;
+import com.caseystella.analytics.util.ConfigUtil;
 import com.google.common.collect.ImmutableList;
 import org.apache.log4j.Logger;
 
+import java.util.HashMap;
 import java.util.Map;
 
 public class OutlierBolt implements IRichBolt {
     public static String STREAM_ID = "outliers";
+    /**
+     * Prospective outliers, along with their samples, when they are confirmed by a downstream ConfirmationBolt.
+     */
+    public static String PROSPECTIVE_STREAM_ID = "prospective_outliers";
+    /**
+     * Raw points, when they are persisted by a downstream PersistenceBolt.
+     */
+    public static String RAW_STREAM_ID = "raw_points";
+    public static final int METRICS_BUCKET_SECS = 60;
+    public static final int DEFAULT_CHECKPOINT_INTERVAL_SECS = 300;
+    public static final int DEFAULT_FULL_CHECKPOINT_EVERY = 10;
+    /**
+     * How often buffered writes are flushed and finished confirmations are picked up, even when no tuples arrive.
+     */
+    public static final int TICK_SECS = 1;
     private static final Logger LOG = Logger.getLogger(OutlierBolt.class);
     OutputCollector _collector;
     OutlierConfig outlierConfig;
@@ -27,12 +52,35 @@ public class OutlierBolt implements IRichBolt {
     TimeseriesDatabaseHandler tsdbHandler;
     PersistenceConfig persistenceConfig;
     String topic;
+    Checkpointer checkpointer;
+    int ticksPerCheckpoint;
+    int numTicks = 0;
+    BatchConfirmer confirmer;
+    boolean confirmDownstream = false;
+    boolean persistDownstream = false;
     public OutlierBolt(String topic, OutlierConfig outlierConfig, PersistenceConfig persistenceConfig) {
         this.outlierConfig = outlierConfig;
         this.persistenceConfig = persistenceConfig;
         this.topic = topic;
     }
 
+    /**
+     * Emit prospective outliers on the PROSPECTIVE_STREAM_ID stream for a ConfirmationBolt to confirm,
+     * rather than confirming them here.
+     */
+    public OutlierBolt withDownstreamConfirmation(boolean confirmDownstream) {
+        this.confirmDownstream = confirmDownstream;
+        return this;
+    }
+
+    /**
+     * Emit raw points on the RAW_STREAM_ID stream for a PersistenceBolt to write, rather than writing them here.
+     */
+    public OutlierBolt withDownstreamPersistence(boolean persistDownstream) {
+        this.persistDownstream = persistDownstream;
+        return this;
+    }
+
     public static String getMeasureId(String topic, String source) {
         if(source == null || source.length() == 0) {
             return topic;
@@ -57,10 +105,48 @@ public class OutlierBolt implements IRichBolt {
         _collector = collector;
         sketchyOutlierAlgorithm = outlierConfig.getSketchyOutlierAlgorithm();
         sketchyOutlierAlgorithm.configure(outlierConfig);
-        batchOutlierAlgorithm = outlierConfig.getBatchOutlierAlgorithm();
-        batchOutlierAlgorithm.configure(outlierConfig);
+        if(sketchyOutlierAlgorithm instanceof HasStateStore) {
+            StateStore<?> store = ((HasStateStore) sketchyOutlierAlgorithm).getStateStore();
+            context.registerMetric("stateStore", new StateStoreMetric(store), METRICS_BUCKET_SECS);
+        }
+        if(isCheckpointing()) {
+            if(sketchyOutlierAlgorithm instanceof Checkpointable) {
+                Map<String, Object> config = outlierConfig.getConfig();
+                CheckpointStore store = CheckpointStores.newInstance(config.get(CheckpointStores.STORE_CONF).toString());
+                store.configure(context.getThisComponentId() + "-" + context.getThisTaskIndex(), config);
+                int fullEvery = DEFAULT_FULL_CHECKPOINT_EVERY;
+                if(config.containsKey(CheckpointStores.FULL_EVERY_CONF)) {
+                    fullEvery = ConfigUtil.INSTANCE.coerceInteger(CheckpointStores.FULL_EVERY_CONF, config.get(CheckpointStores.FULL_EVERY_CONF));
+                }
+                checkpointer = new Checkpointer((Checkpointable) sketchyOutlierAlgorithm, store, fullEvery);
+                ticksPerCheckpoint = Math.max(1, getCheckpointIntervalSecs()/TICK_SECS);
+                int numRestored = checkpointer.restore();
+                LOG.info("Restored " + numRestored + " checkpoints for task " + context.getThisTaskIndex());
+            }
+            else {
+                LOG.warn("Checkpointing is configured, but " + sketchyOutlierAlgorithm.getClass().getName() + " cannot be checkpointed.");
+            }
+        }
         tsdbHandler = persistenceConfig.getDatabaseHandler();
         tsdbHandler.configure(persistenceConfig.getConfig());
+        if(tsdbHandler instanceof CachingTimeseriesDatabaseHandler) {
+            context.registerMetric("retrievalCache", new RetrievalCacheMetric((CachingTimeseriesDatabaseHandler) tsdbHandler), METRICS_BUCKET_SECS);
+        }
+        if(confirmDownstream) {
+            return;
+        }
+        batchOutlierAlgorithm = outlierConfig.getBatchOutlierAlgorithm();
+        batchOutlierAlgorithm.configure(outlierConfig);
+        int numConfirmationThreads = getNumConfirmationThreads();
+        if(numConfirmationThreads > 0) {
+            int queueSize = BatchConfirmer.DEFAULT_QUEUE_SIZE;
+            Object o = outlierConfig.getConfig() == null?null:outlierConfig.getConfig().get(BatchConfirmer.QUEUE_SIZE_CONF);
+            if(o != null) {
+                queueSize = ConfigUtil.INSTANCE.coerceInteger(BatchConfirmer.QUEUE_SIZE_CONF, o);
+            }
+            confirmer = new BatchConfirmer(outlierConfig, numConfirmationThreads, queueSize);
+            context.registerMetric("confirmation", new BatchConfirmerMetric(confirmer), METRICS_BUCKET_SECS);
+        }
     }
 
     /**
@@ -82,45 +168,94 @@ public class OutlierBolt implements IRichBolt {
      */
     @Override
     public void execute(Tuple input) {
+        drainConfirmations();
+        if(isTick(input)) {
+            tsdbHandler.flush();
+            if(checkpointer != null && ++numTicks % ticksPerCheckpoint == 0) {
+                checkpointer.checkpoint();
+            }
+            _collector.ack(input);
+            return;
+        }
         DataPoint dp = (DataPoint)input.getValueByField(Constants.DATA_POINT);
+        //the scheme keys on the source before it is qualified by the topic, which names the same series
+        String groupId = input.getStringByField(Constants.GROUP_ID);
         String measureId = getMeasureId(topic, dp.getSource());
         dp.setSource(measureId);
         //this guy gets persisted to TSDB
-        tsdbHandler.persist(dp.getSource()
-                , dp
-                , TimeseriesDatabaseHandlers.getTags(dp
-                                                    , TimeseriesDatabaseHandlers.RAW_TYPE
-                                                    , persistenceConfig.getTags()
-                                                    )
-                , TimeseriesDatabaseHandlers.EMPTY_CALLBACK
-        );
+        Map<String, String> rawTags = TimeseriesDatabaseHandlers.getTags(dp
+                                                                        , TimeseriesDatabaseHandlers.RAW_TYPE
+                                                                        , persistenceConfig.getTags()
+                                                                        );
+        if(persistDownstream) {
+            //the point carries on through detection here, so the persistence bolt gets its own copy
+            DataPoint raw = new DataPoint(dp.getTimestamp()
+                                         , dp.getValue()
+                                         , dp.getMetadata() == null?null:new HashMap<>(dp.getMetadata())
+                                         , dp.getSource()
+                                         );
+            _collector.emit(RAW_STREAM_ID, input, new Values(dp.getSource(), raw, rawTags));
+        }
+        else {
+            tsdbHandler.persist(dp.getSource(), dp, rawTags, TimeseriesDatabaseHandlers.EMPTY_CALLBACK);
+        }
         //now let's look for outliers
-        Outlier outlier = sketchyOutlierAlgorithm.analyze(dp);
+        Outlier outlier = sketchyOutlierAlgorithm.analyze(groupId, dp);
         if(outlier.getSeverity() == Severity.SEVERE_OUTLIER) {
-            outlier = batchOutlierAlgorithm.analyze(outlier, outlier.getSample(), dp);
-            if(outlier.getSeverity() == Severity.SEVERE_OUTLIER) {
-                tsdbHandler.persist(dp.getSource()
-                        , dp
-                        , TimeseriesDatabaseHandlers.getTags(dp
-                                            , TimeseriesDatabaseHandlers.OUTLIER_TYPE
-                                            , persistenceConfig.getTags()
-                        )
-                        , TimeseriesDatabaseHandlers.EMPTY_CALLBACK
-                );
-                try {
-                    Map<String, Object> json = OutlierHelper.INSTANCE.toJson(dp);
-                    //LOG.info(json);
-                    _collector.emit(STREAM_ID, ImmutableList.<Object>of(json));
-                } catch (RuntimeException e) {
-                    LOG.error(e.getMessage(), e);
-                }
+            if(confirmDownstream) {
+                _collector.emit(PROSPECTIVE_STREAM_ID, input, new Values(groupId, dp, outlier.getSample(), outlier.getScore()));
+                _collector.ack(input);
+                return;
             }
-
+            if(confirmer != null) {
+                //the tuple is acked once the confirmation comes back
+                confirmer.submit(input, outlier, dp);
+                return;
+            }
+            outlier = batchOutlierAlgorithm.analyze(outlier, outlier.getSample(), dp);
+            confirmed(outlier, dp);
         }
         _collector.ack(input);
 
     }
 
+    private void drainConfirmations() {
+        if(confirmer == null) {
+            return;
+        }
+        for(BatchConfirmer.Confirmation confirmation : confirmer.drain()) {
+            confirmed(confirmation.getOutlier(), confirmation.getDataPoint());
+            _collector.ack(confirmation.getInput());
+        }
+    }
+
+    private void confirmed(Outlier outlier, DataPoint dp) {
+        if(outlier.getSeverity() == Severity.SEVERE_OUTLIER) {
+            emitOutlier(dp, tsdbHandler, persistenceConfig, _collector);
+        }
+    }
+
+    /**
+     * Persist a confirmed outlier and emit it on the outlier stream.
+     */
+    static void emitOutlier(DataPoint dp, TimeseriesDatabaseHandler tsdbHandler, PersistenceConfig persistenceConfig, OutputCollector collector) {
+        tsdbHandler.persist(dp.getSource()
+                , dp
+                , TimeseriesDatabaseHandlers.getTags(dp
+                                    , TimeseriesDatabaseHandlers.OUTLIER_TYPE
+                                    , persistenceConfig.getTags()
+                )
+                , TimeseriesDatabaseHandlers.EMPTY_CALLBACK
+        );
+        try {
+            Map<String, Object> json = OutlierHelper.INSTANCE.toJson(dp);
+            //LOG.info(json);
+            collector.emit(STREAM_ID, ImmutableList.<Object>of(json));
+        } catch (RuntimeException e) {
+            LOG.error(e.getMessage(), e);
+        }
+    }
+
     /**
      * Called when an IBolt is going to be shutdown. There is no guarentee that cleanup
      * will be called, because the supervisor kill -9's worker processes on the cluster.
@@ -130,7 +265,14 @@ public class OutlierBolt implements IRichBolt {
      */
     @Override
     public void cleanup() {
-
+        if(confirmer != null) {
+            confirmer.close();
+            drainConfirmations();
+        }
+        tsdbHandler.flush();
+        if(checkpointer != null) {
+            checkpointer.close();
+        }
     }
 
     /**
@@ -141,11 +283,38 @@ public class OutlierBolt implements IRichBolt {
     @Override
     public void declareOutputFields(OutputFieldsDeclarer declarer) {
         declarer.declareStream(STREAM_ID, new Fields(ImmutableList.of("outlier")));
+        declarer.declareStream(PROSPECTIVE_STREAM_ID, new Fields(Constants.GROUP_ID, Constants.DATA_POINT, Constants.SAMPLE, Constants.SCORE));
+        declarer.declareStream(RAW_STREAM_ID, new Fields(Constants.METRIC, Constants.DATA_POINT, Constants.TAGS));
     }
 
 
     @Override
     public Map<String, Object> getComponentConfiguration() {
-        return null;
+        Map<String, Object> ret = new HashMap<>();
+        ret.put(Config.TOPOLOGY_TICK_TUPLE_FREQ_SECS, TICK_SECS);
+        return ret;
+    }
+
+    private int getCheckpointIntervalSecs() {
+        int intervalSecs = DEFAULT_CHECKPOINT_INTERVAL_SECS;
+        Object o = outlierConfig.getConfig().get(CheckpointStores.INTERVAL_SECS_CONF);
+        if(o != null) {
+            intervalSecs = ConfigUtil.INSTANCE.coerceInteger(CheckpointStores.INTERVAL_SECS_CONF, o);
+        }
+        return intervalSecs;
+    }
+
+    private int getNumConfirmationThreads() {
+        Object o = outlierConfig.getConfig() == null?null:outlierConfig.getConfig().get(BatchConfirmer.THREADS_CONF);
+        return o == null?BatchConfirmer.DEFAULT_THREADS:ConfigUtil.INSTANCE.coerceInteger(BatchConfirmer.THREADS_CONF, o);
+    }
+
+    private boolean isCheckpointing() {
+        return outlierConfig.getConfig() != null && outlierConfig.getConfig().containsKey(CheckpointStores.STORE_CONF);
+    }
+
+    static boolean isTick(Tuple tuple) {
+        return backtype.storm.Constants.SYSTEM_COMPONENT_ID.equals(tuple.getSourceComponent())
+            && backtype.storm.Constants.SYSTEM_TICK_STREAM_ID.equals(tuple.getSourceStreamId());
     }
 }
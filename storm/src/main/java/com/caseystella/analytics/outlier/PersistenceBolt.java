@@ -0,0 +1,123 @@
+package com.caseystella.analytics.outlier;
+
+import backtype.storm.Config;
+import backtype.storm.task.OutputCollector;
+import backtype.storm.task.TopologyContext;
+import backtype.storm.topology.IRichBolt;
+import backtype.storm.topology.OutputFieldsDeclarer;
+import backtype.storm.tuple.Tuple;
+import com.caseystella.analytics.DataPoint;
+import com.caseystella.analytics.timeseries.PersistenceConfig;
+import com.caseystella.analytics.timeseries.TimeseriesDatabaseHandler;
+import com.caseystella.analytics.util.ConfigUtil;
+import com.google.common.base.Function;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Writes behind the OutlierBolt: raw points arrive on its RAW_STREAM_ID stream, grouped by metric, and are
+ * buffered and written a batch at a time with the points for each metric written together.  A tuple is only
+ * acked once the timeseries database reports its point written, so a write which never completes is replayed
+ * by Storm rather than lost.  The callbacks may come from the database client's threads, so the acks are queued
+ * up and made on the bolt's thread.
+ */
+public class PersistenceBolt implements IRichBolt {
+    public static final String BATCH_SIZE_CONF = "write_behind_batch_size";
+    public static final int DEFAULT_BATCH_SIZE = 100;
+    OutputCollector _collector;
+    PersistenceConfig persistenceConfig;
+    TimeseriesDatabaseHandler tsdbHandler;
+    int batchSize = DEFAULT_BATCH_SIZE;
+    Map<String, List<Tuple>> buffer = new LinkedHashMap<>();
+    int numBuffered = 0;
+    ConcurrentLinkedQueue<Tuple> written = new ConcurrentLinkedQueue<>();
+
+    public PersistenceBolt(PersistenceConfig persistenceConfig) {
+        this.persistenceConfig = persistenceConfig;
+    }
+
+    @Override
+    public void prepare(Map stormConf, TopologyContext context, OutputCollector collector) {
+        _collector = collector;
+        tsdbHandler = persistenceConfig.getDatabaseHandler();
+        tsdbHandler.configure(persistenceConfig.getConfig());
+        Object o = persistenceConfig.getConfig() == null?null:persistenceConfig.getConfig().get(BATCH_SIZE_CONF);
+        if(o != null) {
+            batchSize = ConfigUtil.INSTANCE.coerceInteger(BATCH_SIZE_CONF, o);
+        }
+    }
+
+    @Override
+    public void execute(Tuple input) {
+        if(OutlierBolt.isTick(input)) {
+            write();
+            ackWritten();
+            _collector.ack(input);
+            return;
+        }
+        String metric = input.getStringByField(Constants.METRIC);
+        List<Tuple> tuples = buffer.get(metric);
+        if(tuples == null) {
+            tuples = new ArrayList<>();
+            buffer.put(metric, tuples);
+        }
+        tuples.add(input);
+        if(++numBuffered >= batchSize) {
+            write();
+        }
+        ackWritten();
+    }
+
+    private void write() {
+        if(numBuffered == 0) {
+            return;
+        }
+        for(Map.Entry<String, List<Tuple>> kv : buffer.entrySet()) {
+            for(final Tuple tuple : kv.getValue()) {
+                DataPoint dp = (DataPoint) tuple.getValueByField(Constants.DATA_POINT);
+                Map<String, String> tags = (Map<String, String>) tuple.getValueByField(Constants.TAGS);
+                tsdbHandler.persist(kv.getKey(), dp, tags, new Function<Object, Void>() {
+                    @Nullable
+                    @Override
+                    public Void apply(@Nullable Object o) {
+                        written.add(tuple);
+                        return null;
+                    }
+                });
+            }
+        }
+        tsdbHandler.flush();
+        buffer.clear();
+        numBuffered = 0;
+    }
+
+    private void ackWritten() {
+        for(Tuple tuple = written.poll();tuple != null;tuple = written.poll()) {
+            _collector.ack(tuple);
+        }
+    }
+
+    @Override
+    public void cleanup() {
+        write();
+        ackWritten();
+    }
+
+    @Override
+    public void declareOutputFields(OutputFieldsDeclarer declarer) {
+
+    }
+
+    @Override
+    public Map<String, Object> getComponentConfiguration() {
+        Map<String, Object> ret = new HashMap<>();
+        ret.put(Config.TOPOLOGY_TICK_TUPLE_FREQ_SECS, OutlierBolt.TICK_SECS);
+        return ret;
+    }
+}
@@ -0,0 +1,42 @@
+package com.caseystella.analytics.outlier;
+
+import backtype.storm.metric.api.IMetric;
+import com.caseystella.analytics.timeseries.CachingTimeseriesDatabaseHandler;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Reports the number of windows held by a retrieval cache, along with its hits, partial hits (which fetched just
+ * the tail of the window), misses and evictions since the last report.
+ */
+public class RetrievalCacheMetric implements IMetric {
+    private CachingTimeseriesDatabaseHandler cache;
+    private long lastHits = 0;
+    private long lastPartialHits = 0;
+    private long lastMisses = 0;
+    private long lastEvictions = 0;
+
+    public RetrievalCacheMetric(CachingTimeseriesDatabaseHandler cache) {
+        this.cache = cache;
+    }
+
+    @Override
+    public Object getValueAndReset() {
+        long hits = cache.getNumHits();
+        long partialHits = cache.getNumPartialHits();
+        long misses = cache.getNumMisses();
+        long evictions = cache.getNumEvictions();
+        Map<String, Long> ret = new HashMap<>();
+        ret.put("keys", (long)cache.size());
+        ret.put("hits", hits - lastHits);
+        ret.put("partialHits", partialHits - lastPartialHits);
+        ret.put("misses", misses - lastMisses);
+        ret.put("evictions", evictions - lastEvictions);
+        lastHits = hits;
+        lastPartialHits = partialHits;
+        lastMisses = misses;
+        lastEvictions = evictions;
+        return ret;
+    }
+}
@@ -0,0 +1,34 @@
+package com.caseystella.analytics.outlier;
+
+import backtype.storm.metric.api.IMetric;
+import com.caseystella.analytics.outlier.streaming.state.StateStore;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Reports the number of keys held by an outlier algorithm's state store and the number of keys
+ * evicted from it since the last report.
+ */
+public class StateStoreMetric implements IMetric {
+    private StateStore<?> store;
+    private long lastEvictions = 0;
+    private long lastIdleEvictions = 0;
+
+    public StateStoreMetric(StateStore<?> store) {
+        this.store = store;
+    }
+
+    @Override
+    public Object getValueAndReset() {
+        long evictions = store.getNumEvictions();
+        long idleEvictions = store.getNumIdleEvictions();
+        Map<String, Long> ret = new HashMap<>();
+        ret.put("keys", (long)store.size());
+        ret.put("evictions", evictions - lastEvictions);
+        ret.put("idleEvictions", idleEvictions - lastIdleEvictions);
+        lastEvictions = evictions;
+        lastIdleEvictions = idleEvictions;
+        return ret;
+    }
+}
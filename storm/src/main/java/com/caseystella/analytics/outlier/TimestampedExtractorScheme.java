@@ -8,9 +8,11 @@ import com.caseystella.analytics.extractor.DataPointExtractorConfig;
 import com.google.common.collect.ImmutableList;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 
 public class TimestampedExtractorScheme implements MultiScheme{
+    private static final byte[] EMPTY_KEY = new byte[] {};
 
     private DataPointExtractor extractor = null;
     private List<String> groupingKeys;
@@ -23,8 +25,8 @@ public class TimestampedExtractorScheme implements MultiScheme{
 
     @Override
     public Iterable<List<Object>> deserialize(byte[] value) {
-        List<List<Object>> ret = new ArrayList<>();
-        Iterable<DataPoint> dataPoints = extractor.extract(new byte[] {}, value, false);
+        Iterable<DataPoint> dataPoints = extractor.extract(EMPTY_KEY, value, false);
+        List<List<Object>> ret = new ArrayList<>(dataPoints instanceof Collection?((Collection) dataPoints).size():10);
         for(DataPoint dp : dataPoints) {
             String groupId = Outlier.groupingKey(dp, groupingKeys);
             ret.add(ImmutableList.of(groupId, dp));
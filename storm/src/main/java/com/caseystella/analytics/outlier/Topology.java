@@ -98,6 +98,26 @@ public class Topology {
                 return o;
             }
         })
+        ,NUM_CONFIRMATION_WORKERS("c", new OptionHandler() {
+            @Nullable
+            @Override
+            public Option apply(@Nullable String s) {
+                Option o = new Option(s, "num_confirmation_workers", true, "Number of workers confirming outliers in their own bolt.  If unspecified, outliers are confirmed in the outlier bolt.");
+                o.setArgName("N");
+                o.setRequired(false);
+                return o;
+            }
+        })
+        ,NUM_PERSISTENCE_WORKERS("p", new OptionHandler() {
+            @Nullable
+            @Override
+            public Option apply(@Nullable String s) {
+                Option o = new Option(s, "num_persistence_workers", true, "Number of workers writing raw points to the timeseries database in their own bolt.  If unspecified, raw points are written in the outlier bolt.");
+                o.setArgName("N");
+                o.setRequired(false);
+                return o;
+            }
+        })
         ,NUM_SPOUTS("x", new OptionHandler() {
             @Nullable
             @Override
@@ -206,10 +226,48 @@ public class Topology {
                                                 , String indexName
                                                 , boolean startAtBeginning
                                          )
+    {
+        return createTopology(extractorConfig
+                             , streamingOutlierConfig
+                             , persistenceConfig
+                             , kafkaTopic
+                             , zkQuorum
+                             , esNode
+                             , numWorkers
+                             , numSpouts
+                             , numIndexers
+                             , 0
+                             , 0
+                             , indexName
+                             , startAtBeginning
+                             );
+    }
+
+    /**
+     * @param numConfirmers The parallelism of a separate bolt confirming prospective outliers, or 0 to confirm them
+     *                      in the outlier bolt.
+     * @param numPersisters The parallelism of a separate bolt writing raw points to the timeseries database, or 0 to
+     *                      write them in the outlier bolt.
+     */
+    public static TopologyBuilder createTopology( DataPointExtractorConfig extractorConfig
+                                                , com.caseystella.analytics.outlier.streaming.OutlierConfig streamingOutlierConfig
+                                                , PersistenceConfig persistenceConfig
+                                                , String kafkaTopic
+                                                , String zkQuorum
+                                                , String esNode
+                                                , int numWorkers
+                                                , int numSpouts
+                                                , int numIndexers
+                                                , int numConfirmers
+                                                , int numPersisters
+                                                , String indexName
+                                                , boolean startAtBeginning
+                                         )
     {
         TopologyBuilder builder = new TopologyBuilder();
         String spoutId = "outlier_filter";
         String boltId= "outlier";
+        String confirmationBoltId = "confirmation";
         OutlierKafkaSpout spout = null;
         {
             //BrokerHosts hosts, String topic, String zkRoot, String id
@@ -232,10 +290,21 @@ public class Topology {
         }
         OutlierBolt bolt = null;
         {
-            bolt = new OutlierBolt(kafkaTopic, streamingOutlierConfig, persistenceConfig);
+            bolt = new OutlierBolt(kafkaTopic, streamingOutlierConfig, persistenceConfig)
+                  .withDownstreamConfirmation(numConfirmers > 0)
+                  .withDownstreamPersistence(numPersisters > 0);
         }
         builder.setSpout(spoutId, spout, numSpouts);
         builder.setBolt(boltId, bolt, numWorkers).fieldsGrouping(spoutId, new Fields(Constants.GROUP_ID));
+        if(numConfirmers > 0) {
+            builder.setBolt(confirmationBoltId, new ConfirmationBolt(streamingOutlierConfig, persistenceConfig), numConfirmers)
+                   //by key, so that batch algorithms keeping state per key see all of the key's outliers
+                   .fieldsGrouping(boltId, OutlierBolt.PROSPECTIVE_STREAM_ID, new Fields(Constants.GROUP_ID));
+        }
+        if(numPersisters > 0) {
+            builder.setBolt("persistence", new PersistenceBolt(persistenceConfig), numPersisters)
+                   .fieldsGrouping(boltId, OutlierBolt.RAW_STREAM_ID, new Fields(Constants.METRIC));
+        }
         {
             Map conf = new HashMap();
             if(esNode != null) {
@@ -244,7 +313,7 @@ public class Topology {
             conf.put(ConfigurationOptions.ES_BATCH_SIZE_ENTRIES, "1");
             conf.put(ConfigurationOptions.ES_INDEX_AUTO_CREATE, true);
             builder.setBolt("es_bolt", new EsBolt(indexName, conf), numIndexers)
-                   .shuffleGrouping(boltId, OutlierBolt.STREAM_ID);
+                   .shuffleGrouping(numConfirmers > 0?confirmationBoltId:boltId, OutlierBolt.STREAM_ID);
         }
         return builder;
     }
@@ -298,6 +367,12 @@ public class Topology {
                                                  , OutlierOptions.NUM_INDEXING_WORKERS.has(cli)?
                                                    Integer.parseInt(OutlierOptions.NUM_INDEXING_WORKERS.get(cli)):
                                                    5
+                                                 , OutlierOptions.NUM_CONFIRMATION_WORKERS.has(cli)?
+                                                   Integer.parseInt(OutlierOptions.NUM_CONFIRMATION_WORKERS.get(cli)):
+                                                   0
+                                                 , OutlierOptions.NUM_PERSISTENCE_WORKERS.has(cli)?
+                                                   Integer.parseInt(OutlierOptions.NUM_PERSISTENCE_WORKERS.get(cli)):
+                                                   0
                                                  , OutlierOptions.INDEX.has(cli)?
                                                    OutlierOptions.INDEX.get(cli):
                                                    "{source}/outlier"
@@ -0,0 +1,110 @@
+package com.caseystella.analytics.outlier;
+
+import com.caseystella.analytics.DataPoint;
+import com.caseystella.analytics.outlier.batch.rpca.IncrementalRPCAOutlierAlgorithm;
+import com.caseystella.analytics.outlier.streaming.OutlierConfig;
+import com.caseystella.analytics.util.JSONUtil;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class BatchConfirmerTest {
+    /**
+     * Notes which instances confirmed each key.
+     */
+    public static class KeyTrackingAlgorithm extends IncrementalRPCAOutlierAlgorithm {
+        static ConcurrentHashMap<String, Set<Integer>> instances = new ConcurrentHashMap<>();
+
+        @Override
+        public Outlier analyze(Outlier outlierCandidate, List<DataPoint> context, DataPoint dp) {
+            Set<Integer> seen = Collections.newSetFromMap(new ConcurrentHashMap<Integer, Boolean>());
+            Set<Integer> existing = instances.putIfAbsent(dp.getSource(), seen);
+            (existing == null?seen:existing).add(System.identityHashCode(this));
+            return super.analyze(outlierCandidate, context, dp);
+        }
+    }
+
+    @Test
+    public void testConfirmations() throws Exception {
+        OutlierConfig config = JSONUtil.INSTANCE.load("{ \"batchOutlierAlgorithm\" : \"RAD\", \"config\" : {} }", OutlierConfig.class);
+        //a queue much smaller than the number of submissions forces the bolt's thread to run some itself
+        BatchConfirmer confirmer = new BatchConfirmer(config, 2, 2);
+        Random r = new Random(0);
+        List<DataPoint> sample = new ArrayList<>();
+        for(int i = 0;i < 100;++i) {
+            sample.add(new DataPoint(i, r.nextDouble()*1000, null, "foo"));
+        }
+        int numSubmitted = 50;
+        for(int i = 0;i < numSubmitted;++i) {
+            DataPoint dp = new DataPoint(100 + i, i % 2 == 0?10000:500, new HashMap<String, String>(), "foo");
+            Outlier candidate = new Outlier(dp, Severity.SEVERE_OUTLIER, null, 0d, sample.size());
+            candidate.setSample(sample);
+            confirmer.submit(null, candidate, dp);
+        }
+        confirmer.close();
+        List<BatchConfirmer.Confirmation> confirmations = confirmer.drain();
+        Assert.assertEquals(numSubmitted, confirmations.size());
+        Assert.assertEquals(numSubmitted, confirmer.getNumCompleted());
+        Assert.assertEquals(0, confirmer.getInFlight());
+        Assert.assertTrue(confirmer.getNumRejections() > 0);
+        for(BatchConfirmer.Confirmation confirmation : confirmations) {
+            Severity expected = confirmation.getDataPoint().getValue() > 1000?Severity.SEVERE_OUTLIER:Severity.NORMAL;
+            Assert.assertEquals(expected, confirmation.getOutlier().getSeverity());
+        }
+        Assert.assertTrue(confirmer.drain().isEmpty());
+    }
+
+    @Test
+    public void testSubmitAfterClose() throws Exception {
+        OutlierConfig config = JSONUtil.INSTANCE.load("{ \"batchOutlierAlgorithm\" : \"RAD\", \"config\" : {} }", OutlierConfig.class);
+        BatchConfirmer confirmer = new BatchConfirmer(config, 1, 1);
+        confirmer.close();
+        DataPoint dp = new DataPoint(0, 10000, new HashMap<String, String>(), "foo");
+        Outlier candidate = new Outlier(dp, Severity.SEVERE_OUTLIER, null, 0d, 0);
+        candidate.setSample(new ArrayList<DataPoint>());
+        confirmer.submit(null, candidate, dp);
+        List<BatchConfirmer.Confirmation> confirmations = confirmer.drain();
+        Assert.assertEquals(1, confirmations.size());
+        Assert.assertEquals(Severity.NOT_ENOUGH_DATA, confirmations.get(0).getOutlier().getSeverity());
+        Assert.assertEquals(0, confirmer.getInFlight());
+        Assert.assertEquals(0, confirmer.getNumCompleted());
+    }
+
+    @Test
+    public void testKeysStayWithOneWorker() throws Exception {
+        OutlierConfig config = JSONUtil.INSTANCE.load("{ \"batchOutlierAlgorithm\" : \"" + KeyTrackingAlgorithm.class.getName() + "\", \"config\" : {} }", OutlierConfig.class);
+        //a small queue, so that the bolt's thread runs some of the confirmations itself
+        BatchConfirmer confirmer = new BatchConfirmer(config, 3, 3);
+        Random r = new Random(0);
+        int numSubmitted = 300;
+        for(int i = 0;i < numSubmitted;++i) {
+            List<DataPoint> sample = new ArrayList<>();
+            for(int j = 0;j < 50;++j) {
+                sample.add(new DataPoint(j, r.nextDouble()*1000, null, null));
+            }
+            DataPoint dp = new DataPoint(100 + i, i % 10 == 0?10000:500, new HashMap<String, String>(), "key_" + (i % 7));
+            Outlier candidate = new Outlier(dp, Severity.SEVERE_OUTLIER, null, 0d, sample.size());
+            candidate.setSample(sample);
+            confirmer.submit(null, candidate, dp);
+        }
+        confirmer.close();
+        Assert.assertEquals(numSubmitted, confirmer.drain().size());
+        Assert.assertTrue(confirmer.getNumRejections() > 0);
+        Assert.assertEquals(7, KeyTrackingAlgorithm.instances.size());
+        Set<Integer> allInstances = new HashSet<>();
+        for(Set<Integer> instances : KeyTrackingAlgorithm.instances.values()) {
+            Assert.assertEquals(1, instances.size());
+            allInstances.addAll(instances);
+        }
+        //the keys are still spread over the workers
+        Assert.assertTrue(allInstances.size() > 1);
+    }
+}
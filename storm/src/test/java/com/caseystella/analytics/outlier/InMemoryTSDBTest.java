@@ -1,15 +1,20 @@
 package com.caseystella.analytics.outlier;
 
 import com.caseystella.analytics.DataPoint;
+import com.caseystella.analytics.timeseries.TimeseriesCursors;
 import com.caseystella.analytics.timeseries.inmemory.InMemoryTimeSeriesDB;
 import com.caseystella.analytics.distribution.SimpleTimeRange;
 import org.junit.Assert;
 import org.junit.Test;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 public class InMemoryTSDBTest {
     @Test
@@ -32,9 +37,78 @@ public class InMemoryTSDBTest {
             for (DataPoint foundPt : retrieved) {
                 Assert.assertEquals(foundPt, points.get(i++));
             }
+            double[] values = TimeseriesCursors.toValues(tsdb.retrieveCursor("test", evalPt, new SimpleTimeRange(0, 100), new HashMap<String, String>(), -1));
+            Assert.assertEquals(50, values.length);
+            for (i = 0; i < values.length; ++i) {
+                Assert.assertEquals(points.get(i).getValue(), values[i], 0);
+            }
         }
         finally {
             InMemoryTimeSeriesDB.clear();
         }
     }
+
+    @Test
+    public void testConcurrentPersist() throws Exception {
+        final InMemoryTimeSeriesDB tsdb = new InMemoryTimeSeriesDB("concurrent");
+        try {
+            ExecutorService executor = Executors.newFixedThreadPool(4);
+            for (int t = 0; t < 4; ++t) {
+                final int thread = t;
+                executor.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        for (int i = 0; i < 1000; ++i) {
+                            tsdb.persist("metric_" + (i % 2), new DataPoint(thread * 1000 + i, i, null, "foo"), null, null);
+                        }
+                    }
+                });
+            }
+            executor.shutdown();
+            Assert.assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+            Assert.assertEquals(2000, tsdb.getPoints("metric_0").size());
+            Assert.assertEquals(2000, tsdb.getPoints("metric_1").size());
+            Assert.assertTrue(InMemoryTimeSeriesDB.getAllPoints("metric_0").isEmpty());
+        }
+        finally {
+            tsdb.truncate();
+        }
+    }
+
+    @Test
+    public void testOutOfOrderAndFiltered() {
+        InMemoryTimeSeriesDB tsdb = new InMemoryTimeSeriesDB("outOfOrder");
+        try {
+            Random r = new Random(0);
+            List<Integer> timestamps = new ArrayList<>();
+            for (int i = 0; i < 10000; ++i) {
+                timestamps.add(i);
+            }
+            Collections.shuffle(timestamps, r);
+            for (int ts : timestamps) {
+                HashMap<String, String> tags = new HashMap<>();
+                tags.put("parity", ts % 2 == 0 ? "even" : "odd");
+                tsdb.persist("test", new DataPoint(ts, ts + 0.5, null, "foo"), tags, null);
+            }
+            //duplicates are dropped
+            tsdb.persist("test", new DataPoint(5, 5.5, null, "foo"), null, null);
+            Assert.assertEquals(10000, tsdb.getPoints("test").size());
+
+            HashMap<String, String> filter = new HashMap<>();
+            filter.put("parity", "even");
+            List<DataPoint> retrieved = tsdb.retrieve("test", new DataPoint(9000, -1, null, "foo"), new SimpleTimeRange(1000, 9000), filter, -1);
+            Assert.assertEquals(4000, retrieved.size());
+            long expected = 1000;
+            for (DataPoint foundPt : retrieved) {
+                Assert.assertEquals(expected, foundPt.getTimestamp());
+                Assert.assertEquals(expected + 0.5, foundPt.getValue(), 1e-9);
+                Assert.assertEquals("even", foundPt.getMetadata().get("parity"));
+                Assert.assertEquals("foo", foundPt.getSource());
+                expected += 2;
+            }
+        }
+        finally {
+            tsdb.truncate();
+        }
+    }
 }
@@ -1,5 +1,10 @@
 package com.caseystella.analytics.cli;
 
+import com.caseystella.analytics.DataPoint;
+import com.caseystella.analytics.extractor.DataPointExtractor;
+import com.caseystella.analytics.extractor.DataPointExtractorConfig;
+import com.caseystella.analytics.extractor.DataPointWriter;
+import com.caseystella.analytics.util.JSONUtil;
 import com.google.common.base.Function;
 import com.google.common.base.Joiner;
 import com.google.common.base.Splitter;
@@ -55,9 +60,9 @@ public class CSVProjector {
             @Nullable
             @Override
             public Option apply(@Nullable String s) {
-                Option o = new Option(s, "columns", true, "Columns to project");
+                Option o = new Option(s, "columns", true, "Columns to project, required unless extracting");
                 o.setArgName("COL[,COL]*");
-                o.setRequired(true);
+                o.setRequired(false);
                 return o;
             }
         })
@@ -65,9 +70,19 @@ public class CSVProjector {
             @Nullable
             @Override
             public Option apply(@Nullable String s) {
-                Option o = new Option(s, "date_format", true, "Date Format");
+                Option o = new Option(s, "date_format", true, "Date Format, required unless extracting");
                 o.setArgName("FORMAT");
-                o.setRequired(true);
+                o.setRequired(false);
+                return o;
+            }
+        })
+        ,EXTRACTOR_CONFIG("e", new OptionHandler() {
+            @Nullable
+            @Override
+            public Option apply(@Nullable String s) {
+                Option o = new Option(s, "extractor_config", true, "JSON Document describing the extractor for this input data.  If given, the extracted data points are written out in binary for the dry run to replay rather than projecting columns");
+                o.setArgName("JSON_FILE");
+                o.setRequired(false);
                 return o;
             }
         })
@@ -93,6 +108,9 @@ public class CSVProjector {
                     printHelp();
                     System.exit(0);
                 }
+                if(!EXTRACTOR_CONFIG.has(cli) && !(COLUMNS.has(cli) && DATE_FORMAT.has(cli))) {
+                    throw new ParseException("Columns and a date format are required unless extracting.");
+                }
                 return cli;
             } catch (ParseException e) {
                 System.err.println("Unable to parse args: " + Joiner.on(' ').join(args));
@@ -160,10 +178,38 @@ public class CSVProjector {
         throw new RuntimeException("Something very bad happened and I couldn't find any free timestamps for " + ts);
     }
 
+    /**
+     * Extract the data points from the input once, writing them out to be replayed without parsing them again.
+     */
+    public static void extract(File input, DataPointExtractorConfig extractorConfig, File output) throws IOException {
+        DataPointExtractor extractor = new DataPointExtractor().withConfig(extractorConfig);
+        DataPointWriter writer = new DataPointWriter(output);
+        int lineNo = 1;
+        for(byte[] line : new ChunkedFileReader(input).lines()) {
+            if(lineNo % 100 == 0) {
+                System.out.print(".");
+            }
+            if(lineNo % 1000 == 0) {
+                System.out.println(" -- Completed " + lineNo);
+            }
+            lineNo++;
+            for(DataPoint dp : extractor.extract(new byte[]{}, line, false)) {
+                writer.write(dp);
+            }
+        }
+        writer.close();
+    }
+
     public static void main(String... argv) throws IOException{
         CommandLine cli = CSVOptions.parse(new PosixParser(), argv);
+        if(CSVOptions.EXTRACTOR_CONFIG.has(cli)) {
+            DataPointExtractorConfig extractorConfig = JSONUtil.INSTANCE.load( new File(CSVOptions.EXTRACTOR_CONFIG.get(cli))
+                                                                             , DataPointExtractorConfig.class
+                                                                             );
+            extract(new File(CSVOptions.INPUT.get(cli)), extractorConfig, new File(CSVOptions.OUTPUT.get(cli)));
+            return;
+        }
         SimpleDateFormat sdf = new SimpleDateFormat(CSVOptions.DATE_FORMAT.get(cli));
-        BufferedReader in = new BufferedReader(new FileReader(new File(CSVOptions.INPUT.get(cli))));
         PrintWriter out = new PrintWriter(new File(CSVOptions.OUTPUT.get(cli)));
         CSVParser parser = new CSVParserBuilder().build();
         CSVWriter writer = new CSVWriter(out);
@@ -174,14 +220,15 @@ public class CSVProjector {
         //CollisionHandler collisionHandler = new CollisionHandler(150, 2000000);
 
         int lineNo = 1;
-        for(String line = null;(line = in.readLine()) != null;lineNo++) {
+        for(byte[] line : new ChunkedFileReader(new File(CSVOptions.INPUT.get(cli))).lines()) {
             if(lineNo % 100 == 0) {
                 System.out.print(".");
             }
             if(lineNo % 1000 == 0) {
                 System.out.println(" -- Completed " + lineNo);
             }
-            String[] tokens = parser.parseLine(line);
+            lineNo++;
+            String[] tokens = parser.parseLine(new String(line));
             String[] projectedTokens = new String[cols.size()];
             int i = 0;
             boolean write = true;
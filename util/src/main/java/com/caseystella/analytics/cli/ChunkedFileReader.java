@@ -0,0 +1,173 @@
+package com.caseystella.analytics.cli;
+
+import com.google.common.collect.AbstractIterator;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Reads a file's lines through memory maps as byte arrays, skipping the decoding to Strings that a
+ * BufferedReader does.  The file can be split into chunks which end on line boundaries, so that the chunks can
+ * be read in parallel.  A chunk is mapped a window at a time, so files larger than a single mapping can be read.
+ * As with BufferedReader, lines end with \n, \r\n or the end of the file, and the line endings are dropped.
+ */
+public class ChunkedFileReader {
+    public static final int DEFAULT_WINDOW_SIZE = 64*1024*1024;
+
+    public class Chunk implements Iterable<byte[]> {
+        private long start;
+        private long end;
+
+        Chunk(long start, long end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        public long getStart() {
+            return start;
+        }
+
+        public long getEnd() {
+            return end;
+        }
+
+        @Override
+        public Iterator<byte[]> iterator() {
+            return new LineIterator(start, end);
+        }
+    }
+
+    private class LineIterator extends AbstractIterator<byte[]> {
+        private long end;
+        private long windowStart;
+        private MappedByteBuffer window;
+        private int pos = 0;
+
+        LineIterator(long start, long end) {
+            this.end = end;
+            this.windowStart = start;
+            this.window = map(start, Math.min(windowSize, end - start));
+        }
+
+        @Override
+        protected byte[] computeNext() {
+            while(true) {
+                int limit = window.limit();
+                if (pos == limit && windowStart + limit == end) {
+                    return endOfData();
+                }
+                for (int i = pos; i < limit; ++i) {
+                    if (window.get(i) == '\n') {
+                        byte[] line = slice(pos, i);
+                        pos = i + 1;
+                        return line;
+                    }
+                }
+                if (windowStart + limit == end) {
+                    //the last line has no line ending
+                    byte[] line = slice(pos, limit);
+                    pos = limit;
+                    return line;
+                }
+                //the line runs past the window, so map the next window starting from it, growing the window if
+                //the line is longer than it.
+                long remaining = end - windowStart - pos;
+                long size = Math.min(Math.max(windowSize, 2L * (limit - pos)), Integer.MAX_VALUE);
+                if(size <= limit - pos) {
+                    throw new RuntimeException("The line at " + (windowStart + pos) + " in " + file
+                                              + " is longer than 2GB, the most which can be mapped at once.");
+                }
+                windowStart += pos;
+                window = map(windowStart, Math.min(size, remaining));
+                pos = 0;
+            }
+        }
+
+        private byte[] slice(int from, int to) {
+            if(to > from && window.get(to - 1) == '\r') {
+                to--;
+            }
+            byte[] ret = new byte[to - from];
+            window.position(from);
+            window.get(ret);
+            return ret;
+        }
+    }
+
+    private File file;
+    private int windowSize;
+
+    public ChunkedFileReader(File file) {
+        this(file, DEFAULT_WINDOW_SIZE);
+    }
+
+    public ChunkedFileReader(File file, int windowSize) {
+        this.file = file;
+        this.windowSize = windowSize;
+    }
+
+    /**
+     * The lines of the whole file.
+     */
+    public Iterable<byte[]> lines() {
+        return new Chunk(0, file.length());
+    }
+
+    /**
+     * Split the file into chunks of about chunkSize bytes, each ending just after a line ending or at the end of
+     * the file.
+     */
+    public List<Chunk> split(long chunkSize) throws IOException {
+        List<Chunk> ret = new ArrayList<>();
+        long length = file.length();
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            byte[] buffer = new byte[8192];
+            long start = 0;
+            while (start < length) {
+                long end = Math.min(start + chunkSize, length);
+                //move the end up to just past the next line ending
+                search:
+                while (end < length) {
+                    raf.seek(end - 1);
+                    int read = raf.read(buffer);
+                    for (int i = 0; i < read; ++i) {
+                        if (buffer[i] == '\n') {
+                            end += i;
+                            break search;
+                        }
+                    }
+                    end += read;
+                }
+                end = Math.min(end, length);
+                ret.add(new Chunk(start, end));
+                start = end;
+            }
+        }
+        finally {
+            raf.close();
+        }
+        return ret;
+    }
+
+    private MappedByteBuffer map(long position, long size) {
+        try {
+            RandomAccessFile raf = new RandomAccessFile(file, "r");
+            try {
+                //the mapping stays valid once the file is closed
+                return raf.getChannel().map(FileChannel.MapMode.READ_ONLY, position, size);
+            }
+            finally {
+                raf.close();
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to map " + file + " at " + position + ": " + e.getMessage(), e);
+        }
+    }
+}
@@ -3,22 +3,32 @@ package com.caseystella.analytics.cli;
 import com.caseystella.analytics.DataPoint;
 import com.caseystella.analytics.extractor.DataPointExtractor;
 import com.caseystella.analytics.extractor.DataPointExtractorConfig;
+import com.caseystella.analytics.extractor.DataPointReader;
 import com.caseystella.analytics.outlier.Outlier;
 import com.caseystella.analytics.outlier.Severity;
 import com.caseystella.analytics.outlier.batch.OutlierAlgorithm;
 import com.caseystella.analytics.outlier.batch.rpca.RPCAOutlierAlgorithm;
 import com.caseystella.analytics.outlier.streaming.mad.SketchyMovingMAD;
 import com.caseystella.analytics.timeseries.inmemory.InMemoryTimeSeriesDB;
-import org.apache.hadoop.hbase.util.Bytes;
+import com.google.common.base.Function;
+import com.google.common.collect.Iterables;
 
+import javax.annotation.Nullable;
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 public class DryRun {
     public static final String METRIC = "metric";
+    private static final byte[] EMPTY_KEY = new byte[]{};
     DataPointExtractorConfig extractorConfig ;
     com.caseystella.analytics.outlier.streaming.OutlierConfig streamingOutlierConfig;
     Map<String, String> outputFilter;
+    int parallelism = 1;
     public DryRun( DataPointExtractorConfig extractorConfig
                  , com.caseystella.analytics.outlier.streaming.OutlierConfig streamingOutlierConfig
                  , Properties outputFilter
@@ -31,12 +41,21 @@ public class DryRun {
             this.outputFilter.put(kv.getKey().toString(), kv.getValue().toString());
         }
     }
+
+    /**
+     * Replay across this many threads, partitioning the points by grouping key.
+     */
+    public DryRun withParallelism(int parallelism) {
+        this.parallelism = parallelism;
+        return this;
+    }
+
     Set<String> matches = new HashSet<String>();
     public boolean filterMatch(DataPoint dp) {
         boolean ret = true;
         for(Map.Entry<String, String> kv : outputFilter.entrySet()) {
             String target = dp.getMetadata().get(kv.getKey());
-            boolean isMatch = target != null && target.toLowerCase().startsWith(kv.getValue().toLowerCase());
+            boolean isMatch = isMatch(target, kv.getValue());
             if(isMatch) {
                 if(!matches.contains(kv.getValue())) {
                     System.out.println("Matching " + target.toLowerCase());
@@ -48,8 +67,25 @@ public class DryRun {
         }
         return ret;
     }
+
+    static boolean filterMatch(Map<String, String> filter, DataPoint dp) {
+        for(Map.Entry<String, String> kv : filter.entrySet()) {
+            if(!isMatch(dp.getMetadata().get(kv.getKey()), kv.getValue())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isMatch(String target, String prefix) {
+        return target != null && target.toLowerCase().startsWith(prefix.toLowerCase());
+    }
     public void run(File inputFile, File tsOutF, File sketchyOutF, File realOutF) throws IOException
     {
+        if(parallelism > 1) {
+            runParallel(inputFile, tsOutF, sketchyOutF, realOutF);
+            return;
+        }
         System.out.println("Filter: " + this.outputFilter);
         PrintWriter tsOut = new PrintWriter(tsOutF)
                   , sketchyOut = new PrintWriter(sketchyOutF)
@@ -60,22 +96,25 @@ public class DryRun {
         OutlierAlgorithm detector =  streamingOutlierConfig.getBatchOutlierAlgorithm();
         detector.configure(streamingOutlierConfig);
         DataPointExtractor extractor = new DataPointExtractor().withConfig(extractorConfig);
-        BufferedReader br = new BufferedReader(new FileReader(inputFile));
         if(!outputFilter.isEmpty()) {
             System.out.println("Filtering data...");
         }
         else {
             System.out.println("Not Filtering data...");
         }
+        Iterable<Iterable<DataPoint>> records = DataPointReader.isDataPointFile(inputFile)
+                                              ? records(inputFile)
+                                              : records(new ChunkedFileReader(inputFile).lines(), extractor);
         int lineNo = 1;
-        for(String line = null;(line = br.readLine()) != null;lineNo++) {
+        for(Iterable<DataPoint> record : records) {
             if(lineNo % 100 == 0) {
                 System.out.print(".");
             }
             if(lineNo % 1000 == 0) {
                 System.out.println(" -- Completed " + lineNo);
             }
-            for(DataPoint dp : extractor.extract(new byte[]{}, Bytes.toBytes(line), false)) {
+            lineNo++;
+            for(DataPoint dp : record) {
                 String pt = dp.getTimestamp() + "," + dp.getValue();
                 boolean print = true;
                 if(!outputFilter.isEmpty()) {
@@ -102,4 +141,329 @@ public class DryRun {
         sketchyOut.close();
         realOut.close();
     }
+
+    private static final int SHARD_BATCH_SIZE = 256;
+    private static final int SHARD_QUEUE_SIZE = 64;
+    private static final long CHUNK_SIZE = 16*1024*1024;
+    private static final int CHUNK_QUEUE_SIZE = 16;
+
+    private static class Replayed {
+        long seq;
+        DataPoint dp;
+        boolean print;
+
+        Replayed(long seq, DataPoint dp, boolean print) {
+            this.seq = seq;
+            this.dp = dp;
+            this.print = print;
+        }
+    }
+
+    private static class Prospect {
+        long seq;
+        String pt;
+        boolean confirmed;
+
+        Prospect(long seq, String pt, boolean confirmed) {
+            this.seq = seq;
+            this.pt = pt;
+            this.confirmed = confirmed;
+        }
+    }
+
+    /**
+     * The points extracted from a run of lines.  A batch without points marks the end of a chunk.
+     */
+    private static class Extracted {
+        int numLines;
+        List<DataPoint> points;
+
+        Extracted(int numLines, List<DataPoint> points) {
+            this.numLines = numLines;
+            this.points = points;
+        }
+    }
+
+    /**
+     * The points of each line, extracted as they are iterated over.
+     */
+    private static Iterable<Iterable<DataPoint>> records(Iterable<byte[]> lines, final DataPointExtractor extractor) {
+        return Iterables.transform(lines, new Function<byte[], Iterable<DataPoint>>() {
+            @Nullable
+            @Override
+            public Iterable<DataPoint> apply(@Nullable byte[] line) {
+                return extractor.extract(EMPTY_KEY, line, false);
+            }
+        });
+    }
+
+    /**
+     * The points of a file already extracted by a DataPointWriter, each taking the place of a line.
+     */
+    private static Iterable<Iterable<DataPoint>> records(File preExtracted) {
+        return Iterables.transform(DataPointReader.read(preExtracted), new Function<DataPoint, Iterable<DataPoint>>() {
+            @Nullable
+            @Override
+            public Iterable<DataPoint> apply(@Nullable DataPoint dp) {
+                return Collections.singletonList(dp);
+            }
+        });
+    }
+
+    /**
+     * Extracts the points from a chunk of the input, or reads them from a file already extracted, handing them
+     * back in batches.  The queue is bounded, so the chunks being extracted ahead of the one being replayed only
+     * get so far ahead.
+     */
+    private class ChunkExtraction implements Runnable {
+        ChunkedFileReader.Chunk chunk;
+        ThreadLocal<DataPointExtractor> extractor;
+        File preExtracted;
+        BlockingQueue<Extracted> queue = new ArrayBlockingQueue<>(CHUNK_QUEUE_SIZE);
+        volatile Throwable failure = null;
+
+        ChunkExtraction(ChunkedFileReader.Chunk chunk, ThreadLocal<DataPointExtractor> extractor) {
+            this.chunk = chunk;
+            this.extractor = extractor;
+        }
+
+        ChunkExtraction(File preExtracted) {
+            this.preExtracted = preExtracted;
+        }
+
+        @Override
+        public void run() {
+            try {
+                try {
+                    Iterable<Iterable<DataPoint>> records = chunk == null
+                                                          ? records(preExtracted)
+                                                          : records(chunk, extractor.get());
+                    int numLines = 0;
+                    List<DataPoint> points = new ArrayList<>(SHARD_BATCH_SIZE);
+                    for (Iterable<DataPoint> record : records) {
+                        for (DataPoint dp : record) {
+                            points.add(dp);
+                        }
+                        if (++numLines == SHARD_BATCH_SIZE) {
+                            queue.put(new Extracted(numLines, points));
+                            numLines = 0;
+                            points = new ArrayList<>(SHARD_BATCH_SIZE);
+                        }
+                    }
+                    if (numLines > 0) {
+                        queue.put(new Extracted(numLines, points));
+                    }
+                } catch (InterruptedException e) {
+                    throw e;
+                } catch (Throwable t) {
+                    failure = t;
+                }
+                queue.put(new Extracted(0, null));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Each extraction thread gets its own copy of the extractor, as the converters may keep state.
+     */
+    private DataPointExtractor newExtractor() {
+        return new DataPointExtractor().withConfig(copy(extractorConfig));
+    }
+
+    /**
+     * A deep copy made by serializing, as Storm does in handing each bolt its own copy of its configs.
+     */
+    static <T extends Serializable> T copy(T o) {
+        try {
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            ObjectOutputStream oos = new ObjectOutputStream(bos);
+            oos.writeObject(o);
+            oos.close();
+            ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(bos.toByteArray()));
+            //deserializing gives back an object of the same class as o
+            @SuppressWarnings("unchecked")
+            T ret = (T) ois.readObject();
+            return ret;
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to copy " + o.getClass().getName() + ": " + e.getMessage(), e);
+        } catch (ClassNotFoundException e) {
+            throw new RuntimeException("Unable to copy " + o.getClass().getName() + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Replays the points for its share of the grouping keys, in the order they were read, through its own
+     * outlier algorithms, noting the prospective and confirmed outliers to be printed.
+     */
+    private class Shard implements Runnable {
+        BlockingQueue<List<Replayed>> queue = new ArrayBlockingQueue<>(SHARD_QUEUE_SIZE);
+        List<Replayed> pending = new ArrayList<>(SHARD_BATCH_SIZE);
+        List<Prospect> prospects = new ArrayList<>();
+        volatile Throwable failure = null;
+
+        void add(Replayed r) throws InterruptedException {
+            pending.add(r);
+            if(pending.size() == SHARD_BATCH_SIZE) {
+                send();
+            }
+        }
+
+        void send() throws InterruptedException {
+            queue.put(pending);
+            pending = new ArrayList<>(SHARD_BATCH_SIZE);
+        }
+
+        @Override
+        public void run() {
+            com.caseystella.analytics.outlier.streaming.OutlierAlgorithm madAlgo = null;
+            OutlierAlgorithm detector = null;
+            try {
+                madAlgo = streamingOutlierConfig.getSketchyOutlierAlgorithm().getClass().newInstance();
+                madAlgo.configure(streamingOutlierConfig);
+                detector = streamingOutlierConfig.getBatchOutlierAlgorithm().getClass().newInstance();
+                detector.configure(streamingOutlierConfig);
+            }
+            catch(Throwable t) {
+                failure = t;
+            }
+            try {
+                for(List<Replayed> batch = queue.take();!batch.isEmpty();batch = queue.take()) {
+                    if(failure != null) {
+                        //keep draining, so the reader is not blocked
+                        continue;
+                    }
+                    try {
+                        for (Replayed r : batch) {
+                            Outlier outlier = madAlgo.analyze(r.dp);
+                            if (outlier.getSeverity() == Severity.SEVERE_OUTLIER) {
+                                Outlier realOutlier = detector.analyze(outlier, outlier.getSample(), r.dp);
+                                if (r.print) {
+                                    prospects.add(new Prospect(r.seq
+                                                              , r.dp.getTimestamp() + "," + r.dp.getValue()
+                                                              , realOutlier.getSeverity() == Severity.SEVERE_OUTLIER
+                                                              )
+                                                 );
+                                }
+                            }
+                        }
+                    }
+                    catch(Throwable t) {
+                        failure = t;
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Replay with the points partitioned by grouping key across parallelism threads, each with its own outlier
+     * algorithms.  The input is memory mapped and split into chunks, which are extracted on another parallelism
+     * threads and replayed in order.  A key's points all go to the same thread in the order they were read, and
+     * the outliers are written in the order they were read, so the output matches a single threaded run as long
+     * as the outlier algorithm keeps nothing across keys (e.g. with a bounded state store or with outlier
+     * smoothing on, which would then apply within each thread).
+     */
+    private void runParallel(File inputFile, File tsOutF, File sketchyOutF, File realOutF) throws IOException {
+        System.out.println("Filter: " + this.outputFilter);
+        System.out.println("Replaying with " + parallelism + " threads...");
+        PrintWriter tsOut = new PrintWriter(tsOutF);
+        List<String> groupingKeys = streamingOutlierConfig.getGroupingKeys();
+        Shard[] shards = new Shard[parallelism];
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+        for(int i = 0;i < parallelism;++i) {
+            shards[i] = new Shard();
+            executor.execute(shards[i]);
+        }
+        ThreadLocal<DataPointExtractor> extractor = new ThreadLocal<DataPointExtractor>() {
+            @Override
+            protected DataPointExtractor initialValue() {
+                return newExtractor();
+            }
+        };
+        ExecutorService extractionExecutor = Executors.newFixedThreadPool(parallelism);
+        List<ChunkExtraction> extractions = new ArrayList<>();
+        if(DataPointReader.isDataPointFile(inputFile)) {
+            extractions.add(new ChunkExtraction(inputFile));
+        }
+        else {
+            for (ChunkedFileReader.Chunk chunk : new ChunkedFileReader(inputFile).split(CHUNK_SIZE)) {
+                extractions.add(new ChunkExtraction(chunk, extractor));
+            }
+        }
+        for(ChunkExtraction extraction : extractions) {
+            extractionExecutor.execute(extraction);
+        }
+        long seq = 0;
+        try {
+            long lineNo = 0;
+            for(ChunkExtraction extraction : extractions) {
+                for (Extracted extracted = extraction.queue.take(); extracted.points != null; extracted = extraction.queue.take()) {
+                    for(long l = lineNo + 1;l <= lineNo + extracted.numLines;++l) {
+                        if (l % 100 == 0) {
+                            System.out.print(".");
+                        }
+                        if (l % 1000 == 0) {
+                            System.out.println(" -- Completed " + l);
+                        }
+                    }
+                    lineNo += extracted.numLines;
+                    for (DataPoint dp : extracted.points) {
+                        boolean print = true;
+                        if (!outputFilter.isEmpty()) {
+                            print = filterMatch(dp);
+                        }
+                        if (print) {
+                            tsOut.println(dp.getTimestamp() + "," + dp.getValue());
+                        }
+                        String key = Outlier.groupingKey(dp, groupingKeys);
+                        shards[(key.hashCode() & Integer.MAX_VALUE) % parallelism].add(new Replayed(seq++, dp, print));
+                    }
+                }
+                if(extraction.failure != null) {
+                    throw new RuntimeException("Unable to extract: " + extraction.failure.getMessage(), extraction.failure);
+                }
+            }
+            for (Shard shard : shards) {
+                shard.send();
+                //an empty batch tells the shard that we are done
+                shard.send();
+            }
+            executor.shutdown();
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while replaying", e);
+        } finally {
+            tsOut.close();
+            extractionExecutor.shutdownNow();
+            executor.shutdownNow();
+        }
+        List<Prospect> prospects = new ArrayList<>();
+        for(Shard shard : shards) {
+            if(shard.failure != null) {
+                throw new RuntimeException("Unable to replay: " + shard.failure.getMessage(), shard.failure);
+            }
+            prospects.addAll(shard.prospects);
+        }
+        Collections.sort(prospects, new Comparator<Prospect>() {
+            @Override
+            public int compare(Prospect o1, Prospect o2) {
+                return Long.compare(o1.seq, o2.seq);
+            }
+        });
+        PrintWriter sketchyOut = new PrintWriter(sketchyOutF)
+                  , realOut = new PrintWriter(realOutF);
+        for(Prospect prospect : prospects) {
+            sketchyOut.println(prospect.pt);
+            if(prospect.confirmed) {
+                realOut.println(prospect.pt);
+            }
+        }
+        sketchyOut.close();
+        realOut.close();
+    }
 }
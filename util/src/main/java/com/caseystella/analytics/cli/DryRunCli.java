@@ -2,14 +2,19 @@ package com.caseystella.analytics.cli;
 
 import com.caseystella.analytics.extractor.DataPointExtractorConfig;
 import com.caseystella.analytics.util.JSONUtil;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.google.common.base.Charsets;
 import com.google.common.base.Function;
 import com.google.common.base.Joiner;
+import com.google.common.io.Files;
 import org.apache.commons.cli.*;
 
 import javax.annotation.Nullable;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
-import java.util.Properties;
+import java.io.PrintWriter;
+import java.util.*;
 
 public class DryRunCli {
     private static abstract class OptionHandler implements Function<String, Option> {}
@@ -64,6 +69,36 @@ public class DryRunCli {
                 return o;
             }
         })
+        ,PARALLELISM("p", new OptionHandler() {
+            @Nullable
+            @Override
+            public Option apply(@Nullable String s) {
+                Option o = new Option(s, "parallelism", true, "Number of threads to replay with, partitioning the points by grouping key (default 1)");
+                o.setArgName("NUM");
+                o.setRequired(false);
+                return o;
+            }
+        })
+        ,SWEEP("w", new OptionHandler() {
+            @Nullable
+            @Override
+            public Option apply(@Nullable String s) {
+                Option o = new Option(s, "sweep", true, "JSON map of sketchy outlier config keys to the values to try.  Reports on every combination of them rather than running once");
+                o.setArgName("JSON_FILE");
+                o.setRequired(false);
+                return o;
+            }
+        })
+        ,LABELS("l", new OptionHandler() {
+            @Nullable
+            @Override
+            public Option apply(@Nullable String s) {
+                Option o = new Option(s, "labels", true, "Timestamps of the known outliers, one per line, to report the precision and recall of a sweep against");
+                o.setArgName("FILE");
+                o.setRequired(false);
+                return o;
+            }
+        })
         ,OUTPUT("u", new OptionHandler() {
             @Nullable
             @Override
@@ -134,12 +169,55 @@ public class DryRunCli {
                                         );
 
         File inputFile = new File(DryRunOptions.INPUT.get(cli));
+        if(DryRunOptions.SWEEP.has(cli)) {
+            sweep(cli, extractorConfig, streamingOutlierConfig, inputFile);
+            return;
+        }
         File outputTS = new File(DryRunOptions.OUTPUT.get(cli)+ ".ts");
         File sketchyTS = new File(DryRunOptions.OUTPUT.get(cli)+ ".sketchy");
         File realTS = new File(DryRunOptions.OUTPUT.get(cli)+ ".real");
         Properties filter = DryRunOptions.FILTER.getProperties(cli);
         DryRun dryRun = new DryRun(extractorConfig, streamingOutlierConfig, filter);
+        if(DryRunOptions.PARALLELISM.has(cli)) {
+            dryRun.withParallelism(Integer.parseInt(DryRunOptions.PARALLELISM.get(cli)));
+        }
         System.out.println("Running with filter: \n" + filter);
         dryRun.run(inputFile, outputTS, sketchyTS, realTS);
     }
+
+    private static void sweep( CommandLine cli
+                             , DataPointExtractorConfig extractorConfig
+                             , com.caseystella.analytics.outlier.streaming.OutlierConfig streamingOutlierConfig
+                             , File inputFile
+                             ) throws IOException
+    {
+        Map<String, List<Object>> grid = JSONUtil.INSTANCE.load( new FileInputStream(new File(DryRunOptions.SWEEP.get(cli)))
+                                                               , new TypeReference<Map<String, List<Object>>>() {}
+                                                               );
+        Map<String, String> filter = new HashMap<>();
+        for(Map.Entry<Object, Object> kv : DryRunOptions.FILTER.getProperties(cli).entrySet()) {
+            filter.put(kv.getKey().toString(), kv.getValue().toString());
+        }
+        ParameterSweep sweep = new ParameterSweep(extractorConfig, streamingOutlierConfig, grid, filter);
+        if(DryRunOptions.PARALLELISM.has(cli)) {
+            sweep.withParallelism(Integer.parseInt(DryRunOptions.PARALLELISM.get(cli)));
+        }
+        if(DryRunOptions.LABELS.has(cli)) {
+            List<Long> labels = new ArrayList<>();
+            for(String line : Files.readLines(new File(DryRunOptions.LABELS.get(cli)), Charsets.UTF_8)) {
+                if(!line.trim().isEmpty()) {
+                    labels.add(Long.parseLong(line.trim()));
+                }
+            }
+            sweep.withLabels(labels, ParameterSweep.DEFAULT_TIME_BOUNDS);
+        }
+        System.out.println("Loading " + inputFile + "...");
+        sweep.load(inputFile);
+        System.out.println("Sweeping " + ParameterSweep.variants(grid).size() + " configs...");
+        List<ParameterSweep.Result> results = sweep.run();
+        PrintWriter out = new PrintWriter(new File(DryRunOptions.OUTPUT.get(cli) + ".sweep"));
+        ParameterSweep.write(results, out);
+        out.close();
+        ParameterSweep.write(results, new PrintWriter(System.out));
+    }
 }
@@ -0,0 +1,354 @@
+package com.caseystella.analytics.cli;
+
+import com.caseystella.analytics.DataPoint;
+import com.caseystella.analytics.extractor.DataPointExtractor;
+import com.caseystella.analytics.extractor.DataPointExtractorConfig;
+import com.caseystella.analytics.extractor.DataPointReader;
+import com.caseystella.analytics.outlier.Outlier;
+import com.caseystella.analytics.outlier.Severity;
+import com.caseystella.analytics.outlier.streaming.OutlierAlgorithm;
+import com.caseystella.analytics.outlier.streaming.OutlierConfig;
+import com.google.common.base.Function;
+import com.google.common.collect.Iterables;
+
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Callable;
+
+/**
+ * Tunes the streaming outlier algorithm by replaying the input through every combination of a grid of values for
+ * its config (e.g. zscoreCutoffs, minAmountToPredict, reservoirSize and decay).  The input is extracted once into
+ * columns held in memory, rather than once per combination as separate dry runs would, and the combinations are
+ * replayed in parallel against it.  Each combination reports its number of severe outliers and, given the
+ * timestamps of the known outliers, its precision and recall.  As in the accuracy benchmark, a known outlier is
+ * found if an outlier was flagged within a few of the mean time between points of it, whatever its grouping key.
+ */
+public class ParameterSweep {
+    public static final int DEFAULT_TIME_BOUNDS = 3;
+    private static final byte[] EMPTY_KEY = new byte[]{};
+
+    public static class Result {
+        private Map<String, Object> params;
+        private long numPoints;
+        private long numOutliers;
+        private long numFound = -1;
+        private long numMissed = -1;
+        private long numFalseOutliers = -1;
+
+        public Map<String, Object> getParams() {
+            return params;
+        }
+
+        public long getNumPoints() {
+            return numPoints;
+        }
+
+        public long getNumOutliers() {
+            return numOutliers;
+        }
+
+        public boolean hasLabels() {
+            return numFound >= 0;
+        }
+
+        /**
+         * The known outliers which were flagged.
+         */
+        public long getNumFound() {
+            return numFound;
+        }
+
+        /**
+         * The known outliers which were not flagged.
+         */
+        public long getNumMissed() {
+            return numMissed;
+        }
+
+        /**
+         * The flagged outliers which are not near a known outlier.
+         */
+        public long getNumFalseOutliers() {
+            return numFalseOutliers;
+        }
+
+        public double getPrecision() {
+            return numFound + numFalseOutliers == 0?Double.NaN:(1.0*numFound)/(numFound + numFalseOutliers);
+        }
+
+        public double getRecall() {
+            return numFound + numMissed == 0?Double.NaN:(1.0*numFound)/(numFound + numMissed);
+        }
+    }
+
+    /**
+     * The extracted points, kept as columns with the source and metadata of each point interned.
+     */
+    static class Columns {
+        long[] timestamps = new long[1024];
+        double[] values = new double[1024];
+        int[] tags = new int[1024];
+        BitSet counted = new BitSet();
+        int size = 0;
+        List<DataPoint> tagSets = new ArrayList<>();
+        Map<List<Object>, Integer> tagIds = new HashMap<>();
+
+        void add(DataPoint dp, boolean isCounted) {
+            if(size == timestamps.length) {
+                timestamps = Arrays.copyOf(timestamps, 2*size);
+                values = Arrays.copyOf(values, 2*size);
+                tags = Arrays.copyOf(tags, 2*size);
+            }
+            List<Object> tagSet = Arrays.<Object>asList(dp.getSource(), dp.getMetadata());
+            Integer id = tagIds.get(tagSet);
+            if(id == null) {
+                id = tagSets.size();
+                tagIds.put(tagSet, id);
+                tagSets.add(new DataPoint(0, 0, dp.getMetadata(), dp.getSource()));
+            }
+            timestamps[size] = dp.getTimestamp();
+            values[size] = dp.getValue();
+            tags[size] = id;
+            counted.set(size, isCounted);
+            size++;
+        }
+
+        DataPoint get(int i) {
+            DataPoint tagSet = tagSets.get(tags[i]);
+            //the outlier algorithms add to the metadata, so each point gets its own
+            Map<String, String> metadata = tagSet.getMetadata() == null
+                                         ? null
+                                         : new HashMap<>(tagSet.getMetadata());
+            return new DataPoint(timestamps[i], values[i], metadata, tagSet.getSource());
+        }
+    }
+
+    private DataPointExtractorConfig extractorConfig;
+    private OutlierConfig outlierConfig;
+    private Map<String, List<Object>> grid;
+    private Map<String, String> filter;
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+    private long[] labels = null;
+    private int timeBounds = DEFAULT_TIME_BOUNDS;
+    private Columns columns = null;
+    private long meanTimeBetweenPoints = 0;
+
+    public ParameterSweep( DataPointExtractorConfig extractorConfig
+                         , OutlierConfig outlierConfig
+                         , Map<String, List<Object>> grid
+                         , Map<String, String> filter
+                         )
+    {
+        this.extractorConfig = extractorConfig;
+        this.outlierConfig = outlierConfig;
+        this.grid = grid;
+        this.filter = filter;
+    }
+
+    public ParameterSweep withParallelism(int parallelism) {
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    /**
+     * The timestamps of the known outliers, along with how many of the mean time between points an outlier may
+     * be flagged from one to have found it.
+     */
+    public ParameterSweep withLabels(Collection<Long> labels, int timeBounds) {
+        this.labels = new long[labels.size()];
+        int i = 0;
+        for(Long label : labels) {
+            this.labels[i++] = label;
+        }
+        Arrays.sort(this.labels);
+        this.timeBounds = timeBounds;
+        return this;
+    }
+
+    /**
+     * Extract the input, or read it if it was already extracted by a DataPointWriter, keeping the points in memory
+     * to replay.  Only the points matching the filter are
+     * counted, but all of them are replayed.
+     */
+    public ParameterSweep load(File inputFile) throws IOException {
+        DataPointExtractor extractor = new DataPointExtractor().withConfig(extractorConfig);
+        Columns columns = new Columns();
+        Map<String, Long> lastTimestamp = new HashMap<>();
+        long totalTimeBetweenPoints = 0;
+        long numTimesBetweenPoints = 0;
+        Iterable<DataPoint> points = DataPointReader.isDataPointFile(inputFile)
+                                   ? DataPointReader.read(inputFile)
+                                   : extract(new ChunkedFileReader(inputFile).lines(), extractor);
+        for(DataPoint dp : points) {
+            boolean isCounted = DryRun.filterMatch(filter, dp);
+            columns.add(dp, isCounted);
+            if(isCounted) {
+                String key = Outlier.groupingKey(dp, outlierConfig.getGroupingKeys());
+                Long last = lastTimestamp.put(key, dp.getTimestamp());
+                if (last != null) {
+                    totalTimeBetweenPoints += dp.getTimestamp() - last;
+                    numTimesBetweenPoints++;
+                }
+            }
+        }
+        this.columns = columns;
+        this.meanTimeBetweenPoints = numTimesBetweenPoints == 0?0:totalTimeBetweenPoints/numTimesBetweenPoints;
+        return this;
+    }
+
+    private static Iterable<DataPoint> extract(Iterable<byte[]> lines, final DataPointExtractor extractor) {
+        return Iterables.concat(Iterables.transform(lines, new Function<byte[], Iterable<DataPoint>>() {
+            @Nullable
+            @Override
+            public Iterable<DataPoint> apply(@Nullable byte[] line) {
+                return extractor.extract(EMPTY_KEY, line, false);
+            }
+        }));
+    }
+
+    /**
+     * Every combination of the values in the grid, in order with the last key varying fastest.
+     */
+    static List<Map<String, Object>> variants(Map<String, List<Object>> grid) {
+        List<Map<String, Object>> ret = new ArrayList<>();
+        ret.add(new LinkedHashMap<String, Object>());
+        for(Map.Entry<String, List<Object>> kv : grid.entrySet()) {
+            List<Map<String, Object>> next = new ArrayList<>();
+            for(Map<String, Object> variant : ret) {
+                for(Object value : kv.getValue()) {
+                    Map<String, Object> v = new LinkedHashMap<>(variant);
+                    v.put(kv.getKey(), value);
+                    next.add(v);
+                }
+            }
+            ret = next;
+        }
+        return ret;
+    }
+
+    /**
+     * Replay the loaded points through each combination in the grid.
+     */
+    public List<Result> run() {
+        if(columns == null) {
+            throw new IllegalStateException("The input must be loaded before sweeping.");
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+        try {
+            List<Future<Result>> futures = new ArrayList<>();
+            for (final Map<String, Object> variant : variants(grid)) {
+                futures.add(executor.submit(new Callable<Result>() {
+                    @Override
+                    public Result call() throws Exception {
+                        return evaluate(variant);
+                    }
+                }));
+            }
+            List<Result> ret = new ArrayList<>();
+            for (Future<Result> future : futures) {
+                ret.add(future.get());
+            }
+            return ret;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while sweeping", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Unable to sweep: " + e.getCause().getMessage(), e.getCause());
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private Result evaluate(Map<String, Object> variant) throws IllegalAccessException, InstantiationException {
+        OutlierConfig config = DryRun.copy(outlierConfig);
+        config.getConfig().putAll(variant);
+        OutlierAlgorithm algorithm = outlierConfig.getSketchyOutlierAlgorithm().getClass().newInstance();
+        algorithm.configure(config);
+        Result result = new Result();
+        result.params = variant;
+        long[] outliers = new long[16];
+        int numOutliers = 0;
+        for(int i = 0;i < columns.size;++i) {
+            Outlier outlier = algorithm.analyze(columns.get(i));
+            if(columns.counted.get(i)) {
+                result.numPoints++;
+                if(outlier.getSeverity() == Severity.SEVERE_OUTLIER) {
+                    if(numOutliers == outliers.length) {
+                        outliers = Arrays.copyOf(outliers, 2*numOutliers);
+                    }
+                    outliers[numOutliers++] = columns.timestamps[i];
+                }
+            }
+        }
+        result.numOutliers = numOutliers;
+        if(labels != null) {
+            outliers = Arrays.copyOf(outliers, numOutliers);
+            Arrays.sort(outliers);
+            score(result, outliers, labels, timeBounds*meanTimeBetweenPoints);
+        }
+        return result;
+    }
+
+    /**
+     * Count the labels found and missed and the false outliers, where an outlier within bound of a label finds it.
+     * Both the outliers and the labels must be sorted.
+     */
+    static void score(Result result, long[] outliers, long[] labels, long bound) {
+        result.numFound = 0;
+        result.numMissed = 0;
+        result.numFalseOutliers = 0;
+        for(long label : labels) {
+            if(isNear(outliers, label, bound)) {
+                result.numFound++;
+            }
+            else {
+                result.numMissed++;
+            }
+        }
+        for(long outlier : outliers) {
+            if(!isNear(labels, outlier, bound)) {
+                result.numFalseOutliers++;
+            }
+        }
+    }
+
+    static boolean isNear(long[] sorted, long ts, long bound) {
+        int i = Arrays.binarySearch(sorted, ts);
+        if(i >= 0) {
+            return true;
+        }
+        int after = -(i + 1);
+        return (after < sorted.length && sorted[after] - ts <= bound)
+            || (after > 0 && ts - sorted[after - 1] <= bound);
+    }
+
+    /**
+     * Write the results out as tab separated columns, one combination per row.
+     */
+    public static void write(List<Result> results, PrintWriter out) {
+        out.println("params\tpoints\toutliers\tfound\tmissed\tfalse_outliers\tprecision\trecall");
+        for(Result result : results) {
+            out.print(result.getParams() + "\t" + result.getNumPoints() + "\t" + result.getNumOutliers());
+            if(result.hasLabels()) {
+                out.println("\t" + result.getNumFound()
+                          + "\t" + result.getNumMissed()
+                          + "\t" + result.getNumFalseOutliers()
+                          + "\t" + result.getPrecision()
+                          + "\t" + result.getRecall()
+                           );
+            }
+            else {
+                out.println("\t\t\t\t\t");
+            }
+        }
+        out.flush();
+    }
+}
@@ -0,0 +1,73 @@
+package com.caseystella.analytics.cli;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Joiner;
+import com.google.common.base.Strings;
+import com.google.common.io.Files;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class ChunkedFileReaderTest {
+
+    private static File write(String contents) throws IOException {
+        File f = File.createTempFile("lines", ".csv");
+        f.deleteOnExit();
+        Files.write(contents, f, Charsets.UTF_8);
+        return f;
+    }
+
+    private static List<String> toStrings(Iterable<byte[]> lines) {
+        List<String> ret = new ArrayList<>();
+        for(byte[] line : lines) {
+            ret.add(new String(line, Charsets.UTF_8));
+        }
+        return ret;
+    }
+
+    private static void assertSplits(String contents, List<String> expected) throws IOException {
+        File f = write(contents);
+        //windows smaller than the longest line force the window to be remapped and grown
+        for(int windowSize : new int[] { 1, 3, 16, ChunkedFileReader.DEFAULT_WINDOW_SIZE }) {
+            ChunkedFileReader reader = new ChunkedFileReader(f, windowSize);
+            Assert.assertEquals(expected, toStrings(reader.lines()));
+            for(int chunkSize = 1;chunkSize <= contents.length() + 1;++chunkSize) {
+                List<String> actual = new ArrayList<>();
+                long end = 0;
+                for(ChunkedFileReader.Chunk chunk : reader.split(chunkSize)) {
+                    Assert.assertEquals(end, chunk.getStart());
+                    Assert.assertTrue(chunk.getEnd() > chunk.getStart());
+                    end = chunk.getEnd();
+                    actual.addAll(toStrings(chunk));
+                }
+                Assert.assertEquals(f.length(), end);
+                Assert.assertEquals("window " + windowSize + ", chunk " + chunkSize, expected, actual);
+            }
+        }
+    }
+
+    @Test
+    public void testSplitMatchesLines() throws IOException {
+        String longLine = Strings.repeat("0123456789", 10);
+        List<String> lines = Arrays.asList("1000,h1,1.5", "", "1001,h2,2.5", longLine, "1002,h1,3.5", "", "x");
+        assertSplits(Joiner.on("\n").join(lines) + "\n", lines);
+        //without the trailing line ending
+        assertSplits(Joiner.on("\n").join(lines), lines);
+        //windows line endings, mixed with unix ones
+        assertSplits(Joiner.on("\r\n").join(lines) + "\r\n", lines);
+        assertSplits("a\r\nb\nc\r\n" + longLine + "\r\nd", Arrays.asList("a", "b", "c", longLine, "d"));
+    }
+
+    @Test
+    public void testEmptyFile() throws IOException {
+        File f = write("");
+        ChunkedFileReader reader = new ChunkedFileReader(f);
+        Assert.assertTrue(toStrings(reader.lines()).isEmpty());
+        Assert.assertTrue(reader.split(10).isEmpty());
+    }
+}
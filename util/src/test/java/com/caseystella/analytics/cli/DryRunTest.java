@@ -0,0 +1,75 @@
+package com.caseystella.analytics.cli;
+
+import com.caseystella.analytics.extractor.DataPointExtractorConfig;
+import com.caseystella.analytics.outlier.streaming.OutlierConfig;
+import com.caseystella.analytics.util.JSONUtil;
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Properties;
+import java.util.Random;
+
+public class DryRunTest {
+    public static final String EXTRACTOR_CONFIG = "{ \"valueConverter\" : \"CSVConverter\""
+                                                + ", \"valueConverterConfig\" : { \"columnMap\" : { \"timestamp\" : 0, \"host\" : 1, \"data\" : 2 } }"
+                                                + ", \"measurements\" : [ { \"sourceFields\" : [\"host\"], \"timestampField\" : \"timestamp\", \"measurementField\" : \"data\" } ]"
+                                                + "}";
+    public static final String OUTLIER_CONFIG = "{ \"rotationPolicy\" : { \"type\" : \"BY_AMOUNT\", \"amount\" : 100, \"unit\" : \"POINTS\" }"
+                                              + ", \"chunkingPolicy\" : { \"type\" : \"BY_AMOUNT\", \"amount\" : 10, \"unit\" : \"POINTS\" }"
+                                              + ", \"sketchyOutlierAlgorithm\" : \"SKETCHY_MOVING_MAD\""
+                                              + ", \"batchOutlierAlgorithm\" : \"RAD\""
+                                              + ", \"globalStatistics\": { \"min\" : -200 }"
+                                              + ", \"config\" : { \"minAmountToPredict\" : 100"
+                                              + "             , \"zscoreCutoffs\" : { \"NORMAL\" : 0.000000000000001, \"MODERATE_OUTLIER\" : 1.5 }"
+                                              + "             , \"minZscorePercentile\" : 95"
+                                              + "             }"
+                                              + "}";
+
+    /**
+     * Points for a handful of hosts, interleaved, with the occasional spike.
+     */
+    public static File writeInput(int numPoints, int numHosts) throws IOException {
+        File input = File.createTempFile("dryrun", ".csv");
+        input.deleteOnExit();
+        Random r = new Random(0);
+        PrintWriter out = new PrintWriter(input);
+        for(int i = 0;i < numPoints;++i) {
+            double value = 50 + 10*r.nextDouble() + (r.nextInt(300) == 0?1000:0);
+            out.println((1000000 + i) + ",h" + r.nextInt(numHosts) + "," + value);
+        }
+        out.close();
+        return input;
+    }
+
+    private static File[] run(File input, int parallelism) throws IOException {
+        DataPointExtractorConfig extractorConfig = JSONUtil.INSTANCE.load(EXTRACTOR_CONFIG, DataPointExtractorConfig.class);
+        OutlierConfig outlierConfig = JSONUtil.INSTANCE.load(OUTLIER_CONFIG, OutlierConfig.class);
+        File[] ret = new File[3];
+        for(int i = 0;i < ret.length;++i) {
+            ret[i] = File.createTempFile("dryrun", ".out");
+            ret[i].deleteOnExit();
+        }
+        new DryRun(extractorConfig, outlierConfig, new Properties()).withParallelism(parallelism)
+                                                                    .run(input, ret[0], ret[1], ret[2]);
+        return ret;
+    }
+
+    @Test
+    public void testParallelMatchesSerial() throws IOException {
+        File input = writeInput(20000, 8);
+        File[] expected = run(input, 1);
+        Assert.assertFalse(Files.toString(expected[1], Charsets.UTF_8).isEmpty());
+        Assert.assertFalse(Files.toString(expected[2], Charsets.UTF_8).isEmpty());
+        for(int parallelism : new int[] { 2, 3 }) {
+            File[] actual = run(input, parallelism);
+            for(int i = 0;i < expected.length;++i) {
+                Assert.assertEquals(Files.toString(expected[i], Charsets.UTF_8), Files.toString(actual[i], Charsets.UTF_8));
+            }
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.caseystella.analytics.cli;
+
+import com.caseystella.analytics.extractor.DataPointExtractorConfig;
+import com.caseystella.analytics.outlier.streaming.OutlierConfig;
+import com.caseystella.analytics.util.JSONUtil;
+import com.google.common.collect.ImmutableMap;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+public class ParameterSweepTest {
+
+    @Test
+    public void testVariants() {
+        Map<String, List<Object>> grid = new LinkedHashMap<>();
+        grid.put("a", Arrays.<Object>asList(1, 2));
+        grid.put("b", Arrays.<Object>asList("x", "y", "z"));
+        List<Map<String, Object>> variants = ParameterSweep.variants(grid);
+        Assert.assertEquals(6, variants.size());
+        int i = 0;
+        for(Object a : grid.get("a")) {
+            for(Object b : grid.get("b")) {
+                Assert.assertEquals(ImmutableMap.of("a", a, "b", b), variants.get(i++));
+            }
+        }
+        //an empty grid is just the base config
+        Assert.assertEquals(1, ParameterSweep.variants(new HashMap<String, List<Object>>()).size());
+    }
+
+    @Test
+    public void testIsNear() {
+        long[] sorted = { 10, 20, 40 };
+        Assert.assertTrue(ParameterSweep.isNear(sorted, 20, 0));
+        Assert.assertTrue(ParameterSweep.isNear(sorted, 23, 3));
+        Assert.assertTrue(ParameterSweep.isNear(sorted, 37, 3));
+        Assert.assertFalse(ParameterSweep.isNear(sorted, 30, 3));
+        Assert.assertTrue(ParameterSweep.isNear(sorted, 7, 3));
+        Assert.assertFalse(ParameterSweep.isNear(sorted, 6, 3));
+        Assert.assertTrue(ParameterSweep.isNear(sorted, 43, 3));
+        Assert.assertFalse(ParameterSweep.isNear(sorted, 44, 3));
+        Assert.assertFalse(ParameterSweep.isNear(new long[0], 10, 3));
+    }
+
+    @Test
+    public void testScore() {
+        ParameterSweep.Result result = new ParameterSweep.Result();
+        //100 is found exactly and 200 from 2 away, 300 is missed, and 150 and 400 are false outliers
+        ParameterSweep.score(result, new long[] { 100, 150, 202, 400 }, new long[] { 100, 200, 300 }, 5);
+        Assert.assertEquals(2, result.getNumFound());
+        Assert.assertEquals(1, result.getNumMissed());
+        Assert.assertEquals(2, result.getNumFalseOutliers());
+        Assert.assertEquals(0.5, result.getPrecision(), 1e-12);
+        Assert.assertEquals(2.0/3, result.getRecall(), 1e-12);
+    }
+
+    @Test
+    public void testSweep() throws IOException {
+        File input = File.createTempFile("sweep", ".csv");
+        input.deleteOnExit();
+        Random r = new Random(0);
+        List<Long> labels = new ArrayList<>();
+        PrintWriter out = new PrintWriter(input);
+        for(int i = 0;i < 1000;++i) {
+            double value = 50 + 10*r.nextDouble();
+            if(i == 400 || i == 600 || i == 800) {
+                value = 1000;
+                labels.add(1000000L + i);
+            }
+            out.println((1000000 + i) + ",h1," + value);
+        }
+        out.close();
+        DataPointExtractorConfig extractorConfig = JSONUtil.INSTANCE.load(DryRunTest.EXTRACTOR_CONFIG, DataPointExtractorConfig.class);
+        OutlierConfig outlierConfig = JSONUtil.INSTANCE.load(DryRunTest.OUTLIER_CONFIG, OutlierConfig.class);
+        Map<String, List<Object>> grid = new LinkedHashMap<>();
+        grid.put("zscoreCutoffs", Arrays.<Object>asList( ImmutableMap.of("NORMAL", 3.5, "MODERATE_OUTLIER", 5)
+                                                       , ImmutableMap.of("NORMAL", 3.5, "MODERATE_OUTLIER", 1e9)
+                                                       )
+                );
+        List<ParameterSweep.Result> results = new ParameterSweep(extractorConfig, outlierConfig, grid, new HashMap<String, String>())
+                                                               .withParallelism(2)
+                                                               .withLabels(labels, ParameterSweep.DEFAULT_TIME_BOUNDS)
+                                                               .load(input)
+                                                               .run();
+        Assert.assertEquals(2, results.size());
+        ParameterSweep.Result found = results.get(0);
+        Assert.assertEquals(1000, found.getNumPoints());
+        Assert.assertEquals(3, found.getNumOutliers());
+        Assert.assertEquals(1.0, found.getPrecision(), 1e-12);
+        Assert.assertEquals(1.0, found.getRecall(), 1e-12);
+        //nothing can be that far out, so nothing is found
+        ParameterSweep.Result none = results.get(1);
+        Assert.assertEquals(0, none.getNumOutliers());
+        Assert.assertEquals(3, none.getNumMissed());
+        Assert.assertEquals(0.0, none.getRecall(), 1e-12);
+        Assert.assertTrue(Double.isNaN(none.getPrecision()));
+    }
+}